@@ -69,9 +69,9 @@ final class Backpressure {
             final Subscriber<? super Entry<T, S>> subscriber,
             StackAndRequest<NodePosition<T, S>> state, NodePosition<T, S> np) {
         final long nextRequest;
-        Entry<T, S> entry = ((Leaf<T, S>) np.node()).entries().get(np.position());
-        if (condition.call(entry.geometry())) {
-            subscriber.onNext(entry);
+        Leaf<T, S> leaf = (Leaf<T, S>) np.node();
+        if (leaf.entryMatches(np.position(), condition)) {
+            subscriber.onNext(leaf.entries().get(np.position()));
             nextRequest = state.request - 1;
         } else
             nextRequest = state.request;
@@ -93,8 +93,9 @@ final class Backpressure {
     private static <S extends Geometry, T> ImmutableStack<NodePosition<T, S>> searchNonLeaf(
             final Func1<? super Geometry, Boolean> condition,
             ImmutableStack<NodePosition<T, S>> stack, NodePosition<T, S> np) {
-        Node<T, S> child = ((NonLeaf<T, S>) np.node()).children().get(np.position());
-        if (condition.call(child.geometry())) {
+        NonLeaf<T, S> node = (NonLeaf<T, S>) np.node();
+        if (node.childMatches(np.position(), condition)) {
+            Node<T, S> child = node.children().get(np.position());
             stack = stack.push(new NodePosition<T, S>(child, 0));
         } else {
             stack = stack.pop().push(np.nextPosition());
@@ -0,0 +1,80 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Searches a tree for many rectangles in one traversal. Each node is visited
+ * once with the indexes of the rectangles that intersect it, so the upper
+ * levels of the tree are visited once per batch rather than once per
+ * rectangle.
+ */
+final class BatchSearch {
+
+    private BatchSearch() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns for each rectangle the entries intersecting it in the same order
+     * as {@link RTree#search(Rectangle, Visitor)} would visit them.
+     *
+     * @param root
+     *            root of the tree
+     * @param rectangles
+     *            rectangles to search
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the entries intersecting each rectangle (in the same order as
+     *         the rectangles)
+     */
+    static <T, S extends Geometry> List<List<Entry<T, S>>> search(Node<T, S> root,
+            List<Rectangle> rectangles) {
+        List<List<Entry<T, S>>> results = new ArrayList<List<Entry<T, S>>>(rectangles.size());
+        int[] active = new int[rectangles.size()];
+        int count = 0;
+        Rectangle mbr = root.geometry().mbr();
+        for (int i = 0; i < rectangles.size(); i++) {
+            results.add(new ArrayList<Entry<T, S>>());
+            if (mbr.intersects(rectangles.get(i)))
+                active[count++] = i;
+        }
+        if (count > 0)
+            search(root, rectangles, active, count, results);
+        return results;
+    }
+
+    private static <T, S extends Geometry> void search(Node<T, S> node,
+            List<Rectangle> rectangles, int[] active, int count, List<List<Entry<T, S>>> results) {
+        if (node instanceof NonLeaf) {
+            NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+            // reused for each child as the recursion has finished with it
+            int[] childActive = new int[count];
+            for (int i = 0; i < nonLeaf.count(); i++) {
+                int childCount = 0;
+                for (int k = 0; k < count; k++)
+                    if (nonLeaf.childIntersects(i, rectangles.get(active[k])))
+                        childActive[childCount++] = active[k];
+                if (childCount > 0)
+                    search(nonLeaf.children().get(i), rectangles, childActive, childCount,
+                            results);
+            }
+        } else {
+            Leaf<T, S> leaf = (Leaf<T, S>) node;
+            List<Entry<T, S>> entries = leaf.entries();
+            for (int k = 0; k < count; k++) {
+                Rectangle r = rectangles.get(active[k]);
+                List<Entry<T, S>> result = results.get(active[k]);
+                for (int i = 0; i < entries.size(); i++)
+                    if (leaf.entryIntersects(i, r))
+                        result.add(entries.get(i));
+            }
+        }
+    }
+
+}
@@ -21,7 +21,13 @@ public final class Comparators {
         // prevent instantiation
     }
 
-    public static final Comparator<ListPair<?>> overlapListPairComparator = toComparator(Functions.overlapListPair);
+    public static final Comparator<ListPair<?>> overlapListPairComparator = new Comparator<ListPair<?>>() {
+
+        @Override
+        public int compare(ListPair<?> p1, ListPair<?> p2) {
+            return Float.compare(Functions.overlap(p1), Functions.overlap(p2));
+        }
+    };
 
     /**
      * Compares the sum of the areas of two ListPairs.
@@ -30,7 +36,7 @@ public final class Comparators {
 
         @Override
         public int compare(ListPair<?> p1, ListPair<?> p2) {
-            return ((Float) p1.areaSum()).compareTo(p2.areaSum());
+            return Float.compare(p1.areaSum(), p2.areaSum());
         }
     };
 
@@ -50,12 +56,25 @@ public final class Comparators {
      */
     public static <T extends HasGeometry> Comparator<HasGeometry> overlapAreaComparator(
             final Rectangle r, final List<T> list) {
-        return toComparator(Functions.overlapArea(r, list));
+        return new Comparator<HasGeometry>() {
+
+            @Override
+            public int compare(HasGeometry g1, HasGeometry g2) {
+                return Double.compare(Functions.overlapArea(r, list, g1),
+                        Functions.overlapArea(r, list, g2));
+            }
+        };
     }
 
     public static <T extends HasGeometry> Comparator<HasGeometry> areaIncreaseComparator(
             final Rectangle r) {
-        return toComparator(Functions.areaIncrease(r));
+        return new Comparator<HasGeometry>() {
+
+            @Override
+            public int compare(HasGeometry g1, HasGeometry g2) {
+                return Float.compare(Functions.areaIncrease(r, g1), Functions.areaIncrease(r, g2));
+            }
+        };
     }
 
     public static Comparator<HasGeometry> areaComparator(final Rectangle r) {
@@ -63,8 +82,7 @@ public final class Comparators {
 
             @Override
             public int compare(HasGeometry g1, HasGeometry g2) {
-                return ((Float) g1.geometry().mbr().add(r).area()).compareTo(g2.geometry().mbr()
-                        .add(r).area());
+                return Float.compare(Functions.areaOfUnion(r, g1), Functions.areaOfUnion(r, g2));
             }
         };
     }
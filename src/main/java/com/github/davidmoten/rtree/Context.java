@@ -1,5 +1,6 @@
 package com.github.davidmoten.rtree;
 
+import com.github.davidmoten.rtree.geometry.Point;
 import com.google.common.base.Preconditions;
 
 /**
@@ -11,6 +12,9 @@ public final class Context {
     private final int minChildren;
     private final Splitter splitter;
     private final Selector selector;
+    private final boolean flatPointLeaves;
+    private final double reinsertionFraction;
+    private final int searchCacheSize;
 
     /**
      * Constructor.
@@ -25,15 +29,92 @@ public final class Context {
      *            algorithm to split the children across two new nodes
      */
     public Context(int minChildren, int maxChildren, Selector selector, Splitter splitter) {
+        this(minChildren, maxChildren, selector, splitter, false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param minChildren
+     *            minimum number of children per node (at least 1)
+     * @param maxChildren
+     *            max number of children per node (minimum is 3)
+     * @param selector
+     *            algorithm to select search path
+     * @param splitter
+     *            algorithm to split the children across two new nodes
+     * @param flatPointLeaves
+     *            if true then leaves whose entries all have {@link Point}
+     *            geometries store them in flat primitive arrays
+     */
+    public Context(int minChildren, int maxChildren, Selector selector, Splitter splitter,
+            boolean flatPointLeaves) {
+        this(minChildren, maxChildren, selector, splitter, flatPointLeaves, 0);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param minChildren
+     *            minimum number of children per node (at least 1)
+     * @param maxChildren
+     *            max number of children per node (minimum is 3)
+     * @param selector
+     *            algorithm to select search path
+     * @param splitter
+     *            algorithm to split the children across two new nodes
+     * @param flatPointLeaves
+     *            if true then leaves whose entries all have {@link Point}
+     *            geometries store them in flat primitive arrays
+     * @param reinsertionFraction
+     *            proportion of the children of an overflowing node to
+     *            reinsert (R* forced reinsertion) before splitting it, 0 to
+     *            always split
+     */
+    public Context(int minChildren, int maxChildren, Selector selector, Splitter splitter,
+            boolean flatPointLeaves, double reinsertionFraction) {
+        this(minChildren, maxChildren, selector, splitter, flatPointLeaves, reinsertionFraction, 0);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param minChildren
+     *            minimum number of children per node (at least 1)
+     * @param maxChildren
+     *            max number of children per node (minimum is 3)
+     * @param selector
+     *            algorithm to select search path
+     * @param splitter
+     *            algorithm to split the children across two new nodes
+     * @param flatPointLeaves
+     *            if true then leaves whose entries all have {@link Point}
+     *            geometries store them in flat primitive arrays
+     * @param reinsertionFraction
+     *            proportion of the children of an overflowing node to
+     *            reinsert (R* forced reinsertion) before splitting it, 0 to
+     *            always split
+     * @param searchCacheSize
+     *            max total number of entries in the rectangle search results
+     *            each tree caches, 0 for no cache. This is a runtime setting
+     *            that {@link RTreeSerializer} does not write
+     */
+    public Context(int minChildren, int maxChildren, Selector selector, Splitter splitter,
+            boolean flatPointLeaves, double reinsertionFraction, int searchCacheSize) {
         Preconditions.checkNotNull(splitter);
         Preconditions.checkNotNull(selector);
         Preconditions.checkArgument(maxChildren > 2);
         Preconditions.checkArgument(minChildren >= 1);
         Preconditions.checkArgument(minChildren < maxChildren);
+        Preconditions.checkArgument(reinsertionFraction >= 0 && reinsertionFraction < 1);
+        Preconditions.checkArgument(searchCacheSize >= 0);
         this.selector = selector;
         this.maxChildren = maxChildren;
         this.minChildren = minChildren;
         this.splitter = splitter;
+        this.flatPointLeaves = flatPointLeaves;
+        this.reinsertionFraction = reinsertionFraction;
+        this.searchCacheSize = searchCacheSize;
     }
 
     public int maxChildren() {
@@ -52,4 +133,30 @@ public final class Context {
         return selector;
     }
 
+    public boolean flatPointLeaves() {
+        return flatPointLeaves;
+    }
+
+    /**
+     * Returns the proportion of the children of an overflowing node that are
+     * reinserted before it is split. If 0 then overflowing nodes are always
+     * split.
+     * 
+     * @return reinsertion fraction
+     */
+    public double reinsertionFraction() {
+        return reinsertionFraction;
+    }
+
+    /**
+     * Returns the max total number of entries in the rectangle search results
+     * cached by each {@link RTree} created with this context. If 0 then
+     * searches are not cached.
+     * 
+     * @return search cache size
+     */
+    public int searchCacheSize() {
+        return searchCacheSize;
+    }
+
 }
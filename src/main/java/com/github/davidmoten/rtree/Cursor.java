@@ -0,0 +1,65 @@
+package com.github.davidmoten.rtree;
+
+/**
+ * <p>
+ * A forward-only view of the results of a search that reads the coordinates
+ * of each matching entry directly from the storage of the tree instead of
+ * creating an {@link Entry} and geometry per result. Call {@link #next()} to
+ * move to each result in turn then read the bounds of its geometry with
+ * {@link #x1()}, {@link #y1()}, {@link #x2()} and {@link #y2()}.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe. The accessors are only valid after {@link #next()} has
+ * returned true.
+ * </p>
+ *
+ * @param <T>
+ *            the entry value type
+ */
+public interface Cursor<T> {
+
+    /**
+     * Moves to the next matching entry.
+     *
+     * @return true if there is a current entry, false if the search is
+     *         finished
+     */
+    boolean next();
+
+    /**
+     * Returns the minimum x value of the mbr of the current entry.
+     *
+     * @return minimum x
+     */
+    float x1();
+
+    /**
+     * Returns the minimum y value of the mbr of the current entry.
+     *
+     * @return minimum y
+     */
+    float y1();
+
+    /**
+     * Returns the maximum x value of the mbr of the current entry.
+     *
+     * @return maximum x
+     */
+    float x2();
+
+    /**
+     * Returns the maximum y value of the mbr of the current entry.
+     *
+     * @return maximum y
+     */
+    float y2();
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @return value
+     */
+    T value();
+
+}
@@ -0,0 +1,87 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Box;
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * An entry in an {@link RTreeN} which is a value and the {@link Box} it
+ * occupies.
+ *
+ * @param <T>
+ *            the type of the entry value
+ */
+public final class EntryN<T> {
+    private final T value;
+    private final Box box;
+
+    /**
+     * Constructor.
+     *
+     * @param value
+     *            the value of the entry
+     * @param box
+     *            the box of the value
+     */
+    public EntryN(T value, Box box) {
+        Preconditions.checkNotNull(box);
+        this.value = value;
+        this.box = box;
+    }
+
+    /**
+     * Factory method.
+     *
+     * @param <T>
+     *            type of value
+     * @param value
+     *            object being given a spatial context
+     * @param box
+     *            box associated with the value
+     * @return entry wrapping value and associated box
+     */
+    public static <T> EntryN<T> entry(T value, Box box) {
+        return new EntryN<T>(value, box);
+    }
+
+    /**
+     * Returns the value wrapped by this {@link EntryN}.
+     *
+     * @return the entry value
+     */
+    public T value() {
+        return value;
+    }
+
+    /**
+     * Returns the box of this {@link EntryN}.
+     *
+     * @return the entry box
+     */
+    public Box box() {
+        return box;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryN [value=" + value + ", box=" + box + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value, box);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        @SuppressWarnings("rawtypes")
+        Optional<EntryN> other = ObjectsHelper.asClass(obj, EntryN.class);
+        if (other.isPresent()) {
+            return Objects.equal(value, other.get().value) && Objects.equal(box, other.get().box);
+        } else
+            return false;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * A pair of entries from two R-trees, emitted by
+ * {@link RTree#join(RTree, rx.functions.Func2)}.
+ *
+ * @param <T>
+ *            the value type of the first entry
+ * @param <S>
+ *            the geometry type of the first entry
+ * @param <U>
+ *            the value type of the second entry
+ * @param <R>
+ *            the geometry type of the second entry
+ */
+public final class EntryPair<T, S extends Geometry, U, R extends Geometry> {
+
+    private final Entry<T, S> entry1;
+    private final Entry<U, R> entry2;
+
+    /**
+     * Constructor.
+     *
+     * @param entry1
+     *            entry from the first tree
+     * @param entry2
+     *            entry from the second tree
+     */
+    public EntryPair(Entry<T, S> entry1, Entry<U, R> entry2) {
+        this.entry1 = entry1;
+        this.entry2 = entry2;
+    }
+
+    public Entry<T, S> entry1() {
+        return entry1;
+    }
+
+    public Entry<U, R> entry2() {
+        return entry2;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(entry1, entry2);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        @SuppressWarnings("rawtypes")
+        Optional<EntryPair> other = ObjectsHelper.asClass(obj, EntryPair.class);
+        if (other.isPresent()) {
+            return Objects.equal(entry1, other.get().entry1)
+                    && Objects.equal(entry2, other.get().entry2);
+        } else
+            return false;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryPair [entry1=" + entry1 + ", entry2=" + entry2 + "]";
+    }
+
+}
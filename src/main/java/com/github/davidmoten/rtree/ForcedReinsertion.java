@@ -0,0 +1,186 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * <p>
+ * Insertion with the overflow treatment of the R*-tree (Beckmann et al, 1990).
+ * The first time during an insertion that a node other than the root
+ * overflows at a given level, the proportion
+ * {@link Context#reinsertionFraction()} of its children whose mbr centres are
+ * farthest from the centre of the node are removed and inserted again from
+ * the root (nearest first) at the same level. Any other overflow is split as
+ * usual.
+ * </p>
+ *
+ * <p>
+ * Levels are counted as height above the leaves (a leaf is at height 0) so
+ * that they are unaffected by the root splitting while removed children are
+ * being reinserted. Nodes are copied on the way down as for
+ * {@link Node#add(Entry)} so the tree passed in is not modified.
+ * </p>
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class ForcedReinsertion<T, S extends Geometry> {
+
+    private final Context context;
+    // heights at which a reinsertion has happened
+    private final BitSet reinserted = new BitSet();
+    // items to insert and the height of the node to insert them into
+    private final Deque<HasGeometry> pending = new ArrayDeque<HasGeometry>();
+    private final Deque<Integer> pendingHeights = new ArrayDeque<Integer>();
+
+    private ForcedReinsertion(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the root of the tree with the entry added.
+     *
+     * @param root
+     *            root of the tree to add to
+     * @param entry
+     *            entry to add
+     * @param context
+     *            context of the tree
+     * @param <T>
+     *            the entry value type
+     * @param <S>
+     *            the entry geometry type
+     * @return new root
+     */
+    static <T, S extends Geometry> Node<T, S> add(Node<T, S> root, Entry<T, S> entry,
+            Context context) {
+        return new ForcedReinsertion<T, S>(context).insert(root, entry);
+    }
+
+    private Node<T, S> insert(Node<T, S> root, Entry<T, S> entry) {
+        int height = height(root);
+        pending.add(entry);
+        pendingHeights.add(0);
+        while (!pending.isEmpty()) {
+            HasGeometry item = pending.poll();
+            int target = pendingHeights.poll();
+            List<Node<T, S>> nodes = insert(root, height, item, target, true);
+            if (nodes.size() == 1)
+                root = nodes.get(0);
+            else {
+                root = new NonLeaf<T, S>(nodes, context);
+                height++;
+            }
+        }
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Node<T, S>> insert(Node<T, S> node, int height, HasGeometry item, int target,
+            boolean isRoot) {
+        if (node instanceof Leaf) {
+            List<Entry<T, S>> entries = Util.add(((Leaf<T, S>) node).entries(),
+                    (Entry<T, S>) item);
+            return overflow(entries, height, isRoot, true);
+        } else {
+            NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+            final List<? extends Node<T, S>> children;
+            if (height == target) {
+                List<Node<T, S>> list = new ArrayList<Node<T, S>>(nonLeaf.count() + 1);
+                list.addAll(nonLeaf.children());
+                list.add((Node<T, S>) item);
+                children = list;
+            } else {
+                Node<T, S> child = context.selector().select(item.geometry().mbr(),
+                        nonLeaf.children());
+                children = Util.replace(nonLeaf.children(), child,
+                        insert(child, height - 1, item, target, false));
+            }
+            return overflow(children, height, isRoot, false);
+        }
+    }
+
+    /**
+     * Returns the node (or nodes if split) made from the items which may have
+     * overflowed.
+     */
+    private <R extends HasGeometry> List<Node<T, S>> overflow(List<R> items, int height,
+            boolean isRoot, boolean leaf) {
+        if (items.size() <= context.maxChildren())
+            return Collections.singletonList(node(items, leaf));
+        else if (!isRoot && !reinserted.get(height)) {
+            reinserted.set(height);
+            return Collections.singletonList(node(removeFarthest(items, height), leaf));
+        } else {
+            ListPair<R> pair = context.splitter().split(items, context.minChildren());
+            List<Node<T, S>> list = new ArrayList<Node<T, S>>(2);
+            list.add(node(pair.group1().list(), leaf));
+            list.add(node(pair.group2().list(), leaf));
+            return list;
+        }
+    }
+
+    /**
+     * Queues the items farthest from the centre of their mbr for reinsertion,
+     * nearest first, and returns the others in their original order.
+     */
+    private <R extends HasGeometry> List<R> removeFarthest(List<R> items, int height) {
+        final int n = items.size();
+        final int count = Math.max(1, Math.min(n - context.minChildren(),
+                (int) Math.round(context.reinsertionFraction() * n)));
+        final Rectangle mbr = Util.mbr(items);
+        final float cx = (mbr.x1() + mbr.x2()) / 2;
+        final float cy = (mbr.y1() + mbr.y2()) / 2;
+        final long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            Rectangle r = items.get(i).geometry().mbr();
+            float dx = (r.x1() + r.x2()) / 2 - cx;
+            float dy = (r.y1() + r.y2()) / 2 - cy;
+            // farthest first
+            keys[i] = Util.sortKey(-(dx * dx + dy * dy), i);
+        }
+        Arrays.sort(keys);
+        final boolean[] removed = new boolean[n];
+        for (int k = count - 1; k >= 0; k--) {
+            int i = (int) keys[k];
+            removed[i] = true;
+            pending.add(items.get(i));
+            pendingHeights.add(height);
+        }
+        final List<R> kept = new ArrayList<R>(n - count);
+        for (int i = 0; i < n; i++)
+            if (!removed[i])
+                kept.add(items.get(i));
+        return kept;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<T, S> node(List<? extends HasGeometry> items, boolean leaf) {
+        if (leaf)
+            return new Leaf<T, S>((List<Entry<T, S>>) items, context);
+        else
+            return new NonLeaf<T, S>((List<? extends Node<T, S>>) items, context);
+    }
+
+    private static int height(Node<?, ?> node) {
+        int height = 0;
+        while (node instanceof NonLeaf) {
+            node = ((NonLeaf<?, ?>) node).children().get(0);
+            height++;
+        }
+        return height;
+    }
+
+}
@@ -22,8 +22,7 @@ public final class Functions {
 
         @Override
         public Double call(ListPair<? extends HasGeometry> pair) {
-            return (double) pair.group1().geometry().mbr()
-                    .intersectionArea(pair.group2().geometry().mbr());
+            return (double) overlap(pair);
         }
     };
 
@@ -33,14 +32,7 @@ public final class Functions {
 
             @Override
             public Double call(HasGeometry g) {
-                Rectangle gPlusR = g.geometry().mbr().add(r);
-                double m = 0;
-                for (HasGeometry other : list) {
-                    if (other != g) {
-                        m += gPlusR.intersectionArea(other.geometry().mbr());
-                    }
-                }
-                return m;
+                return overlapArea(r, list, g);
             }
         };
     }
@@ -49,10 +41,49 @@ public final class Functions {
         return new Func1<HasGeometry, Double>() {
             @Override
             public Double call(HasGeometry g) {
-                Rectangle gPlusR = g.geometry().mbr().add(r);
-                return (double) (gPlusR.area() - g.geometry().mbr().area());
+                return (double) areaIncrease(r, g);
             }
         };
     }
 
+    static float overlap(ListPair<?> pair) {
+        Rectangle a = pair.group1().geometry().mbr();
+        Rectangle b = pair.group2().geometry().mbr();
+        return Rectangle.intersectionArea(a.x1(), a.y1(), a.x2(), a.y2(), b.x1(), b.y1(), b.x2(),
+                b.y2());
+    }
+
+    /**
+     * Returns the sum of the areas of intersection of the mbr of g enlarged to
+     * include r with the mbrs of the other members of the list. No objects are
+     * created.
+     */
+    static double overlapArea(Rectangle r, List<? extends HasGeometry> list, HasGeometry g) {
+        final Rectangle mbr = g.geometry().mbr();
+        final float x1 = Math.min(mbr.x1(), r.x1());
+        final float y1 = Math.min(mbr.y1(), r.y1());
+        final float x2 = Math.max(mbr.x2(), r.x2());
+        final float y2 = Math.max(mbr.y2(), r.y2());
+        double m = 0;
+        for (int i = 0; i < list.size(); i++) {
+            HasGeometry other = list.get(i);
+            if (other != g) {
+                Rectangle o = other.geometry().mbr();
+                m += Rectangle.intersectionArea(x1, y1, x2, y2, o.x1(), o.y1(), o.x2(), o.y2());
+            }
+        }
+        return m;
+    }
+
+    static float areaIncrease(Rectangle r, HasGeometry g) {
+        final Rectangle mbr = g.geometry().mbr();
+        return areaOfUnion(r, g) - mbr.area();
+    }
+
+    static float areaOfUnion(Rectangle r, HasGeometry g) {
+        final Rectangle mbr = g.geometry().mbr();
+        return Rectangle.areaOfUnion(mbr.x1(), mbr.y1(), mbr.x2(), mbr.y2(), r.x1(), r.y1(),
+                r.x2(), r.y2());
+    }
+
 }
@@ -0,0 +1,30 @@
+package com.github.davidmoten.rtree;
+
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Search condition that is true for geometries intersecting a rectangle. Leaves
+ * recognise this condition so that they can test stored coordinates directly
+ * instead of calling the function on each entry geometry.
+ */
+final class IntersectsRectangle implements Func1<Geometry, Boolean> {
+
+    private final Rectangle r;
+
+    IntersectsRectangle(Rectangle r) {
+        this.r = r;
+    }
+
+    Rectangle rectangle() {
+        return r;
+    }
+
+    @Override
+    public Boolean call(Geometry g) {
+        return g.intersects(r);
+    }
+
+}
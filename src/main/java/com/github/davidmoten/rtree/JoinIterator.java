@@ -0,0 +1,198 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import rx.functions.Func2;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Iterates the pairs of entries of two R-trees whose mbrs intersect and that
+ * satisfy a predicate by descending both trees together (synchronized
+ * traversal). Only pairs of nodes whose mbrs intersect are visited and only
+ * the children and entries that overlap the intersection of the two parent
+ * mbrs are paired. When one tree is deeper than the other the leaves of the
+ * shallower tree are paired with the nodes of the deeper one until it reaches
+ * its leaves too. Used by {@link RTree#join(RTree, Func2)} and for each
+ * partition of a {@link ParallelJoin}. Not thread-safe.
+ *
+ * @param <T>
+ *            the entry value type of the first tree
+ * @param <S>
+ *            the entry geometry type of the first tree
+ * @param <U>
+ *            the entry value type of the second tree
+ * @param <R>
+ *            the entry geometry type of the second tree
+ */
+final class JoinIterator<T, S extends Geometry, U, R extends Geometry> implements
+        Iterator<EntryPair<T, S, U, R>> {
+
+    private final Func2<? super S, ? super R, Boolean> predicate;
+    private final Deque<NodePair<T, S, U, R>> stack = new ArrayDeque<NodePair<T, S, U, R>>();
+
+    // the entries of the leaf pair being scanned that overlap both leaves
+    private List<Entry<T, S>> entries1 = Collections.emptyList();
+    private List<Entry<U, R>> entries2 = Collections.emptyList();
+    private int i;
+    private int j;
+
+    private EntryPair<T, S, U, R> next;
+
+    JoinIterator(Node<T, S> root1, Node<U, R> root2,
+            Func2<? super S, ? super R, Boolean> predicate) {
+        this.predicate = predicate;
+        if (root1.geometry().mbr().intersects(root2.geometry().mbr()))
+            stack.push(new NodePair<T, S, U, R>(root1, root2));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param pair
+     *            pair of nodes with intersecting mbrs to join
+     * @param predicate
+     *            condition on the geometries of entries with intersecting
+     *            mbrs
+     */
+    JoinIterator(NodePair<T, S, U, R> pair, Func2<? super S, ? super R, Boolean> predicate) {
+        this.predicate = predicate;
+        stack.push(pair);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = computeNext();
+        return next != null;
+    }
+
+    @Override
+    public EntryPair<T, S, U, R> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        EntryPair<T, S, U, R> result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private EntryPair<T, S, U, R> computeNext() {
+        while (true) {
+            while (i < entries1.size()) {
+                Entry<T, S> e1 = entries1.get(i);
+                Rectangle r1 = e1.geometry().mbr();
+                while (j < entries2.size()) {
+                    Entry<U, R> e2 = entries2.get(j++);
+                    if (r1.intersects(e2.geometry().mbr())
+                            && predicate.call(e1.geometry(), e2.geometry()))
+                        return new EntryPair<T, S, U, R>(e1, e2);
+                }
+                i++;
+                j = 0;
+            }
+            if (stack.isEmpty())
+                return null;
+            expand(stack.pop());
+        }
+    }
+
+    private void expand(NodePair<T, S, U, R> pair) {
+        if (pair.isLeaves()) {
+            Rectangle overlap = overlap(pair);
+            entries1 = overlapping(((Leaf<T, S>) pair.node1).entries(), overlap);
+            entries2 = overlapping(((Leaf<U, R>) pair.node2).entries(), overlap);
+            i = 0;
+            j = 0;
+        } else {
+            List<NodePair<T, S, U, R>> pairs = childPairs(pair);
+            // push in reverse so that pairs are visited in child order
+            for (int k = pairs.size() - 1; k >= 0; k--)
+                stack.push(pairs.get(k));
+        }
+    }
+
+    /**
+     * Returns the pairs of nodes one level down from a pair that is not two
+     * leaves, in the order the join visits them. A leaf is paired with the
+     * children of the other node.
+     * 
+     * @param pair
+     *            pair of nodes with intersecting mbrs, not both leaves
+     * @param <T>
+     *            the entry value type of the first tree
+     * @param <S>
+     *            the entry geometry type of the first tree
+     * @param <U>
+     *            the entry value type of the second tree
+     * @param <R>
+     *            the entry geometry type of the second tree
+     * @return the child pairs with intersecting mbrs
+     */
+    static <T, S extends Geometry, U, R extends Geometry> List<NodePair<T, S, U, R>> childPairs(
+            NodePair<T, S, U, R> pair) {
+        Rectangle overlap = overlap(pair);
+        List<? extends Node<T, S>> children1 = pair.node1 instanceof NonLeaf ? overlapping(
+                ((NonLeaf<T, S>) pair.node1).children(), overlap) : Collections
+                .singletonList(pair.node1);
+        List<? extends Node<U, R>> children2 = pair.node2 instanceof NonLeaf ? overlapping(
+                ((NonLeaf<U, R>) pair.node2).children(), overlap) : Collections
+                .singletonList(pair.node2);
+        List<NodePair<T, S, U, R>> pairs = new ArrayList<NodePair<T, S, U, R>>();
+        for (int m = 0; m < children1.size(); m++) {
+            Node<T, S> child1 = children1.get(m);
+            Rectangle r1 = child1.geometry().mbr();
+            for (int n = 0; n < children2.size(); n++) {
+                Node<U, R> child2 = children2.get(n);
+                if (r1.intersects(child2.geometry().mbr()))
+                    pairs.add(new NodePair<T, S, U, R>(child1, child2));
+            }
+        }
+        return pairs;
+    }
+
+    private static Rectangle overlap(NodePair<?, ?, ?, ?> pair) {
+        Rectangle a = pair.node1.geometry().mbr();
+        Rectangle b = pair.node2.geometry().mbr();
+        return Rectangle.create(Math.max(a.x1(), b.x1()), Math.max(a.y1(), b.y1()),
+                Math.min(a.x2(), b.x2()), Math.min(a.y2(), b.y2()));
+    }
+
+    private static <E extends HasGeometry> List<E> overlapping(List<? extends E> items,
+            Rectangle r) {
+        List<E> list = new ArrayList<E>(items.size());
+        for (int k = 0; k < items.size(); k++) {
+            E item = items.get(k);
+            if (item.geometry().mbr().intersects(r))
+                list.add(item);
+        }
+        return list;
+    }
+
+    static final class NodePair<T, S extends Geometry, U, R extends Geometry> {
+        final Node<T, S> node1;
+        final Node<U, R> node2;
+
+        NodePair(Node<T, S> node1, Node<U, R> node2) {
+            this.node1 = node1;
+            this.node2 = node2;
+        }
+
+        boolean isLeaves() {
+            return node1 instanceof Leaf && node2 instanceof Leaf;
+        }
+    }
+
+}
@@ -21,9 +21,13 @@ final class Leaf<T, S extends Geometry> implements Node<T, S> {
     private final Context context;
 
     Leaf(List<Entry<T, S>> entries, Context context) {
-        this.entries = entries;
         this.context = context;
         this.mbr = Util.mbr(entries);
+        if (context.flatPointLeaves() && !(entries instanceof PointEntries)
+                && PointEntries.canStore(entries))
+            this.entries = PointEntries.create(entries);
+        else
+            this.entries = entries;
     }
 
     @Override
@@ -42,14 +46,97 @@ final class Leaf<T, S extends Geometry> implements Node<T, S> {
         if (!condition.call(this.geometry().mbr()))
             return;
 
-        for (final Entry<T, S> entry : entries) {
-            if (subscriber.isUnsubscribed())
-                return;
-            else {
-                if (condition.call(entry.geometry()))
+        if (condition instanceof IntersectsRectangle)
+            searchEntries(((IntersectsRectangle) condition).rectangle(), subscriber);
+        else
+            for (final Entry<T, S> entry : entries) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                else {
+                    if (condition.call(entry.geometry()))
+                        subscriber.onNext(entry);
+                }
+            }
+    }
+
+    /**
+     * Emits the entries that intersect r without checking the mbr of this leaf
+     * first. Flat point entries are tested without creating the entries.
+     * 
+     * @param r
+     *            rectangle to search
+     * @param subscriber
+     *            subscriber to emit matching entries to
+     */
+    void searchEntries(Rectangle r, Subscriber<? super Entry<T, S>> subscriber) {
+        if (entries instanceof PointEntries) {
+            PointEntries<T, S> points = (PointEntries<T, S>) entries;
+            for (int i = 0; i < points.size(); i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                else if (points.intersects(i, r))
+                    subscriber.onNext(points.get(i));
+            }
+        } else
+            for (int i = 0; i < entries.size(); i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                Entry<T, S> entry = entries.get(i);
+                if (entry.geometry().intersects(r))
                     subscriber.onNext(entry);
             }
-        }
+    }
+
+    /**
+     * Visits the entries that intersect r without checking the mbr of this
+     * leaf first.
+     * 
+     * @param r
+     *            rectangle to search
+     * @param visitor
+     *            receives matching entries
+     * @return false if the visitor stopped the search
+     */
+    boolean visitEntries(Rectangle r, Visitor<? super Entry<T, S>> visitor) {
+        for (int i = 0; i < entries.size(); i++)
+            if (entryIntersects(i, r) && !visitor.visit(entries.get(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns true if the entry at the given index satisfies the condition.
+     * Flat point entries are tested against a rectangle intersection condition
+     * without creating the entry.
+     * 
+     * @param index
+     *            position of the entry in this leaf
+     * @param condition
+     *            search condition
+     * @return true if the entry satisfies the condition
+     */
+    boolean entryMatches(int index, Func1<? super Geometry, Boolean> condition) {
+        if (condition instanceof IntersectsRectangle)
+            return entryIntersects(index, ((IntersectsRectangle) condition).rectangle());
+        else
+            return condition.call(entries.get(index).geometry());
+    }
+
+    /**
+     * Returns true if the geometry of the entry at the given index intersects
+     * r. Flat point entries are tested without creating the entry.
+     * 
+     * @param index
+     *            position of the entry in this leaf
+     * @param r
+     *            rectangle
+     * @return true if the entry intersects r
+     */
+    boolean entryIntersects(int index, Rectangle r) {
+        if (entries instanceof PointEntries)
+            return ((PointEntries<T, S>) entries).intersects(index, r);
+        else
+            return entries.get(index).geometry().intersects(r);
     }
 
     @Override
@@ -0,0 +1,22 @@
+package com.github.davidmoten.rtree;
+
+/**
+ * A {@link Cursor} over the leaf pages of a {@link MappedRTree}. Values are
+ * only deserialized when {@link #value()} is called so a scan that needs just
+ * coordinates (or that looks values up later with
+ * {@link MappedRTree#value(long)}) reads nothing but the mapped pages.
+ *
+ * @param <T>
+ *            the entry value type
+ */
+public interface MappedCursor<T> extends Cursor<T> {
+
+    /**
+     * Returns the position in the file of the value of the current entry. The
+     * value can be read with {@link MappedRTree#value(long)}.
+     *
+     * @return value index
+     */
+    long valueIndex();
+
+}
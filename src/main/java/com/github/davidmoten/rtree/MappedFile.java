@@ -0,0 +1,105 @@
+package com.github.davidmoten.rtree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A file mapped read-only into memory as a sequence of segments so that files
+ * larger than the 2GB limit of a single {@link MappedByteBuffer} can be read.
+ * Each segment overlaps the next by a few bytes so that a primitive value never
+ * straddles two segments. Reads use absolute positions only so an instance can
+ * be shared between threads.
+ */
+final class MappedFile {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * Bytes of overlap between consecutive segments, at least the size of the
+     * largest primitive read.
+     */
+    private static final int OVERLAP = 8;
+
+    private final MappedByteBuffer[] segments;
+
+    private MappedFile(MappedByteBuffer[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Maps the file read-only. The file is closed before returning but the
+     * mapping remains valid until it is garbage collected.
+     *
+     * @param file
+     *            file to map
+     * @return mapped file
+     * @throws IOException
+     *             if the mapping fails
+     */
+    static MappedFile map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            int count = (int) Math.max(1, (length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = i * SEGMENT_SIZE;
+                long size = Math.min(SEGMENT_SIZE + OVERLAP, length - position);
+                segments[i] = channel.map(MapMode.READ_ONLY, position, size);
+            }
+            return new MappedFile(segments);
+        } finally {
+            raf.close();
+        }
+    }
+
+    int getInt(long position) {
+        return segment(position).getInt(offset(position));
+    }
+
+    float getFloat(long position) {
+        return segment(position).getFloat(offset(position));
+    }
+
+    long getLong(long position) {
+        return segment(position).getLong(offset(position));
+    }
+
+    /**
+     * Copies bytes starting at the given position into <code>bytes</code>
+     * (which may span segments).
+     *
+     * @param position
+     *            position in file
+     * @param bytes
+     *            destination
+     */
+    void get(long position, byte[] bytes) {
+        int copied = 0;
+        while (copied < bytes.length) {
+            long p = position + copied;
+            ByteBuffer b = segment(p).duplicate();
+            b.position(offset(p));
+            int n = (int) Math.min(bytes.length - copied, SEGMENT_SIZE - offset(p));
+            b.get(bytes, copied, n);
+            copied += n;
+        }
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)];
+    }
+
+    private static int offset(long position) {
+        return (int) (position & SEGMENT_MASK);
+    }
+
+}
@@ -0,0 +1,748 @@
+package com.github.davidmoten.rtree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * A read-only R-tree whose nodes are read directly from a memory-mapped file
+ * rather than from the heap. Write an {@link RTree} to a file with
+ * {@link #write(RTree, File, Func1)} and open it with
+ * {@link #open(File, Func1)}. Searches read bounding rectangles straight from
+ * the mapped pages and only create {@link Entry} objects (and deserialize
+ * values) for results, so heap usage doesn't grow with the size of the tree
+ * and the pages are shared through the operating system page cache by every
+ * process that maps the file.
+ * </p>
+ *
+ * <p>
+ * The file is a 64 byte header followed by one fixed size page per node in
+ * breadth first order (the root first) then the serialized values. A page is
+ * the node type and child count followed by a 28 byte record per child. For a
+ * non-leaf a record is the child mbr and the position of the child page. For a
+ * leaf a record is the entry geometry type, its coordinates and the position
+ * of its value. Supported geometries are {@link Point}, {@link Rectangle} and
+ * {@link Circle}.
+ * </p>
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class MappedRTree<T, S extends Geometry> {
+
+    private static final int MAGIC = 0x52544d50; // "RTMP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int PAGE_HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 28;
+
+    private static final int LEAF = 0;
+    private static final int NON_LEAF = 1;
+
+    private static final int POINT = 0;
+    private static final int RECTANGLE = 1;
+    private static final int CIRCLE = 2;
+
+    private static final long NO_ROOT = -1;
+
+    private final MappedFile file;
+    private final Func1<byte[], ? extends T> deserializer;
+    private final int maxChildren;
+    private final int minChildren;
+    private final int size;
+    private final long root;
+
+    private MappedRTree(MappedFile file, Func1<byte[], ? extends T> deserializer)
+            throws IOException {
+        this.file = file;
+        this.deserializer = deserializer;
+        if (file.getInt(0) != MAGIC)
+            throw new IOException("not a mapped RTree file");
+        int version = file.getInt(4);
+        if (version != VERSION)
+            throw new IOException("unsupported version " + version);
+        this.maxChildren = file.getInt(8);
+        this.minChildren = file.getInt(12);
+        this.size = file.getInt(16);
+        this.root = file.getLong(20);
+    }
+
+    /**
+     * Writes the R-tree to the file (replacing any existing content) in the
+     * layout read by {@link #open(File, Func1)}.
+     *
+     * @param tree
+     *            R-tree to write
+     * @param file
+     *            file to write to
+     * @param serializer
+     *            converts an entry value to bytes
+     * @param <T>
+     *            the entry value type
+     * @param <S>
+     *            the entry geometry type
+     * @throws IOException
+     *             if the write fails
+     * @throws IllegalArgumentException
+     *             if an entry has a geometry other than {@link Point},
+     *             {@link Rectangle} or {@link Circle}
+     */
+    public static <T, S extends Geometry> void write(RTree<T, S> tree, File file,
+            Func1<? super T, byte[]> serializer) throws IOException {
+        Preconditions.checkNotNull(serializer);
+        final int pageSize = pageSize(tree.context().maxChildren());
+        final long pages = tree.root().isPresent() ? countNodes(tree.root().get()) : 0;
+        final long valuesStart = HEADER_SIZE + pages * pageSize;
+        DataOutputStream nodes = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            nodes.writeInt(MAGIC);
+            nodes.writeInt(VERSION);
+            nodes.writeInt(tree.context().maxChildren());
+            nodes.writeInt(tree.context().minChildren());
+            nodes.writeInt(tree.size());
+            nodes.writeLong(tree.root().isPresent() ? HEADER_SIZE : NO_ROOT);
+            nodes.writeLong(valuesStart);
+            nodes.write(new byte[HEADER_SIZE - 36]);
+            if (tree.root().isPresent()) {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.seek(valuesStart);
+                    // values are written through a second file descriptor
+                    // positioned at the start of the values region
+                    DataOutputStream values = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(raf.getFD())));
+                    writeNodes(tree.root().get(), pageSize, valuesStart, serializer, nodes,
+                            values);
+                    values.flush();
+                } finally {
+                    raf.close();
+                }
+            }
+        } finally {
+            nodes.close();
+        }
+    }
+
+    private static <T, S extends Geometry> void writeNodes(Node<T, S> root, int pageSize,
+            long valuesStart, Func1<? super T, byte[]> serializer, DataOutputStream nodes,
+            DataOutputStream values) throws IOException {
+        Deque<Node<T, S>> queue = new ArrayDeque<Node<T, S>>();
+        queue.add(root);
+        // pages are written in the order the nodes are queued so the page
+        // number of a child is known when its parent is written
+        long nextPage = 1;
+        long valuePosition = valuesStart;
+        byte[] padding = new byte[pageSize];
+        Node<T, S> node;
+        while ((node = queue.poll()) != null) {
+            if (node instanceof Leaf) {
+                nodes.writeInt(LEAF);
+                nodes.writeInt(node.count());
+                for (Entry<T, S> entry : ((Leaf<T, S>) node).entries()) {
+                    writeGeometry(entry.geometry(), nodes);
+                    nodes.writeLong(valuePosition);
+                    byte[] bytes = serializer.call(entry.value());
+                    values.writeInt(bytes.length);
+                    values.write(bytes);
+                    valuePosition += 4 + bytes.length;
+                }
+            } else {
+                nodes.writeInt(NON_LEAF);
+                nodes.writeInt(node.count());
+                for (Node<T, S> child : ((NonLeaf<T, S>) node).children()) {
+                    Rectangle r = child.geometry().mbr();
+                    nodes.writeInt(RECTANGLE);
+                    nodes.writeFloat(r.x1());
+                    nodes.writeFloat(r.y1());
+                    nodes.writeFloat(r.x2());
+                    nodes.writeFloat(r.y2());
+                    nodes.writeLong(HEADER_SIZE + nextPage++ * pageSize);
+                    queue.add(child);
+                }
+            }
+            nodes.write(padding, 0, pageSize - PAGE_HEADER_SIZE - node.count() * RECORD_SIZE);
+        }
+    }
+
+    private static void writeGeometry(Geometry g, DataOutputStream out) throws IOException {
+        if (g instanceof Point) {
+            Point p = (Point) g;
+            out.writeInt(POINT);
+            out.writeFloat(p.x());
+            out.writeFloat(p.y());
+            out.writeFloat(p.x());
+            out.writeFloat(p.y());
+        } else if (g instanceof Rectangle) {
+            Rectangle r = (Rectangle) g;
+            out.writeInt(RECTANGLE);
+            out.writeFloat(r.x1());
+            out.writeFloat(r.y1());
+            out.writeFloat(r.x2());
+            out.writeFloat(r.y2());
+        } else if (g instanceof Circle) {
+            Circle c = (Circle) g;
+            out.writeInt(CIRCLE);
+            out.writeFloat(c.x());
+            out.writeFloat(c.y());
+            out.writeFloat(c.radius());
+            out.writeFloat(0);
+        } else
+            throw new IllegalArgumentException("cannot write geometry of type "
+                    + g.getClass().getName());
+    }
+
+    private static long countNodes(Node<?, ?> node) {
+        long count = 1;
+        if (node instanceof NonLeaf)
+            for (Node<?, ?> child : ((NonLeaf<?, ?>) node).children())
+                count += countNodes(child);
+        return count;
+    }
+
+    private static int pageSize(int maxChildren) {
+        return PAGE_HEADER_SIZE + maxChildren * RECORD_SIZE;
+    }
+
+    /**
+     * Opens a file written by {@link #write(RTree, File, Func1)} as a read-only
+     * R-tree. The file is mapped into memory (it is not read into the heap)
+     * and must not be modified while the R-tree is in use.
+     *
+     * @param file
+     *            file to open
+     * @param deserializer
+     *            converts bytes written by the serializer back to an entry
+     *            value
+     * @param <T>
+     *            the entry value type
+     * @param <S>
+     *            the entry geometry type
+     * @return read-only R-tree
+     * @throws IOException
+     *             if the file cannot be mapped or is not in the expected
+     *             format
+     */
+    public static <T, S extends Geometry> MappedRTree<T, S> open(File file,
+            Func1<byte[], ? extends T> deserializer) throws IOException {
+        Preconditions.checkNotNull(deserializer);
+        return new MappedRTree<T, S>(MappedFile.map(file), deserializer);
+    }
+
+    /**
+     * Returns the number of entries in the R-tree.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if and only if the R-tree is empty of entries.
+     *
+     * @return is R-tree empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the maxChildren of the R-tree that was written.
+     *
+     * @return max number of children per node
+     */
+    public int maxChildren() {
+        return maxChildren;
+    }
+
+    /**
+     * Returns the minChildren of the R-tree that was written.
+     *
+     * @return min number of children per node
+     */
+    public int minChildren() {
+        return minChildren;
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometry intersects with the given rectangle.
+     *
+     * @param r
+     *            rectangle to check intersection with
+     * @return entries that intersect with the rectangle r
+     */
+    public Observable<Entry<T, S>> search(final Rectangle r) {
+        if (root == NO_ROOT)
+            return Observable.empty();
+        else
+            return Observable.from(new Iterable<Entry<T, S>>() {
+                @Override
+                public Iterator<Entry<T, S>> iterator() {
+                    return new SearchIterator(r, true, 0);
+                }
+            });
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometry intersects with the given point.
+     *
+     * @param p
+     *            point to check intersection with
+     * @return entries that intersect with the point p
+     */
+    public Observable<Entry<T, S>> search(Point p) {
+        return search(p.mbr());
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometries are strictly less than maxDistance from the
+     * given point.
+     *
+     * @param p
+     *            point to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from point p
+     *            (so none are returned if it is not positive)
+     * @return the sequence of matching entries
+     */
+    public Observable<Entry<T, S>> search(Point p, double maxDistance) {
+        return search(p.mbr(), maxDistance);
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometries are strictly less than maxDistance from the
+     * given rectangle.
+     *
+     * @param r
+     *            rectangle to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from rectangle r
+     *            (so none are returned if it is not positive)
+     * @return the sequence of matching entries
+     */
+    public Observable<Entry<T, S>> search(final Rectangle r, final double maxDistance) {
+        if (root == NO_ROOT)
+            return Observable.empty();
+        else
+            return Observable.from(new Iterable<Entry<T, S>>() {
+                @Override
+                public Iterator<Entry<T, S>> iterator() {
+                    return new SearchIterator(r, false, maxDistance);
+                }
+            });
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given rectangle where
+     * the entries are strictly less than a given maximum distance from the
+     * rectangle. The entries are emitted in ascending order of distance.
+     *
+     * @param r
+     *            rectangle
+     * @param maxDistance
+     *            max distance of returned entries from the rectangle
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(final Rectangle r, final double maxDistance,
+            final int maxCount) {
+        if (root == NO_ROOT)
+            return Observable.empty();
+        else
+            return Observable.from(new Iterable<Entry<T, S>>() {
+                @Override
+                public Iterator<Entry<T, S>> iterator() {
+                    return new NearestIterator(r, maxDistance, maxCount);
+                }
+            });
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point where the
+     * entries are strictly less than a given maximum distance from the point.
+     * The entries are emitted in ascending order of distance.
+     *
+     * @param p
+     *            point
+     * @param maxDistance
+     *            max distance of returned entries from the point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(Point p, double maxDistance, int maxCount) {
+        return nearest(p.mbr(), maxDistance, maxCount);
+    }
+
+    private static long recordPosition(long page, int index) {
+        return page + PAGE_HEADER_SIZE + (long) index * RECORD_SIZE;
+    }
+
+    /**
+     * Returns true if the geometry of the record at the given position (a
+     * child mbr or an entry geometry) intersects r.
+     */
+    private boolean intersects(long record, Rectangle r) {
+        float x1 = file.getFloat(record + 4);
+        float y1 = file.getFloat(record + 8);
+        if (file.getInt(record) == CIRCLE)
+            // as for Circle.intersects(Rectangle)
+            return circleDistance(x1, y1, file.getFloat(record + 12), r) == 0;
+        else
+            return x1 <= r.x2() && file.getFloat(record + 12) >= r.x1() && y1 <= r.y2()
+                    && file.getFloat(record + 16) >= r.y1();
+    }
+
+    /**
+     * Returns the distance from r of the geometry of the record at the given
+     * position (a child mbr or an entry geometry).
+     */
+    private double distance(long record, Rectangle r) {
+        float x1 = file.getFloat(record + 4);
+        float y1 = file.getFloat(record + 8);
+        if (file.getInt(record) == CIRCLE)
+            return circleDistance(x1, y1, file.getFloat(record + 12), r);
+        else
+            return rectangleDistance(x1, y1, file.getFloat(record + 12),
+                    file.getFloat(record + 16), r);
+    }
+
+    /**
+     * Returns the distance from r of the circle with the given centre and
+     * radius as for Circle.distance(Rectangle).
+     */
+    private static double circleDistance(float x, float y, float radius, Rectangle r) {
+        return Math.max(0, rectangleDistance(x, y, x, y, r) - radius);
+    }
+
+    /**
+     * Returns the distance from r of the rectangle with the given corners as
+     * for Rectangle.distance(Rectangle).
+     */
+    private static double rectangleDistance(float x1, float y1, float x2, float y2, Rectangle r) {
+        double dx = Math.max(0, Math.max(x1, r.x1()) - Math.min(x2, r.x2()));
+        double dy = Math.max(0, Math.max(y1, r.y1()) - Math.min(y2, r.y2()));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T, S> entry(long record) {
+        int type = file.getInt(record);
+        float a = file.getFloat(record + 4);
+        float b = file.getFloat(record + 8);
+        float c = file.getFloat(record + 12);
+        final Geometry g;
+        if (type == POINT)
+            g = Geometries.point(a, b);
+        else if (type == RECTANGLE)
+            g = Geometries.rectangle(a, b, c, file.getFloat(record + 16));
+        else
+            g = Geometries.circle(a, b, c);
+        return Entry.entry(value(file.getLong(record + 20)), (S) g);
+    }
+
+    /**
+     * Returns the value stored at the given value index (as returned by
+     * {@link MappedCursor#valueIndex()}).
+     *
+     * @param valueIndex
+     *            position of the value in the file
+     * @return deserialized value
+     */
+    public T value(long valueIndex) {
+        byte[] bytes = new byte[file.getInt(valueIndex)];
+        file.get(valueIndex + 4, bytes);
+        return deserializer.call(bytes);
+    }
+
+    /**
+     * Returns a {@link MappedCursor} over the entries whose geometry
+     * intersects with the given rectangle. The cursor reads coordinates
+     * directly from the mapped leaf pages and values are only deserialized if
+     * requested so a scan of a large window creates no objects per result.
+     *
+     * @param r
+     *            rectangle to check intersection with
+     * @return cursor over the entries that intersect with the rectangle r
+     */
+    public MappedCursor<T> cursor(Rectangle r) {
+        return new PageCursor(r, true, 0);
+    }
+
+    /**
+     * Depth first search for entries intersecting (if <code>intersects</code>)
+     * or strictly less than maxDistance from a rectangle. The path to the current page is held
+     * in arrays so nothing is allocated as the search progresses.
+     */
+    private final class PageCursor implements MappedCursor<T> {
+
+        private final Rectangle r;
+        private final boolean intersects;
+        private final double maxDistance;
+        private long[] pages = new long[8];
+        private int[] positions = new int[8];
+        private int depth = -1;
+        // true if positioned on a matching entry that has not been moved past
+        private boolean current;
+
+        PageCursor(Rectangle r, boolean intersects, double maxDistance) {
+            this.r = r;
+            this.intersects = intersects;
+            this.maxDistance = maxDistance;
+            if (root != NO_ROOT)
+                push(root);
+        }
+
+        @Override
+        public boolean next() {
+            if (current) {
+                positions[depth]++;
+                current = false;
+            }
+            while (depth >= 0) {
+                long page = pages[depth];
+                int position = positions[depth];
+                if (position == file.getInt(page + 4)) {
+                    depth--;
+                    if (depth >= 0)
+                        positions[depth]++;
+                } else {
+                    long record = recordPosition(page, position);
+                    if (matches(record)) {
+                        if (file.getInt(page) == NON_LEAF)
+                            push(file.getLong(record + 20));
+                        else {
+                            current = true;
+                            return true;
+                        }
+                    } else
+                        positions[depth]++;
+                }
+            }
+            return false;
+        }
+
+        private boolean matches(long record) {
+            if (intersects)
+                return MappedRTree.this.intersects(record, r);
+            else
+                return distance(record, r) < maxDistance;
+        }
+
+        @Override
+        public float x1() {
+            long record = record();
+            if (file.getInt(record) == CIRCLE)
+                return file.getFloat(record + 4) - file.getFloat(record + 12);
+            else
+                return file.getFloat(record + 4);
+        }
+
+        @Override
+        public float y1() {
+            long record = record();
+            if (file.getInt(record) == CIRCLE)
+                return file.getFloat(record + 8) - file.getFloat(record + 12);
+            else
+                return file.getFloat(record + 8);
+        }
+
+        @Override
+        public float x2() {
+            long record = record();
+            if (file.getInt(record) == CIRCLE)
+                return file.getFloat(record + 4) + file.getFloat(record + 12);
+            else
+                return file.getFloat(record + 12);
+        }
+
+        @Override
+        public float y2() {
+            long record = record();
+            if (file.getInt(record) == CIRCLE)
+                return file.getFloat(record + 8) + file.getFloat(record + 12);
+            else
+                return file.getFloat(record + 16);
+        }
+
+        @Override
+        public long valueIndex() {
+            return file.getLong(record() + 20);
+        }
+
+        @Override
+        public T value() {
+            return MappedRTree.this.value(valueIndex());
+        }
+
+        Entry<T, S> entry() {
+            return MappedRTree.this.entry(record());
+        }
+
+        private long record() {
+            if (!current)
+                throw new NoSuchElementException("no current entry");
+            return recordPosition(pages[depth], positions[depth]);
+        }
+
+        private void push(long page) {
+            depth++;
+            if (depth == pages.length) {
+                pages = Arrays.copyOf(pages, 2 * depth);
+                positions = Arrays.copyOf(positions, 2 * depth);
+            }
+            pages[depth] = page;
+            positions[depth] = 0;
+        }
+    }
+
+    private final class SearchIterator implements Iterator<Entry<T, S>> {
+
+        private final PageCursor cursor;
+        // true if the cursor is on an entry not yet returned by next()
+        private boolean matched;
+
+        SearchIterator(Rectangle r, boolean intersects, double maxDistance) {
+            this.cursor = new PageCursor(r, intersects, maxDistance);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!matched)
+                matched = cursor.next();
+            return matched;
+        }
+
+        @Override
+        public Entry<T, S> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            matched = false;
+            return cursor.entry();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Best-first nearest search as for {@link NearestIterable}. Candidates are
+     * page positions (for nodes) or record positions (for entries).
+     */
+    private final class NearestIterator implements Iterator<Entry<T, S>> {
+
+        private final PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+        private final Rectangle r;
+        private final double maxDistance;
+        private long remaining;
+        private long sequence;
+        private Entry<T, S> next;
+
+        NearestIterator(Rectangle r, double maxDistance, long maxCount) {
+            this.r = r;
+            this.maxDistance = maxDistance;
+            this.remaining = maxCount;
+            offerChildren(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && remaining > 0) {
+                Candidate c;
+                while (next == null && (c = queue.poll()) != null) {
+                    if (c.entry)
+                        next = entry(c.position);
+                    else
+                        offerChildren(c.position);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<T, S> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Entry<T, S> entry = next;
+            next = null;
+            remaining--;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void offerChildren(long page) {
+            boolean leaf = file.getInt(page) == LEAF;
+            int count = file.getInt(page + 4);
+            for (int i = 0; i < count; i++) {
+                long record = recordPosition(page, i);
+                double distance = MappedRTree.this.distance(record, r);
+                if (distance < maxDistance)
+                    queue.add(new Candidate(leaf ? record : file.getLong(record + 20), leaf,
+                            distance, sequence++));
+            }
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        final long position;
+        final boolean entry;
+        final double distance;
+        final long sequence;
+
+        Candidate(long position, boolean entry, double distance, long sequence) {
+            this.position = position;
+            this.entry = entry;
+            this.distance = distance;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Candidate c) {
+            int result = Double.compare(distance, c.distance);
+            if (result != 0)
+                return result;
+            else if (entry != c.entry)
+                return entry ? -1 : 1;
+            else if (sequence < c.sequence)
+                return -1;
+            else
+                return sequence == c.sequence ? 0 : 1;
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.geometry.RectangleDouble;
+
+/**
+ * Best-first k-nearest-neighbour traversal (Hjaltason and Samet, 1999). Nodes
+ * and entries are held in a priority queue keyed on their distance from the
+ * query rectangle. An entry at the head of the queue is nearer than anything
+ * not yet expanded so it can be emitted straight away, which means entries are
+ * produced lazily in ascending order of distance and only the nodes nearer
+ * than the last entry emitted are ever visited.
+ *
+ * <p>
+ * For a {@link RectangleDouble} query nodes are measured from its float mbr
+ * (which contains it, so their distances remain lower bounds) and entries are
+ * measured from the query itself in double precision.
+ * </p>
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class NearestIterable<T, S extends Geometry> implements Iterable<Entry<T, S>> {
+
+    private final Node<T, S> root;
+    private final Rectangle r;
+    private final RectangleDouble exact;
+    private final double maxDistance;
+    private final long maxCount;
+
+    /**
+     * Constructor.
+     *
+     * @param root
+     *            root node of the tree to search
+     * @param r
+     *            rectangle to measure distance from
+     * @param maxDistance
+     *            entries returned are strictly less than this distance from r
+     * @param maxCount
+     *            max number of entries to return
+     */
+    NearestIterable(Node<T, S> root, Rectangle r, double maxDistance, long maxCount) {
+        this(root, r, null, maxDistance, maxCount);
+    }
+
+    /**
+     * Constructor for a double precision query.
+     *
+     * @param root
+     *            root node of the tree to search
+     * @param r
+     *            rectangle to measure distance from
+     * @param maxDistance
+     *            entries returned are strictly less than this distance from r
+     * @param maxCount
+     *            max number of entries to return
+     */
+    NearestIterable(Node<T, S> root, RectangleDouble r, double maxDistance, long maxCount) {
+        this(root, r.mbr(), r, maxDistance, maxCount);
+    }
+
+    private NearestIterable(Node<T, S> root, Rectangle r, RectangleDouble exact,
+            double maxDistance, long maxCount) {
+        this.root = root;
+        this.r = r;
+        this.exact = exact;
+        this.maxDistance = maxDistance;
+        this.maxCount = maxCount;
+    }
+
+    @Override
+    public Iterator<Entry<T, S>> iterator() {
+        return new NearestIterator<T, S>(root, r, exact, maxDistance, maxCount);
+    }
+
+    private static final class NearestIterator<T, S extends Geometry> implements
+            Iterator<Entry<T, S>> {
+
+        private final PriorityQueue<Candidate<T, S>> queue = new PriorityQueue<Candidate<T, S>>();
+        private final Rectangle r;
+        // null unless entry distances are measured in double precision
+        private final RectangleDouble exact;
+        private final double maxDistance;
+        private long remaining;
+        private long sequence;
+        private Entry<T, S> next;
+
+        NearestIterator(Node<T, S> root, Rectangle r, RectangleDouble exact, double maxDistance,
+                long maxCount) {
+            this.r = r;
+            this.exact = exact;
+            this.maxDistance = maxDistance;
+            this.remaining = maxCount;
+            offer(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && remaining > 0)
+                next = computeNext();
+            return next != null;
+        }
+
+        @Override
+        public Entry<T, S> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Entry<T, S> entry = next;
+            next = null;
+            remaining--;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private Entry<T, S> computeNext() {
+            Candidate<T, S> c;
+            while ((c = queue.poll()) != null) {
+                if (c.entry != null)
+                    return c.entry;
+                else if (c.node instanceof Leaf) {
+                    for (Entry<T, S> entry : ((Leaf<T, S>) c.node).entries())
+                        offer(entry);
+                } else {
+                    for (Node<T, S> child : ((NonLeaf<T, S>) c.node).children())
+                        offer(child);
+                }
+            }
+            return null;
+        }
+
+        private void offer(Node<T, S> node) {
+            double distance = node.geometry().distance(r);
+            if (distance < maxDistance)
+                queue.add(new Candidate<T, S>(node, null, distance, sequence++));
+        }
+
+        private void offer(Entry<T, S> entry) {
+            double distance = exact == null ? entry.geometry().distance(r) : exact
+                    .distance(entry.geometry());
+            if (distance < maxDistance)
+                queue.add(new Candidate<T, S>(null, entry, distance, sequence++));
+        }
+    }
+
+    /**
+     * Either a node or an entry with its distance from the query rectangle.
+     * Ties on distance are broken in favour of entries (so they are emitted
+     * without expanding more nodes) then by order of discovery.
+     */
+    private static final class Candidate<T, S extends Geometry> implements
+            Comparable<Candidate<T, S>> {
+
+        final Node<T, S> node;
+        final Entry<T, S> entry;
+        final double distance;
+        final long sequence;
+
+        Candidate(Node<T, S> node, Entry<T, S> entry, double distance, long sequence) {
+            this.node = node;
+            this.entry = entry;
+            this.distance = distance;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Candidate<T, S> c) {
+            int result = Double.compare(distance, c.distance);
+            if (result != 0)
+                return result;
+            else if ((entry == null) != (c.entry == null))
+                return entry != null ? -1 : 1;
+            else if (sequence < c.sequence)
+                return -1;
+            else
+                return sequence == c.sequence ? 0 : 1;
+        }
+    }
+
+}
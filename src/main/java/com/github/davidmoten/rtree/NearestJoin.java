@@ -0,0 +1,311 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import rx.Observable;
+import rx.Scheduler;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * All-nearest-neighbours join: finds for every entry of one tree its nearest
+ * entries in another tree. The entries of each leaf of the first tree are
+ * processed together with one best-first traversal of the second tree keyed
+ * on distance from the leaf mbr. A node of the second tree is pruned when it
+ * is farther from the leaf mbr than the k-th nearest distance found so far for
+ * every entry of the leaf, and a leaf of the second tree is skipped for an
+ * entry when it is farther from the entry than that entry's k-th nearest
+ * distance. Distances are measured from the mbr of each entry of the first
+ * tree as for {@link RTree#nearest(Rectangle, double, int)}.
+ */
+final class NearestJoin {
+
+    /**
+     * Aim for more partitions than threads so that threads that finish early
+     * can pick up work left by slower ones.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private NearestJoin() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns each entry of the first tree with its nearest entries in the
+     * second tree, leaf by leaf of the first tree. The neighbours of a leaf
+     * are found when its first entry is requested.
+     *
+     * @param root1
+     *            root of the first tree
+     * @param root2
+     *            root of the second tree
+     * @param maxDistance
+     *            neighbours are strictly less than this distance from the
+     *            entry
+     * @param maxCount
+     *            max number of neighbours per entry
+     * @param <T>
+     *            the entry value type of the first tree
+     * @param <S>
+     *            the entry geometry type of the first tree
+     * @param <U>
+     *            the entry value type of the second tree
+     * @param <R>
+     *            the entry geometry type of the second tree
+     * @return entries of the first tree with their neighbours
+     */
+    static <T, S extends Geometry, U, R extends Geometry> Observable<Neighbours<T, S, U, R>> join(
+            Node<T, S> root1, Node<U, R> root2, double maxDistance, int maxCount) {
+        return Observable.from(iterable(leaves(root1), root2, maxDistance, maxCount));
+    }
+
+    /**
+     * As {@link #join(Node, Node, double, int)} but processes groups of leaves
+     * of the first tree concurrently on the given scheduler. The order of the
+     * results is not deterministic.
+     *
+     * @param root1
+     *            root of the first tree
+     * @param size
+     *            number of entries in the first tree
+     * @param root2
+     *            root of the second tree
+     * @param maxDistance
+     *            neighbours are strictly less than this distance from the
+     *            entry
+     * @param maxCount
+     *            max number of neighbours per entry
+     * @param scheduler
+     *            scheduler to process groups of leaves on
+     * @param parallelism
+     *            max number of groups of leaves processed concurrently
+     * @param <T>
+     *            the entry value type of the first tree
+     * @param <S>
+     *            the entry geometry type of the first tree
+     * @param <U>
+     *            the entry value type of the second tree
+     * @param <R>
+     *            the entry geometry type of the second tree
+     * @return entries of the first tree with their neighbours
+     */
+    static <T, S extends Geometry, U, R extends Geometry> Observable<Neighbours<T, S, U, R>> join(
+            Node<T, S> root1, int size, Node<U, R> root2, double maxDistance, int maxCount,
+            Scheduler scheduler, int parallelism) {
+        List<Leaf<T, S>> leaves = leaves(root1);
+        int partitions = Math.min(Math.min(parallelism * PARTITIONS_PER_THREAD, size
+                / ParallelSearch.MIN_ENTRIES_PER_PARTITION), leaves.size());
+        if (partitions <= 1)
+            return Observable.from(iterable(leaves, root2, maxDistance, maxCount));
+        List<Observable<Neighbours<T, S, U, R>>> joins =
+                new ArrayList<Observable<Neighbours<T, S, U, R>>>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            List<Leaf<T, S>> group = leaves.subList(i * leaves.size() / partitions, (i + 1)
+                    * leaves.size() / partitions);
+            joins.add(Observable.from(iterable(group, root2, maxDistance, maxCount))
+                    .subscribeOn(scheduler));
+        }
+        return Observable.merge(Observable.from(joins), parallelism);
+    }
+
+    private static <T, S extends Geometry> List<Leaf<T, S>> leaves(Node<T, S> root) {
+        List<Leaf<T, S>> leaves = new ArrayList<Leaf<T, S>>();
+        addLeaves(root, leaves);
+        return leaves;
+    }
+
+    private static <T, S extends Geometry> void addLeaves(Node<T, S> node,
+            List<Leaf<T, S>> leaves) {
+        if (node instanceof Leaf)
+            leaves.add((Leaf<T, S>) node);
+        else
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                addLeaves(child, leaves);
+    }
+
+    private static <T, S extends Geometry, U, R extends Geometry>
+            Iterable<Neighbours<T, S, U, R>> iterable(final List<Leaf<T, S>> leaves,
+                    final Node<U, R> root2, final double maxDistance, final int maxCount) {
+        return new Iterable<Neighbours<T, S, U, R>>() {
+            @Override
+            public Iterator<Neighbours<T, S, U, R>> iterator() {
+                return new Iterator<Neighbours<T, S, U, R>>() {
+
+                    private int leafIndex;
+                    private List<Neighbours<T, S, U, R>> batch = Collections.emptyList();
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (index == batch.size() && leafIndex < leaves.size()) {
+                            batch = neighbours(leaves.get(leafIndex++), root2, maxDistance,
+                                    maxCount);
+                            index = 0;
+                        }
+                        return index < batch.size();
+                    }
+
+                    @Override
+                    public Neighbours<T, S, U, R> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        return batch.get(index++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the entries of the leaf with their nearest entries in the tree
+     * with the given root.
+     *
+     * @param leaf
+     *            leaf of the first tree
+     * @param root2
+     *            root of the second tree
+     * @param maxDistance
+     *            neighbours are strictly less than this distance from the
+     *            entry
+     * @param maxCount
+     *            max number of neighbours per entry
+     * @param <T>
+     *            the entry value type of the first tree
+     * @param <S>
+     *            the entry geometry type of the first tree
+     * @param <U>
+     *            the entry value type of the second tree
+     * @param <R>
+     *            the entry geometry type of the second tree
+     * @return the entries of the leaf with their neighbours, in leaf order
+     */
+    static <T, S extends Geometry, U, R extends Geometry> List<Neighbours<T, S, U, R>> neighbours(
+            Leaf<T, S> leaf, Node<U, R> root2, double maxDistance, int maxCount) {
+        List<Entry<T, S>> entries = leaf.entries();
+        int n = entries.size();
+        Rectangle[] mbrs = new Rectangle[n];
+        List<PriorityQueue<Candidate<U, R>>> nearest =
+                new ArrayList<PriorityQueue<Candidate<U, R>>>(n);
+        for (int i = 0; i < n; i++) {
+            mbrs[i] = entries.get(i).geometry().mbr();
+            // farthest at the head so it can be replaced
+            nearest.add(new PriorityQueue<Candidate<U, R>>(maxCount + 1, Collections
+                    .<Candidate<U, R>> reverseOrder()));
+        }
+        Rectangle leafMbr = leaf.geometry().mbr();
+        PriorityQueue<NodeDistance<U, R>> queue = new PriorityQueue<NodeDistance<U, R>>();
+        double bound = maxDistance;
+        long sequence = 0;
+        queue.add(new NodeDistance<U, R>(root2, root2.geometry().distance(leafMbr)));
+        NodeDistance<U, R> nd;
+        while ((nd = queue.poll()) != null && nd.distance < bound) {
+            if (nd.node instanceof NonLeaf) {
+                for (Node<U, R> child : ((NonLeaf<U, R>) nd.node).children()) {
+                    double d = child.geometry().distance(leafMbr);
+                    if (d < bound)
+                        queue.add(new NodeDistance<U, R>(child, d));
+                }
+            } else {
+                Leaf<U, R> leaf2 = (Leaf<U, R>) nd.node;
+                Rectangle leaf2Mbr = leaf2.geometry().mbr();
+                List<Entry<U, R>> entries2 = leaf2.entries();
+                for (int i = 0; i < n; i++) {
+                    PriorityQueue<Candidate<U, R>> q = nearest.get(i);
+                    double kth = kth(q, maxDistance, maxCount);
+                    if (leaf2Mbr.distance(mbrs[i]) < kth) {
+                        for (int j = 0; j < entries2.size(); j++) {
+                            Entry<U, R> entry2 = entries2.get(j);
+                            double d = entry2.geometry().distance(mbrs[i]);
+                            if (d < kth) {
+                                q.add(new Candidate<U, R>(entry2, d, sequence++));
+                                if (q.size() > maxCount)
+                                    q.poll();
+                                kth = kth(q, maxDistance, maxCount);
+                            }
+                        }
+                    }
+                }
+                bound = 0;
+                for (int i = 0; i < n; i++)
+                    bound = Math.max(bound, kth(nearest.get(i), maxDistance, maxCount));
+            }
+        }
+        List<Neighbours<T, S, U, R>> list = new ArrayList<Neighbours<T, S, U, R>>(n);
+        for (int i = 0; i < n; i++) {
+            List<Candidate<U, R>> candidates = new ArrayList<Candidate<U, R>>(nearest.get(i));
+            Collections.sort(candidates);
+            List<Entry<U, R>> neighbours = new ArrayList<Entry<U, R>>(candidates.size());
+            for (Candidate<U, R> c : candidates)
+                neighbours.add(c.entry);
+            list.add(new Neighbours<T, S, U, R>(entries.get(i), neighbours));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the distance a new neighbour must be under to be kept.
+     */
+    private static double kth(PriorityQueue<? extends Candidate<?, ?>> q, double maxDistance,
+            int maxCount) {
+        if (q.size() < maxCount)
+            return maxDistance;
+        else
+            return q.peek().distance;
+    }
+
+    private static final class NodeDistance<U, R extends Geometry> implements
+            Comparable<NodeDistance<U, R>> {
+        final Node<U, R> node;
+        final double distance;
+
+        NodeDistance(Node<U, R> node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(NodeDistance<U, R> o) {
+            return Double.compare(distance, o.distance);
+        }
+    }
+
+    /**
+     * A neighbour with its distance. Ties on distance are broken by order of
+     * discovery.
+     */
+    private static final class Candidate<U, R extends Geometry> implements
+            Comparable<Candidate<U, R>> {
+        final Entry<U, R> entry;
+        final double distance;
+        final long sequence;
+
+        Candidate(Entry<U, R> entry, double distance, long sequence) {
+            this.entry = entry;
+            this.distance = distance;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Candidate<U, R> c) {
+            int result = Double.compare(distance, c.distance);
+            if (result != 0)
+                return result;
+            else if (sequence < c.sequence)
+                return -1;
+            else
+                return sequence == c.sequence ? 0 : 1;
+        }
+    }
+
+}
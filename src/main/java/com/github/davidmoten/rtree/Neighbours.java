@@ -0,0 +1,77 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * An entry of one R-tree with its nearest entries in another R-tree, emitted
+ * by {@link RTree#nearestJoin(RTree, double, int)}.
+ *
+ * @param <T>
+ *            the value type of the entry
+ * @param <S>
+ *            the geometry type of the entry
+ * @param <U>
+ *            the value type of the neighbours
+ * @param <R>
+ *            the geometry type of the neighbours
+ */
+public final class Neighbours<T, S extends Geometry, U, R extends Geometry> {
+
+    private final Entry<T, S> entry;
+    private final List<Entry<U, R>> neighbours;
+
+    /**
+     * Constructor.
+     *
+     * @param entry
+     *            entry from the first tree
+     * @param neighbours
+     *            nearest entries from the second tree in ascending order of
+     *            distance
+     */
+    public Neighbours(Entry<T, S> entry, List<Entry<U, R>> neighbours) {
+        this.entry = entry;
+        this.neighbours = neighbours;
+    }
+
+    public Entry<T, S> entry() {
+        return entry;
+    }
+
+    /**
+     * Returns the nearest entries to {@link #entry()} in ascending order of
+     * distance.
+     *
+     * @return nearest entries
+     */
+    public List<Entry<U, R>> neighbours() {
+        return neighbours;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(entry, neighbours);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        @SuppressWarnings("rawtypes")
+        Optional<Neighbours> other = ObjectsHelper.asClass(obj, Neighbours.class);
+        if (other.isPresent()) {
+            return Objects.equal(entry, other.get().entry)
+                    && Objects.equal(neighbours, other.get().neighbours);
+        } else
+            return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Neighbours [entry=" + entry + ", neighbours=" + neighbours + "]";
+    }
+
+}
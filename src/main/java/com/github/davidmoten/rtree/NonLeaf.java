@@ -19,6 +19,11 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
 
     private final List<? extends Node<T, S>> children;
     private final Rectangle mbr;
+    /**
+     * The mbrs of the children as x1,y1,x2,y2 for each child in order so that
+     * searches can test children without dereferencing them.
+     */
+    private final float[] mbrs;
     private final Context context;
 
     NonLeaf(List<? extends Node<T, S>> children, Context context) {
@@ -26,6 +31,7 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
         this.context = context;
         this.children = children;
         this.mbr = Util.mbr(children);
+        this.mbrs = Util.mbrs(children);
     }
 
     @Override
@@ -40,14 +46,115 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
         if (!criterion.call(this.geometry().mbr()))
             return;
 
-        for (final Node<T, S> child : children) {
+        if (criterion instanceof IntersectsRectangle)
+            searchChildren(((IntersectsRectangle) criterion).rectangle(), subscriber);
+        else
+            for (final Node<T, S> child : children) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                else
+                    child.search(criterion, subscriber);
+            }
+    }
+
+    /**
+     * Emits the entries below this node that intersect r without checking the
+     * mbr of this node first. Children are tested against the packed mbrs
+     * array before they are dereferenced and don't test their own mbrs again.
+     * 
+     * @param r
+     *            rectangle to search
+     * @param subscriber
+     *            subscriber to emit matching entries to
+     */
+    void searchChildren(Rectangle r, Subscriber<? super Entry<T, S>> subscriber) {
+        final float x1 = r.x1();
+        final float y1 = r.y1();
+        final float x2 = r.x2();
+        final float y2 = r.y2();
+        final float[] a = mbrs;
+        final int n = children.size();
+        for (int i = 0; i < n; i++) {
             if (subscriber.isUnsubscribed())
                 return;
-            else
-                child.search(criterion, subscriber);
+            final int j = 4 * i;
+            if (a[j] <= x2 && a[j + 2] >= x1 && a[j + 1] <= y2 && a[j + 3] >= y1) {
+                Node<T, S> child = children.get(i);
+                if (child instanceof NonLeaf)
+                    ((NonLeaf<T, S>) child).searchChildren(r, subscriber);
+                else
+                    ((Leaf<T, S>) child).searchEntries(r, subscriber);
+            }
         }
     }
 
+    /**
+     * Visits the entries below this node that intersect r without checking the
+     * mbr of this node first.
+     * 
+     * @param r
+     *            rectangle to search
+     * @param visitor
+     *            receives matching entries
+     * @return false if the visitor stopped the search
+     */
+    boolean visitChildren(Rectangle r, Visitor<? super Entry<T, S>> visitor) {
+        final float x1 = r.x1();
+        final float y1 = r.y1();
+        final float x2 = r.x2();
+        final float y2 = r.y2();
+        final float[] a = mbrs;
+        final int n = children.size();
+        for (int i = 0; i < n; i++) {
+            final int j = 4 * i;
+            if (a[j] <= x2 && a[j + 2] >= x1 && a[j + 1] <= y2 && a[j + 3] >= y1) {
+                Node<T, S> child = children.get(i);
+                final boolean more;
+                if (child instanceof NonLeaf)
+                    more = ((NonLeaf<T, S>) child).visitChildren(r, visitor);
+                else
+                    more = ((Leaf<T, S>) child).visitEntries(r, visitor);
+                if (!more)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the mbr of the child at the given index satisfies the
+     * condition. A rectangle intersection condition is tested against the
+     * packed mbrs array without dereferencing the child.
+     * 
+     * @param index
+     *            position of the child in this node
+     * @param condition
+     *            search condition
+     * @return true if the child mbr satisfies the condition
+     */
+    boolean childMatches(int index, Func1<? super Geometry, Boolean> condition) {
+        if (condition instanceof IntersectsRectangle)
+            return childIntersects(index, ((IntersectsRectangle) condition).rectangle());
+        else
+            return condition.call(children.get(index).geometry());
+    }
+
+    /**
+     * Returns true if the mbr of the child at the given index intersects r
+     * (tested against the packed mbrs array).
+     * 
+     * @param index
+     *            position of the child in this node
+     * @param r
+     *            rectangle
+     * @return true if the child mbr intersects r
+     */
+    boolean childIntersects(int index, Rectangle r) {
+        final int j = 4 * index;
+        return mbrs[j] <= r.x2() && mbrs[j + 2] >= r.x1() && mbrs[j + 1] <= r.y2()
+                && mbrs[j + 3] >= r.y1();
+    }
+
     @Override
     public int count() {
         return children.size();
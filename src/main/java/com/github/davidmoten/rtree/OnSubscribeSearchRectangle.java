@@ -0,0 +1,112 @@
+package com.github.davidmoten.rtree;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable.OnSubscribe;
+import rx.Producer;
+import rx.Subscriber;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Emits the entries intersecting a rectangle. Intersection tests are done on
+ * primitives (no boxed Boolean) and the backpressure path keeps its position in
+ * a {@link RectangleSearchCursor} so apart from any entries created by flat
+ * point leaves no objects are allocated per entry.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class OnSubscribeSearchRectangle<T, S extends Geometry> implements
+        OnSubscribe<Entry<T, S>> {
+
+    private final Node<T, S> node;
+    private final Rectangle r;
+
+    OnSubscribeSearchRectangle(Node<T, S> node, Rectangle r) {
+        this.node = node;
+        this.r = r;
+    }
+
+    @Override
+    public void call(Subscriber<? super Entry<T, S>> subscriber) {
+        subscriber.setProducer(new SearchRectangleProducer<T, S>(node, r, subscriber));
+    }
+
+    static final class SearchRectangleProducer<T, S extends Geometry> implements Producer {
+
+        private final Subscriber<? super Entry<T, S>> subscriber;
+        private final Node<T, S> node;
+        private final Rectangle r;
+        // only accessed by the thread that moved requested from zero, the
+        // atomic updates of requested ensure visibility between threads
+        private RectangleSearchCursor<T, S> cursor;
+        private final AtomicLong requested = new AtomicLong(0);
+
+        SearchRectangleProducer(Node<T, S> node, Rectangle r,
+                Subscriber<? super Entry<T, S>> subscriber) {
+            this.node = node;
+            this.r = r;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            try {
+                if (n <= 0 || requested.get() == Long.MAX_VALUE)
+                    // none requested or already started with fast path
+                    return;
+                else if (n == Long.MAX_VALUE && requested.compareAndSet(0, Long.MAX_VALUE)) {
+                    // fast path
+                    requestAll();
+                } else
+                    requestSome(n);
+            } catch (RuntimeException e) {
+                subscriber.onError(e);
+            }
+        }
+
+        private void requestAll() {
+            if (node.geometry().mbr().intersects(r)) {
+                if (node instanceof NonLeaf)
+                    ((NonLeaf<T, S>) node).searchChildren(r, subscriber);
+                else
+                    ((Leaf<T, S>) node).searchEntries(r, subscriber);
+            }
+            if (!subscriber.isUnsubscribed())
+                subscriber.onCompleted();
+        }
+
+        private void requestSome(long n) {
+            // back pressure path, see OnSubscribeSearch
+            long previousCount = requested.getAndAdd(n);
+            if (previousCount == 0) {
+                if (cursor == null)
+                    cursor = new RectangleSearchCursor<T, S>(node, r);
+                while (true) {
+                    long numToEmit = requested.get();
+                    long emitted = 0;
+                    while (emitted < numToEmit && cursor.hasNext()) {
+                        if (subscriber.isUnsubscribed())
+                            return;
+                        subscriber.onNext(cursor.next());
+                        emitted++;
+                    }
+                    if (subscriber.isUnsubscribed())
+                        return;
+                    // hasNext looks ahead so we complete as soon as the last
+                    // match has been emitted rather than on the next request
+                    else if (!cursor.hasNext()) {
+                        subscriber.onCompleted();
+                        return;
+                    } else if (requested.addAndGet(-numToEmit) == 0)
+                        return;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,371 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Bulk loading of an R-tree using the Sort-Tile-Recursive (STR) algorithm of
+ * Leutenegger, Lopez and Edgington (1997). Leaves are packed from the entries
+ * and then each level of non-leaf nodes is packed from the level below until a
+ * single root node remains. No {@link Selector} or {@link Splitter} work is
+ * done and every leaf is at the same depth.
+ */
+final class Packing {
+
+    /**
+     * Levels with fewer items than this are packed on the current thread
+     * because the cost of scheduling tasks would outweigh the gain.
+     */
+    static final int MIN_PARALLEL_SIZE = 10000;
+
+    private Packing() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the root node of a tree packed from the given entries. The list
+     * of entries is not modified.
+     *
+     * @param entries
+     *            entries to pack (must not be empty)
+     * @param context
+     *            tree options
+     * @param loadingFactor
+     *            proportion of maxChildren to fill each node with
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the root node of the packed tree
+     */
+    static <T, S extends Geometry> Node<T, S> pack(List<Entry<T, S>> entries, Context context,
+            double loadingFactor) {
+        final int capacity = capacity(context, loadingFactor);
+        final int minSize = context.minChildren();
+        final int maxSize = context.maxChildren();
+        List<Node<T, S>> nodes = new ArrayList<Node<T, S>>();
+        for (List<Entry<T, S>> group : tile(new ArrayList<Entry<T, S>>(entries), capacity,
+                minSize, maxSize))
+            nodes.add(new Leaf<T, S>(group, context));
+        while (nodes.size() > 1) {
+            final List<Node<T, S>> parents = new ArrayList<Node<T, S>>();
+            for (List<Node<T, S>> group : tile(nodes, capacity, minSize, maxSize))
+                parents.add(new NonLeaf<T, S>(group, context));
+            nodes = parents;
+        }
+        return nodes.get(0);
+    }
+
+    /**
+     * Returns the root node of a tree packed from the given entries using up to
+     * <code>parallelism</code> concurrent tasks on the scheduler for the
+     * sorting and node creation of each level. The result is the same as
+     * {@link #pack(List, Context, double)}. The list of entries is not
+     * modified.
+     *
+     * @param entries
+     *            entries to pack (must not be empty)
+     * @param context
+     *            tree options
+     * @param loadingFactor
+     *            proportion of maxChildren to fill each node with
+     * @param scheduler
+     *            scheduler to run the tasks on
+     * @param parallelism
+     *            max number of concurrent tasks
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return the root node of the packed tree
+     */
+    static <T, S extends Geometry> Node<T, S> pack(List<Entry<T, S>> entries,
+            final Context context, double loadingFactor, Scheduler scheduler, int parallelism) {
+        final int capacity = capacity(context, loadingFactor);
+        final int minSize = context.minChildren();
+        final int maxSize = context.maxChildren();
+        List<Node<T, S>> nodes = tileParallel(entries, capacity, minSize, maxSize,
+                new Func1<List<Entry<T, S>>, Node<T, S>>() {
+                    @Override
+                    public Node<T, S> call(List<Entry<T, S>> group) {
+                        return new Leaf<T, S>(group, context);
+                    }
+                }, scheduler, parallelism);
+        while (nodes.size() > 1)
+            nodes = tileParallel(nodes, capacity, minSize, maxSize,
+                    new Func1<List<Node<T, S>>, Node<T, S>>() {
+                        @Override
+                        public Node<T, S> call(List<Node<T, S>> group) {
+                            return new NonLeaf<T, S>(group, context);
+                        }
+                    }, scheduler, parallelism);
+        return nodes.get(0);
+    }
+
+    /**
+     * Returns the number of children to place in each packed node. The result
+     * is at least 2 (so that each level is smaller than the level below) and
+     * at least minChildren but never more than maxChildren.
+     *
+     * @param context
+     *            tree options
+     * @param loadingFactor
+     *            proportion of maxChildren to fill each node with
+     * @return number of children per packed node
+     */
+    static int capacity(Context context, double loadingFactor) {
+        int capacity = (int) Math.round(context.maxChildren() * loadingFactor);
+        capacity = Math.max(capacity, Math.max(2, context.minChildren()));
+        return Math.min(capacity, context.maxChildren());
+    }
+
+    /**
+     * Sorts the items into vertical slices by x centre then sorts each slice by
+     * y centre and cuts it into groups of about capacity items. Note that
+     * <code>items</code> is sorted in place. Every group has at most maxSize
+     * items and, unless there is only one group, at least minSize items as
+     * long as 2 * minSize is at most maxSize + 1.
+     *
+     * @param items
+     *            items to group
+     * @param capacity
+     *            desired size of each group
+     * @param minSize
+     *            min size of each group
+     * @param maxSize
+     *            max size of each group
+     * @return groups of items, each group destined to be a node
+     */
+    static <T extends HasGeometry> List<List<T>> tile(List<T> items, int capacity, int minSize,
+            int maxSize) {
+        final int[] starts = sliceStarts(items.size(), capacity, minSize);
+        Collections.sort(items, INCREASING_X_CENTRE);
+        final List<List<T>> groups = new ArrayList<List<T>>();
+        for (int i = 0; i < starts.length - 1; i++) {
+            List<T> slice = items.subList(starts[i], starts[i + 1]);
+            Collections.sort(slice, INCREASING_Y_CENTRE);
+            addGroups(groups, slice, capacity, minSize, maxSize);
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the start index of each vertical slice followed by the number
+     * of items. There are about sqrt(size / capacity) slices each holding a
+     * whole number of groups of capacity items except the last, which holds
+     * the rest. If the rest is fewer than minSize items it is added to the
+     * slice before so that it doesn't make a node with too few children.
+     */
+    private static int[] sliceStarts(int size, int capacity, int minSize) {
+        final int nodeCount = divideRoundingUp(size, capacity);
+        final int slices = (int) Math.ceil(Math.sqrt(nodeCount));
+        final int sliceSize = divideRoundingUp(nodeCount, slices) * capacity;
+        int count = divideRoundingUp(size, sliceSize);
+        if (count > 1 && size - (count - 1) * sliceSize < minSize)
+            count--;
+        final int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i++)
+            starts[i] = i * sliceSize;
+        starts[count] = size;
+        return starts;
+    }
+
+    /**
+     * As for {@link #tile(List, int, int, int)} followed by making a node from each
+     * group but the sort by x centre is a parallel merge sort and the slices
+     * are sorted and their nodes made concurrently. Levels with fewer than
+     * {@link #MIN_PARALLEL_SIZE} items are processed on the current thread.
+     * The list of items is not modified.
+     */
+    private static <T extends HasGeometry, N> List<N> tileParallel(List<T> items,
+            final int capacity, final int minSize, final int maxSize,
+            final Func1<List<T>, N> factory, Scheduler scheduler, int parallelism) {
+        if (parallelism <= 1 || items.size() < MIN_PARALLEL_SIZE) {
+            List<N> nodes = new ArrayList<N>();
+            for (List<T> group : tile(new ArrayList<T>(items), capacity, minSize, maxSize))
+                nodes.add(factory.call(group));
+            return nodes;
+        }
+        final int[] starts = sliceStarts(items.size(), capacity, minSize);
+        final List<T> sorted = parallelSort(items, INCREASING_X_CENTRE, scheduler, parallelism);
+        final int sliceCount = starts.length - 1;
+        final List<List<N>> results = new ArrayList<List<N>>(Collections.<List<N>> nCopies(
+                sliceCount, null));
+        List<Action0> tasks = new ArrayList<Action0>(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            final int index = i;
+            tasks.add(new Action0() {
+                @Override
+                public void call() {
+                    List<T> slice = sorted.subList(starts[index], starts[index + 1]);
+                    Collections.sort(slice, INCREASING_Y_CENTRE);
+                    List<List<T>> groups = new ArrayList<List<T>>();
+                    addGroups(groups, slice, capacity, minSize, maxSize);
+                    List<N> nodes = new ArrayList<N>(groups.size());
+                    for (List<T> group : groups)
+                        nodes.add(factory.call(group));
+                    results.set(index, nodes);
+                }
+            });
+        }
+        runAll(tasks, scheduler, parallelism);
+        List<N> nodes = new ArrayList<N>();
+        for (List<N> list : results)
+            nodes.addAll(list);
+        return nodes;
+    }
+
+    /**
+     * Returns a sorted copy of the list. Runs of the list are sorted
+     * concurrently then merged in pairs concurrently. Like
+     * {@link Collections#sort(List, Comparator)} the sort is stable.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> parallelSort(List<T> list, final Comparator<? super T> comparator,
+            Scheduler scheduler, int parallelism) {
+        Object[] a = list.toArray();
+        Object[] b = new Object[a.length];
+        final int runs = Math.max(1, Math.min(parallelism, a.length));
+        int[] bounds = new int[runs + 1];
+        for (int i = 0; i <= runs; i++)
+            bounds[i] = (int) ((long) a.length * i / runs);
+        List<Action0> tasks = new ArrayList<Action0>();
+        for (int i = 0; i < runs; i++) {
+            final Object[] array = a;
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            tasks.add(new Action0() {
+                @Override
+                public void call() {
+                    Arrays.sort((T[]) array, from, to, comparator);
+                }
+            });
+        }
+        runAll(tasks, scheduler, parallelism);
+        while (bounds.length > 2) {
+            tasks.clear();
+            int[] merged = new int[(bounds.length) / 2 + 1];
+            int k = 0;
+            for (int i = 0; i < bounds.length - 1; i += 2) {
+                final Object[] src = a;
+                final Object[] dest = b;
+                final int from = bounds[i];
+                final int mid = bounds[Math.min(i + 1, bounds.length - 1)];
+                final int to = bounds[Math.min(i + 2, bounds.length - 1)];
+                merged[k++] = from;
+                tasks.add(new Action0() {
+                    @Override
+                    public void call() {
+                        merge((T[]) src, from, mid, to, (T[]) dest, comparator);
+                    }
+                });
+            }
+            merged[k++] = bounds[bounds.length - 1];
+            runAll(tasks, scheduler, parallelism);
+            bounds = Arrays.copyOf(merged, k);
+            Object[] temp = a;
+            a = b;
+            b = temp;
+        }
+        return Arrays.asList((T[]) a);
+    }
+
+    /**
+     * Merges the sorted ranges [from, mid) and [mid, to) of src into the same
+     * range of dest, taking from the first range when elements are equal.
+     */
+    private static <T> void merge(T[] src, int from, int mid, int to, T[] dest,
+            Comparator<? super T> comparator) {
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j == to || (i < mid && comparator.compare(src[i], src[j]) <= 0))
+                dest[k] = src[i++];
+            else
+                dest[k] = src[j++];
+        }
+    }
+
+    /**
+     * Runs the tasks with at most <code>parallelism</code> of them running
+     * concurrently on the scheduler and waits for them all to finish. An
+     * exception thrown by a task is rethrown.
+     */
+    private static void runAll(List<Action0> tasks, Scheduler scheduler, int parallelism) {
+        List<Observable<Void>> observables = new ArrayList<Observable<Void>>(tasks.size());
+        for (final Action0 task : tasks)
+            observables.add(Observable.create(new OnSubscribe<Void>() {
+                @Override
+                public void call(Subscriber<? super Void> subscriber) {
+                    task.call();
+                    subscriber.onCompleted();
+                }
+            }).subscribeOn(scheduler));
+        Observable.merge(Observable.from(observables), parallelism).toBlocking()
+                .lastOrDefault(null);
+    }
+
+    /**
+     * Cuts the slice into the minimum number of groups of at most capacity
+     * items with the group sizes differing by at most one (so that a slice
+     * doesn't end with a sparsely populated node). If that would give groups
+     * of fewer than minSize items (possible when capacity is less than 2 *
+     * minSize - 1) then as many groups of at least minSize items as possible
+     * are made instead, but never so few that a group has more than maxSize
+     * items.
+     */
+    private static <T> void addGroups(List<List<T>> groups, List<T> slice, int capacity,
+            int minSize, int maxSize) {
+        int count = divideRoundingUp(slice.size(), capacity);
+        if (slice.size() / count < minSize)
+            count = Math.max(divideRoundingUp(slice.size(), maxSize), slice.size() / minSize);
+        final int size = slice.size() / count;
+        final int remainder = slice.size() % count;
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            final int end = start + size + (i < remainder ? 1 : 0);
+            groups.add(new ArrayList<T>(slice.subList(start, end)));
+            start = end;
+        }
+    }
+
+    private static int divideRoundingUp(int n, int d) {
+        return (n + d - 1) / d;
+    }
+
+    private static final Comparator<HasGeometry> INCREASING_X_CENTRE = new Comparator<HasGeometry>() {
+
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            Rectangle r1 = g1.geometry().mbr();
+            Rectangle r2 = g2.geometry().mbr();
+            // compare doubled centres to avoid division
+            return Float.compare(r1.x1() + r1.x2(), r2.x1() + r2.x2());
+        }
+    };
+
+    private static final Comparator<HasGeometry> INCREASING_Y_CENTRE = new Comparator<HasGeometry>() {
+
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            Rectangle r1 = g1.geometry().mbr();
+            Rectangle r2 = g2.geometry().mbr();
+            return Float.compare(r1.y1() + r1.y2(), r2.y1() + r2.y2());
+        }
+    };
+
+}
@@ -0,0 +1,241 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.functions.Func2;
+import rx.functions.FuncN;
+
+import com.github.davidmoten.rtree.JoinIterator.NodePair;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.google.common.collect.Lists;
+
+/**
+ * Spatial join split into pairs of subtrees which are joined concurrently.
+ * The pairs are found by descending both trees together from the roots as
+ * {@link JoinIterator} does until there are enough of them, so joining every
+ * pair finds each matching pair of entries exactly once. The trees are
+ * immutable so subtrees can be joined from any thread without coordination.
+ */
+final class ParallelJoin {
+
+    /**
+     * Aim for more partitions than threads so that threads that finish early
+     * can pick up work left by slower ones.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private ParallelJoin() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the matching pairs of entries found by joining pairs of
+     * subtrees concurrently on the given scheduler. If <code>ordered</code>
+     * then the pairs are emitted in the same order as the single threaded
+     * join, otherwise in the order they are found. The pairs of subtrees are
+     * chosen when the result is subscribed to.
+     *
+     * @param root1
+     *            root of the first tree
+     * @param size1
+     *            number of entries in the first tree
+     * @param root2
+     *            root of the second tree
+     * @param size2
+     *            number of entries in the second tree
+     * @param predicate
+     *            condition on the geometries of entries with intersecting
+     *            mbrs
+     * @param scheduler
+     *            scheduler to join the subtrees on
+     * @param parallelism
+     *            max number of pairs of subtrees joined concurrently
+     * @param ordered
+     *            if true emit the pairs in the order of the single threaded
+     *            join
+     * @param <T>
+     *            the entry value type of the first tree
+     * @param <S>
+     *            the entry geometry type of the first tree
+     * @param <U>
+     *            the entry value type of the second tree
+     * @param <R>
+     *            the entry geometry type of the second tree
+     * @return matching pairs of entries
+     */
+    static <T, S extends Geometry, U, R extends Geometry> Observable<EntryPair<T, S, U, R>> join(
+            final Node<T, S> root1, final int size1, final Node<U, R> root2, final int size2,
+            final Func2<? super S, ? super R, Boolean> predicate, final Scheduler scheduler,
+            final int parallelism, final boolean ordered) {
+        return Observable.defer(new Func0<Observable<EntryPair<T, S, U, R>>>() {
+            @Override
+            public Observable<EntryPair<T, S, U, R>> call() {
+                List<NodePair<T, S, U, R>> partitions = partition(root1, size1, root2, size2,
+                        parallelism * PARTITIONS_PER_THREAD);
+                if (partitions.size() <= 1)
+                    return Observable.from(iterable(root1, root2, predicate));
+                else if (ordered)
+                    return joinOrdered(partitions, predicate, scheduler, parallelism);
+                else {
+                    List<Observable<EntryPair<T, S, U, R>>> joins =
+                            new ArrayList<Observable<EntryPair<T, S, U, R>>>(partitions.size());
+                    for (NodePair<T, S, U, R> pair : partitions)
+                        joins.add(Observable.from(iterable(pair, predicate)).subscribeOn(
+                                scheduler));
+                    return Observable.merge(Observable.from(joins), parallelism);
+                }
+            }
+        });
+    }
+
+    /**
+     * Joins the partitions in consecutive groups of <code>parallelism</code>.
+     * The partitions of a group are joined concurrently collecting the pairs
+     * of each partition in a list, and the lists are emitted in partition
+     * order once the whole group has finished. The next group is not started
+     * until the pairs of the previous group have been emitted so at most one
+     * group of partitions is held in memory.
+     */
+    private static <T, S extends Geometry, U, R extends Geometry>
+            Observable<EntryPair<T, S, U, R>> joinOrdered(List<NodePair<T, S, U, R>> partitions,
+                    final Func2<? super S, ? super R, Boolean> predicate,
+                    final Scheduler scheduler, int parallelism) {
+        return Observable.from(Lists.partition(partitions, parallelism)).concatMap(
+                new Func1<List<NodePair<T, S, U, R>>, Observable<EntryPair<T, S, U, R>>>() {
+                    @Override
+                    public Observable<EntryPair<T, S, U, R>> call(
+                            List<NodePair<T, S, U, R>> group) {
+                        List<Observable<List<EntryPair<T, S, U, R>>>> joins =
+                                new ArrayList<Observable<List<EntryPair<T, S, U, R>>>>(
+                                        group.size());
+                        for (NodePair<T, S, U, R> pair : group)
+                            joins.add(Observable.from(iterable(pair, predicate)).toList()
+                                    .subscribeOn(scheduler));
+                        return Observable.zip(joins,
+                                new FuncN<List<EntryPair<T, S, U, R>>>() {
+                                    @SuppressWarnings("unchecked")
+                                    @Override
+                                    public List<EntryPair<T, S, U, R>> call(Object... lists) {
+                                        List<EntryPair<T, S, U, R>> pairs =
+                                                new ArrayList<EntryPair<T, S, U, R>>();
+                                        for (Object list : lists)
+                                            pairs.addAll((List<EntryPair<T, S, U, R>>) list);
+                                        return pairs;
+                                    }
+                                }).flatMapIterable(
+                                new Func1<List<EntryPair<T, S, U, R>>,
+                                        Iterable<EntryPair<T, S, U, R>>>() {
+                                    @Override
+                                    public Iterable<EntryPair<T, S, U, R>> call(
+                                            List<EntryPair<T, S, U, R>> pairs) {
+                                        return pairs;
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /**
+     * Returns the pairs of nodes with intersecting mbrs whose joins together
+     * find every matching pair of entries exactly once, in the order the
+     * single threaded join visits them. Starting from the pair of roots, pairs
+     * that are not two leaves are replaced by their child pairs as
+     * {@link JoinIterator} descends until there are at least
+     * <code>target</code> of them, but a pair is only replaced if its child
+     * pairs are estimated to hold at least
+     * {@link ParallelSearch#MIN_ENTRIES_PER_PARTITION} entries each between
+     * the two subtrees. The number of entries under a node is estimated as
+     * the estimate for its parent divided by the number of children of the
+     * parent (the roots hold <code>size1</code> and <code>size2</code>
+     * entries).
+     *
+     * @param root1
+     *            root of the first tree
+     * @param size1
+     *            number of entries in the first tree
+     * @param root2
+     *            root of the second tree
+     * @param size2
+     *            number of entries in the second tree
+     * @param target
+     *            desired number of partitions
+     * @param <T>
+     *            the entry value type of the first tree
+     * @param <S>
+     *            the entry geometry type of the first tree
+     * @param <U>
+     *            the entry value type of the second tree
+     * @param <R>
+     *            the entry geometry type of the second tree
+     * @return pairs of subtrees to join
+     */
+    static <T, S extends Geometry, U, R extends Geometry> List<NodePair<T, S, U, R>> partition(
+            Node<T, S> root1, int size1, Node<U, R> root2, int size2, int target) {
+        if (!root1.geometry().mbr().intersects(root2.geometry().mbr()))
+            return Collections.emptyList();
+        List<NodePair<T, S, U, R>> pairs = Collections.singletonList(new NodePair<T, S, U, R>(
+                root1, root2));
+        List<double[]> estimates = Collections.singletonList(new double[] { size1, size2 });
+        while (pairs.size() < target) {
+            List<NodePair<T, S, U, R>> nextPairs = new ArrayList<NodePair<T, S, U, R>>();
+            List<double[]> nextEstimates = new ArrayList<double[]>();
+            boolean expanded = false;
+            for (int k = 0; k < pairs.size(); k++) {
+                NodePair<T, S, U, R> pair = pairs.get(k);
+                double[] estimate = estimates.get(k);
+                // a leaf is paired with the children of the other node
+                double childEstimate1 = pair.node1 instanceof NonLeaf ? estimate[0]
+                        / pair.node1.count() : estimate[0];
+                double childEstimate2 = pair.node2 instanceof NonLeaf ? estimate[1]
+                        / pair.node2.count() : estimate[1];
+                double childEstimate = childEstimate1 + childEstimate2;
+                if (!pair.isLeaves() && childEstimate >= ParallelSearch.MIN_ENTRIES_PER_PARTITION) {
+                    for (NodePair<T, S, U, R> child : JoinIterator.childPairs(pair)) {
+                        nextPairs.add(child);
+                        nextEstimates.add(new double[] { childEstimate1, childEstimate2 });
+                    }
+                    expanded = true;
+                } else {
+                    nextPairs.add(pair);
+                    nextEstimates.add(estimate);
+                }
+            }
+            if (!expanded)
+                break;
+            pairs = nextPairs;
+            estimates = nextEstimates;
+        }
+        return pairs;
+    }
+
+    private static <T, S extends Geometry, U, R extends Geometry>
+            Iterable<EntryPair<T, S, U, R>> iterable(
+            final Node<T, S> root1, final Node<U, R> root2,
+            final Func2<? super S, ? super R, Boolean> predicate) {
+        return new Iterable<EntryPair<T, S, U, R>>() {
+            @Override
+            public Iterator<EntryPair<T, S, U, R>> iterator() {
+                return new JoinIterator<T, S, U, R>(root1, root2, predicate);
+            }
+        };
+    }
+
+    private static <T, S extends Geometry, U, R extends Geometry>
+            Iterable<EntryPair<T, S, U, R>> iterable(
+            final NodePair<T, S, U, R> pair, final Func2<? super S, ? super R, Boolean> predicate) {
+        return new Iterable<EntryPair<T, S, U, R>>() {
+            @Override
+            public Iterator<EntryPair<T, S, U, R>> iterator() {
+                return new JoinIterator<T, S, U, R>(pair, predicate);
+            }
+        };
+    }
+
+}
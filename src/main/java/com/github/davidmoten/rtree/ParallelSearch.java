@@ -0,0 +1,135 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Rectangle search split across subtrees near the root which are searched
+ * concurrently. The tree is immutable so subtrees can be searched from any
+ * thread without coordination.
+ */
+final class ParallelSearch {
+
+    /**
+     * Partitions are not made smaller than this (estimated) number of entries
+     * so that small searches aren't swamped by scheduling overhead.
+     */
+    static final int MIN_ENTRIES_PER_PARTITION = 1000;
+
+    /**
+     * Aim for more partitions than threads so that threads that finish early
+     * can pick up work left by slower ones.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private ParallelSearch() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the entries intersecting r found by searching subtrees
+     * concurrently on the given scheduler. The order of the entries is not
+     * deterministic. The subtrees are chosen when the result is subscribed to.
+     * 
+     * @param root
+     *            root of the tree
+     * @param size
+     *            number of entries in the tree
+     * @param r
+     *            rectangle to search
+     * @param scheduler
+     *            scheduler to search the subtrees on
+     * @param parallelism
+     *            number of subtrees searched concurrently
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return entries intersecting r
+     */
+    static <T, S extends Geometry> Observable<Entry<T, S>> search(final Node<T, S> root,
+            final int size, final Rectangle r, final Scheduler scheduler, final int parallelism) {
+        return Observable.defer(new Func0<Observable<Entry<T, S>>>() {
+            @Override
+            public Observable<Entry<T, S>> call() {
+                List<Node<T, S>> partitions = partition(root, size, r, parallelism
+                        * PARTITIONS_PER_THREAD);
+                if (partitions.size() <= 1)
+                    return Observable.create(new OnSubscribeSearchRectangle<T, S>(root, r));
+                List<Observable<Entry<T, S>>> searches = new ArrayList<Observable<Entry<T, S>>>(
+                        partitions.size());
+                for (Node<T, S> node : partitions)
+                    searches.add(Observable.create(new OnSubscribeSearchRectangle<T, S>(node, r))
+                            .subscribeOn(scheduler));
+                return Observable.merge(Observable.from(searches), parallelism);
+            }
+        });
+    }
+
+    /**
+     * Returns nodes intersecting r whose subtrees together contain every entry
+     * intersecting r exactly once. Starting from the root, nodes are replaced
+     * by their children intersecting r until there are at least
+     * <code>target</code> of them, but a node is only replaced if its children
+     * are estimated to hold at least {@link #MIN_ENTRIES_PER_PARTITION}
+     * entries each. The number of entries under a node is estimated as the
+     * estimate for its parent divided by the number of children of the parent
+     * (the root holds <code>size</code> entries).
+     * 
+     * @param root
+     *            root of the tree
+     * @param size
+     *            number of entries in the tree
+     * @param r
+     *            rectangle to search
+     * @param target
+     *            desired number of partitions
+     * @param <T>
+     *            value type
+     * @param <S>
+     *            geometry type
+     * @return subtrees to search
+     */
+    static <T, S extends Geometry> List<Node<T, S>> partition(Node<T, S> root, int size,
+            Rectangle r, int target) {
+        if (!root.geometry().mbr().intersects(r))
+            return Collections.emptyList();
+        List<Node<T, S>> nodes = Collections.singletonList(root);
+        List<Double> estimates = Collections.singletonList((double) size);
+        while (nodes.size() < target) {
+            List<Node<T, S>> nextNodes = new ArrayList<Node<T, S>>();
+            List<Double> nextEstimates = new ArrayList<Double>();
+            boolean expanded = false;
+            for (int k = 0; k < nodes.size(); k++) {
+                Node<T, S> node = nodes.get(k);
+                double childEstimate = estimates.get(k) / node.count();
+                if (node instanceof NonLeaf && childEstimate >= MIN_ENTRIES_PER_PARTITION) {
+                    NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+                    for (int i = 0; i < nonLeaf.count(); i++)
+                        if (nonLeaf.childIntersects(i, r)) {
+                            nextNodes.add(nonLeaf.children().get(i));
+                            nextEstimates.add(childEstimate);
+                        }
+                    expanded = true;
+                } else {
+                    nextNodes.add(node);
+                    nextEstimates.add(estimates.get(k));
+                }
+            }
+            if (!expanded)
+                break;
+            nodes = nextNodes;
+            estimates = nextEstimates;
+        }
+        return nodes;
+    }
+
+}
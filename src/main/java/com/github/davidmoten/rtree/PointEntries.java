@@ -0,0 +1,144 @@
+package com.github.davidmoten.rtree;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * The entries of a leaf whose geometries are all {@link Point}s held as
+ * interleaved x,y coordinates in a <code>float[]</code> with a parallel
+ * <code>Object[]</code> of values. This avoids an {@link Entry}, a
+ * {@link Point} and a {@link Rectangle} object per entry. Entries are created
+ * when requested by {@link #get(int)}. The arrays are sized to the number of
+ * entries and cannot be modified ({@link TransientRTree} edits its own copies
+ * of leaves so never appends here).
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class PointEntries<T, S extends Geometry> extends AbstractList<Entry<T, S>> {
+
+    private final float[] xy;
+    private final Object[] values;
+
+    private PointEntries(float[] xy, Object[] values) {
+        this.xy = xy;
+        this.values = values;
+    }
+
+    /**
+     * Returns true if and only if every entry has a {@link Point} geometry.
+     *
+     * @param entries
+     *            entries to check
+     * @return true if all geometries are points
+     */
+    static boolean canStore(List<? extends Entry<?, ?>> entries) {
+        for (Entry<?, ?> entry : entries)
+            if (!(entry.geometry() instanceof Point))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the entries (which must all have {@link Point} geometries) in
+     * flat form.
+     *
+     * @param entries
+     *            entries to copy
+     * @return flat copy of entries
+     */
+    static <T, S extends Geometry> PointEntries<T, S> create(List<Entry<T, S>> entries) {
+        final int n = entries.size();
+        final float[] xy = new float[2 * n];
+        final Object[] values = new Object[n];
+        for (int i = 0; i < n; i++) {
+            Entry<T, S> entry = entries.get(i);
+            Point p = (Point) entry.geometry();
+            xy[2 * i] = p.x();
+            xy[2 * i + 1] = p.y();
+            values[i] = entry.value();
+        }
+        return new PointEntries<T, S>(xy, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Entry<T, S> get(int index) {
+        checkIndex(index);
+        return Entry.entry((T) values[index],
+                (S) Geometries.point(xy[2 * index], xy[2 * index + 1]));
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns true if the point at the given index is in the (closed) rectangle.
+     * Equivalent to <code>get(index).geometry().intersects(r)</code> without
+     * creating any objects.
+     *
+     * @param index
+     *            position of entry
+     * @param r
+     *            rectangle
+     * @return true if the point intersects the rectangle
+     */
+    boolean intersects(int index, Rectangle r) {
+        checkIndex(index);
+        float x = xy[2 * index];
+        float y = xy[2 * index + 1];
+        return x >= r.x1() && x <= r.x2() && y >= r.y1() && y <= r.y2();
+    }
+
+    /**
+     * Returns the x coordinate of the point at the given index.
+     *
+     * @param index
+     *            position of entry
+     * @return x coordinate
+     */
+    float x(int index) {
+        checkIndex(index);
+        return xy[2 * index];
+    }
+
+    /**
+     * Returns the y coordinate of the point at the given index.
+     *
+     * @param index
+     *            position of entry
+     * @return y coordinate
+     */
+    float y(int index) {
+        checkIndex(index);
+        return xy[2 * index + 1];
+    }
+
+    /**
+     * Returns the value of the entry at the given index.
+     *
+     * @param index
+     *            position of entry
+     * @return value
+     */
+    @SuppressWarnings("unchecked")
+    T value(int index) {
+        checkIndex(index);
+        return (T) values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= values.length)
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + values.length);
+    }
+
+}
@@ -4,18 +4,27 @@ import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
 import static com.google.common.base.Optional.absent;
 import static com.google.common.base.Optional.of;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.functions.Func2;
+import rx.schedulers.Schedulers;
 
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.PointDouble;
 import com.github.davidmoten.rtree.geometry.Rectangle;
-import com.github.davidmoten.rx.operators.OperatorBoundedPriorityQueue;
+import com.github.davidmoten.rtree.geometry.RectangleDouble;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Lists;
 
 /**
@@ -48,6 +57,12 @@ public final class RTree<T, S extends Geometry> {
      */
     private int size;
 
+    /**
+     * Cache of rectangle search results, created on first use if
+     * {@link Context#searchCacheSize()} is positive.
+     */
+    private volatile SearchCache<T, S> searchCache;
+
     /**
      * Constructor.
      * 
@@ -56,7 +71,7 @@ public final class RTree<T, S extends Geometry> {
      * @param context
      *            options for the R-tree
      */
-    private RTree(Optional<? extends Node<T, S>> root, int size, Context context) {
+    RTree(Optional<? extends Node<T, S>> root, int size, Context context) {
         this.root = root;
         this.size = size;
         this.context = context;
@@ -98,6 +113,24 @@ public final class RTree<T, S extends Geometry> {
         return new Builder().create();
     }
 
+    /**
+     * Returns a new {@link RTree} bulk loaded with the given entries using the
+     * Sort-Tile-Recursive (STR) algorithm. Defaults to maxChildren=4,
+     * minChildren=2, splitter=QuadraticSplitter (used by subsequent
+     * additions).
+     * 
+     * @param entries
+     *            entries to load into the R-tree
+     * @param <T>
+     *            the value type of the entries in the tree
+     * @param <S>
+     *            the geometry type of the entries in the tree
+     * @return a new RTree instance containing the given entries
+     */
+    public static <T, S extends Geometry> RTree<T, S> create(List<Entry<T, S>> entries) {
+        return new Builder().create(entries);
+    }
+
     /**
      * The tree is scanned for depth and the depth returned. This involves
      * recursing down to the leaf level of the tree to get the current depth.
@@ -181,6 +214,60 @@ public final class RTree<T, S extends Geometry> {
         return new Builder().star();
     }
 
+    /**
+     * Sets the proportion of maxChildren that each node is filled to when bulk
+     * loading with {@link Builder#create(List)}.
+     * 
+     * @param factor
+     *            proportion of maxChildren, greater than 0 and at most 1
+     * @return builder
+     */
+    public static Builder loadingFactor(double factor) {
+        return new Builder().loadingFactor(factor);
+    }
+
+    /**
+     * Stores the entries of leaves with only {@link Point} geometries in flat
+     * primitive arrays rather than as {@link Entry} objects.
+     * 
+     * @return builder
+     */
+    public static Builder flatPointLeaves() {
+        return new Builder().flatPointLeaves();
+    }
+
+    /**
+     * Sets the builder to reinsert the farthest 30% of the children of an
+     * overflowing node before splitting it (R* forced reinsertion).
+     * 
+     * @return builder
+     */
+    public static Builder forcedReinsertion() {
+        return new Builder().forcedReinsertion();
+    }
+
+    /**
+     * Bulk loading with {@link Builder#create(List)} sorts and builds nodes
+     * concurrently using one task per available processor.
+     * 
+     * @return builder
+     */
+    public static Builder parallel() {
+        return new Builder().parallel();
+    }
+
+    /**
+     * Sets the builder to cache rectangle search results holding up to
+     * <code>maxEntries</code> entries in total per tree.
+     * 
+     * @param maxEntries
+     *            max total number of entries in the cached search results
+     * @return builder
+     */
+    public static Builder searchCache(int maxEntries) {
+        return new Builder().searchCache(maxEntries);
+    }
+
     /**
      * RTree Builder.
      */
@@ -193,11 +280,29 @@ public final class RTree<T, S extends Geometry> {
          * quadratic split and R*-tree split.
          */
         private static final double DEFAULT_FILLING_FACTOR = 0.4;
+
+        /**
+         * Bulk loaded nodes are left partly empty so that subsequent additions
+         * don't immediately cause node splits.
+         */
+        private static final double DEFAULT_LOADING_FACTOR = 0.7;
+
+        /**
+         * Proportion of children reinserted on overflow recommended by the
+         * R*-tree paper.
+         */
+        private static final double DEFAULT_REINSERTION_FRACTION = 0.3;
         private Optional<Integer> maxChildren = absent();
         private Optional<Integer> minChildren = absent();
         private Splitter splitter = new SplitterQuadratic();
         private Selector selector = new SelectorMinimalAreaIncrease();
         private boolean star = false;
+        private double loadingFactor = DEFAULT_LOADING_FACTOR;
+        private boolean flatPointLeaves = false;
+        private double reinsertionFraction = 0;
+        private Scheduler scheduler = Schedulers.computation();
+        private int parallelism = 1;
+        private int searchCacheSize = 0;
 
         private Builder() {
         }
@@ -267,6 +372,118 @@ public final class RTree<T, S extends Geometry> {
             return this;
         }
 
+        /**
+         * Sets the proportion of maxChildren that each node is filled to when
+         * bulk loading with {@link #create(List)}. Defaults to 0.7.
+         * 
+         * @param factor
+         *            proportion of maxChildren, greater than 0 and at most 1
+         * @return builder
+         */
+        public Builder loadingFactor(double factor) {
+            Preconditions.checkArgument(factor > 0 && factor <= 1);
+            this.loadingFactor = factor;
+            return this;
+        }
+
+        /**
+         * Stores the entries of leaves with only {@link Point} geometries in
+         * flat primitive arrays (interleaved x,y coordinates and a parallel
+         * array of values) rather than as {@link Entry} objects that each
+         * reference a {@link Point} and its {@link Rectangle}. This uses much
+         * less memory and rectangle searches scan the coordinates directly.
+         * Entries are recreated when they are read from a leaf so insertions
+         * and deletions are a bit slower.
+         * 
+         * @return builder
+         */
+        public Builder flatPointLeaves() {
+            this.flatPointLeaves = true;
+            return this;
+        }
+
+        /**
+         * When a node other than the root overflows, removes the 30% of its
+         * children farthest from its centre and inserts them again from the
+         * root instead of splitting the node, at most once per level per
+         * insertion (the forced reinsertion of the R*-tree paper). This
+         * redistributes entries between neighbouring nodes so that trees built
+         * by many insertions keep less overlap between nodes and stay faster
+         * to search, at the cost of slower insertions.
+         * 
+         * @return builder
+         */
+        public Builder forcedReinsertion() {
+            return forcedReinsertion(DEFAULT_REINSERTION_FRACTION);
+        }
+
+        /**
+         * As {@link #forcedReinsertion()} but reinserts the given proportion
+         * of the children of an overflowing node.
+         * 
+         * @param fraction
+         *            proportion of the children to reinsert, greater than 0
+         *            and less than 1
+         * @return builder
+         */
+        public Builder forcedReinsertion(double fraction) {
+            Preconditions.checkArgument(fraction > 0 && fraction < 1);
+            this.reinsertionFraction = fraction;
+            return this;
+        }
+
+        /**
+         * Bulk loading with {@link #create(List)} sorts and builds nodes
+         * concurrently using one task per available processor on
+         * {@link Schedulers#computation()}. The tree is the same as when
+         * built on one thread.
+         * 
+         * @return builder
+         */
+        public Builder parallel() {
+            return parallel(Schedulers.computation(), Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * Bulk loading with {@link #create(List)} sorts and builds nodes
+         * concurrently using up to <code>parallelism</code> tasks on the given
+         * scheduler. The tree is the same as when built on one thread.
+         * 
+         * @param scheduler
+         *            scheduler to run the tasks on
+         * @param parallelism
+         *            max number of concurrent tasks
+         * @return builder
+         */
+        public Builder parallel(Scheduler scheduler, int parallelism) {
+            Preconditions.checkNotNull(scheduler);
+            Preconditions.checkArgument(parallelism > 0);
+            this.scheduler = scheduler;
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Caches the results of rectangle searches (see
+         * {@link RTree#search(Rectangle)}) so that repeated queries such as
+         * the viewport of a map return without walking the tree. The cache
+         * holds up to <code>maxEntries</code> entries in total across its
+         * results (an empty result counts as one) so a result larger than
+         * that is never kept. Results are held as arrays and the least
+         * recently used rectangles are evicted first. Each tree has its own
+         * cache so the trees returned by add and delete start with an empty
+         * one.
+         * 
+         * @param maxEntries
+         *            max total number of entries in the cached search results
+         * @return builder
+         */
+        public Builder searchCache(int maxEntries) {
+            Preconditions.checkArgument(maxEntries > 0);
+            this.searchCacheSize = maxEntries;
+            return this;
+        }
+
         /**
          * Builds the {@link RTree}.
          * 
@@ -277,6 +494,38 @@ public final class RTree<T, S extends Geometry> {
          * @return RTree
          */
         public <T, S extends Geometry> RTree<T, S> create() {
+            return new RTree<T, S>(createContext());
+        }
+
+        /**
+         * Builds an {@link RTree} containing the given entries using the
+         * Sort-Tile-Recursive (STR) bulk loading algorithm. This is much faster
+         * than adding the entries one at a time and the resulting tree
+         * typically has less overlap between nodes so searches are faster too.
+         * Nodes are filled to <code>loadingFactor</code> of maxChildren. See
+         * {@link #parallel()} to use more than one thread.
+         * 
+         * @param entries
+         *            entries to load into the R-tree
+         * @param <T>
+         *            value type
+         * @param <S>
+         *            geometry type
+         * @return RTree containing the entries
+         */
+        public <T, S extends Geometry> RTree<T, S> create(List<Entry<T, S>> entries) {
+            Context context = createContext();
+            if (entries.isEmpty())
+                return new RTree<T, S>(context);
+            else if (parallelism > 1)
+                return new RTree<T, S>(Packing.pack(entries, context, loadingFactor, scheduler,
+                        parallelism), entries.size(), context);
+            else
+                return new RTree<T, S>(Packing.pack(entries, context, loadingFactor),
+                        entries.size(), context);
+        }
+
+        private Context createContext() {
             if (!maxChildren.isPresent())
                 if (star)
                     maxChildren = of(MAX_CHILDREN_DEFAULT_STAR);
@@ -284,8 +533,8 @@ public final class RTree<T, S extends Geometry> {
                     maxChildren = of(MAX_CHILDREN_DEFAULT_GUTTMAN);
             if (!minChildren.isPresent())
                 minChildren = of((int) Math.round(maxChildren.get() * DEFAULT_FILLING_FACTOR));
-            return new RTree<T, S>(new Context(minChildren.get(), maxChildren.get(), selector,
-                    splitter));
+            return new Context(minChildren.get(), maxChildren.get(), selector, splitter,
+                    flatPointLeaves, reinsertionFraction, searchCacheSize);
         }
 
     }
@@ -299,7 +548,10 @@ public final class RTree<T, S extends Geometry> {
      */
     @SuppressWarnings("unchecked")
     public RTree<T, S> add(Entry<? extends T, ? extends S> entry) {
-        if (root.isPresent()) {
+        if (root.isPresent() && context.reinsertionFraction() > 0)
+            return new RTree<T, S>(ForcedReinsertion.add(root.get(), (Entry<T, S>) entry,
+                    context), size + 1, context);
+        else if (root.isPresent()) {
             List<Node<T, S>> nodes = root.get().add(entry);
             Node<T, S> node;
             if (nodes.size() == 1)
@@ -337,10 +589,20 @@ public final class RTree<T, S extends Geometry> {
      * @return R-tree with entries added
      */
     public RTree<T, S> add(Iterable<Entry<T, S>> entries) {
-        RTree<T, S> tree = this;
-        for (Entry<T, S> entry : entries)
-            tree = tree.add(entry);
-        return tree;
+        return toTransient().add(entries).build();
+    }
+
+    /**
+     * Returns a mutable {@link TransientRTree} initialized with the entries of
+     * this R-tree (which is not affected by changes to the transient). Use it
+     * to apply a batch of additions and deletions without copying the path
+     * from the root for every change then call {@link TransientRTree#build()}
+     * to get an immutable R-tree back.
+     * 
+     * @return a transient R-tree sharing structure with this R-tree
+     */
+    public TransientRTree<T, S> toTransient() {
+        return new TransientRTree<T, S>(root, size, context);
     }
 
     /**
@@ -393,10 +655,7 @@ public final class RTree<T, S extends Geometry> {
      * @return R-tree with entries deleted
      */
     public RTree<T, S> delete(Iterable<Entry<T, S>> entries, boolean all) {
-        RTree<T, S> tree = this;
-        for (Entry<T, S> entry : entries)
-            tree = tree.delete(entry, all);
-        return tree;
+        return toTransient().delete(entries, all).build();
     }
 
     /**
@@ -409,10 +668,7 @@ public final class RTree<T, S extends Geometry> {
      *         entry
      */
     public RTree<T, S> delete(Iterable<Entry<T, S>> entries) {
-        RTree<T, S> tree = this;
-        for (Entry<T, S> entry : entries)
-            tree = tree.delete(entry);
-        return tree;
+        return delete(entries, false);
     }
 
     /**
@@ -529,12 +785,7 @@ public final class RTree<T, S extends Geometry> {
      * @return whether the geometry and the rectangle intersect
      */
     public static Func1<Geometry, Boolean> intersects(final Rectangle r) {
-        return new Func1<Geometry, Boolean>() {
-            @Override
-            public Boolean call(Geometry g) {
-                return g.intersects(r);
-            }
-        };
+        return new IntersectsRectangle(r);
     }
 
     /**
@@ -551,14 +802,182 @@ public final class RTree<T, S extends Geometry> {
     /**
      * Returns an {@link Observable} sequence of all {@link Entry}s in the
      * R-tree whose minimum bounding rectangle intersects with the given
-     * rectangle.
+     * rectangle. If the tree was built with {@link Builder#searchCache(int)}
+     * then the results are found on subscription and cached.
      * 
      * @param r
      *            rectangle to check intersection with the entry mbr
      * @return entries that intersect with the rectangle r
      */
     public Observable<Entry<T, S>> search(final Rectangle r) {
-        return search(intersects(r));
+        if (!root.isPresent())
+            return Observable.empty();
+        else if (context.searchCacheSize() > 0)
+            return Observable.defer(new Func0<Observable<Entry<T, S>>>() {
+                @Override
+                public Observable<Entry<T, S>> call() {
+                    return Observable.from(searchCache().search(r));
+                }
+            });
+        else
+            return Observable.create(new OnSubscribeSearchRectangle<T, S>(root.get(), r));
+    }
+
+    private SearchCache<T, S> searchCache() {
+        SearchCache<T, S> c = searchCache;
+        if (c == null) {
+            synchronized (this) {
+                c = searchCache;
+                if (c == null) {
+                    c = new SearchCache<T, S>(root.get(), context.searchCacheSize());
+                    searchCache = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Returns the hit and miss statistics of the search cache of this tree
+     * (see {@link Builder#searchCache(int)}), absent if searches are not
+     * cached.
+     * 
+     * @return search cache statistics
+     */
+    public Optional<CacheStats> searchCacheStats() {
+        if (context.searchCacheSize() == 0)
+            return absent();
+        else if (!root.isPresent())
+            return of(new CacheStats(0, 0, 0, 0, 0, 0));
+        else
+            return of(searchCache().stats());
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose minimum bounding rectangle intersects with the given
+     * rectangle, searching subtrees concurrently on
+     * {@link Schedulers#computation()}. Useful for searches returning a large
+     * proportion of a large tree. The order of the entries is not
+     * deterministic. Small trees are searched on the current thread as for
+     * {@link #search(Rectangle)}.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @return entries that intersect with the rectangle r
+     */
+    public Observable<Entry<T, S>> searchParallel(Rectangle r) {
+        return searchParallel(r, Schedulers.computation(), Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose minimum bounding rectangle intersects with the given
+     * rectangle, searching up to <code>parallelism</code> subtrees
+     * concurrently on the given scheduler. The order of the entries is not
+     * deterministic. Subtrees are not split off with fewer than about 1000
+     * entries so small trees are searched on the current thread as for
+     * {@link #search(Rectangle)}.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @param scheduler
+     *            scheduler to search subtrees on
+     * @param parallelism
+     *            max number of subtrees to search concurrently
+     * @return entries that intersect with the rectangle r
+     */
+    public Observable<Entry<T, S>> searchParallel(Rectangle r, Scheduler scheduler,
+            int parallelism) {
+        Preconditions.checkArgument(parallelism > 0);
+        if (root.isPresent())
+            return ParallelSearch.search(root.get(), size, r, scheduler, parallelism);
+        else
+            return Observable.empty();
+    }
+
+    /**
+     * Calls the visitor synchronously with each {@link Entry} in the R-tree
+     * whose minimum bounding rectangle intersects with the given rectangle
+     * until the visitor returns false. This avoids the overhead of creating
+     * an {@link Observable} which is significant for small queries.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @param visitor
+     *            receives the entries that intersect with the rectangle r
+     * @return false if the visitor stopped the search early otherwise true
+     */
+    public boolean search(Rectangle r, Visitor<? super Entry<T, S>> visitor) {
+        if (!root.isPresent() || !root.get().geometry().mbr().intersects(r))
+            return true;
+        else if (root.get() instanceof NonLeaf)
+            return ((NonLeaf<T, S>) root.get()).visitChildren(r, visitor);
+        else
+            return ((Leaf<T, S>) root.get()).visitEntries(r, visitor);
+    }
+
+    /**
+     * Returns for each of the given rectangles the {@link Entry}s in the
+     * R-tree whose minimum bounding rectangle intersects with it. The tree is
+     * walked once for the whole batch carrying the rectangles that intersect
+     * each node, so nodes near the root are visited once rather than once per
+     * rectangle. Much faster than separate searches when there are many
+     * rectangles (for instance thousands of geofences checked per tick).
+     * 
+     * @param rectangles
+     *            rectangles to check intersection with the entry mbr
+     * @return a list of the entries that intersect with each rectangle, in the
+     *         same order as the rectangles
+     */
+    public List<List<Entry<T, S>>> searchBatch(List<Rectangle> rectangles) {
+        Preconditions.checkNotNull(rectangles);
+        if (root.isPresent())
+            return BatchSearch.search(root.get(), rectangles);
+        else {
+            List<List<Entry<T, S>>> results = new ArrayList<List<Entry<T, S>>>(
+                    rectangles.size());
+            for (int i = 0; i < rectangles.size(); i++)
+                results.add(Collections.<Entry<T, S>> emptyList());
+            return results;
+        }
+    }
+
+    /**
+     * Returns the {@link Entry}s in the R-tree whose minimum bounding rectangle
+     * intersects with the given rectangle as an {@link Iterable}. Each
+     * iterator walks the tree lazily as it is advanced.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @return entries that intersect with the rectangle r
+     */
+    public Iterable<Entry<T, S>> searchIterable(final Rectangle r) {
+        if (!root.isPresent())
+            return Collections.emptyList();
+        else
+            return new Iterable<Entry<T, S>>() {
+                @Override
+                public Iterator<Entry<T, S>> iterator() {
+                    return new RectangleSearchCursor<T, S>(root.get(), r);
+                }
+            };
+    }
+
+    /**
+     * Returns a {@link Cursor} over the {@link Entry}s in the R-tree whose
+     * minimum bounding rectangle intersects with the given rectangle. The
+     * cursor reads coordinates and values straight from the leaves (entries
+     * of a tree built with {@link Builder#flatPointLeaves()} are not
+     * materialised) so is the cheapest way to scan large result sets.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry mbr
+     * @return cursor over the entries that intersect with the rectangle r
+     */
+    public Cursor<T> cursor(Rectangle r) {
+        return new RectangleCursor<T, S>(root.orNull(), r);
     }
 
     /**
@@ -665,10 +1084,80 @@ public final class RTree<T, S extends Geometry> {
         return search(p.mbr(), maxDistance);
     }
 
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometry intersects with the given rectangle. The
+     * intersection test is done in double precision (see
+     * {@link RectangleDouble#intersects(Geometry)}).
+     * 
+     * @param r
+     *            rectangle to check intersection with
+     * @return entries that intersect with the rectangle r
+     */
+    public Observable<Entry<T, S>> search(final RectangleDouble r) {
+        return search(new Func1<Geometry, Boolean>() {
+            @Override
+            public Boolean call(Geometry g) {
+                return r.intersects(g);
+            }
+        });
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometry intersects with the given point, tested in double
+     * precision.
+     * 
+     * @param p
+     *            point to check intersection with
+     * @return entries that intersect with the point p
+     */
+    public Observable<Entry<T, S>> search(final PointDouble p) {
+        return search(toRectangle(p));
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometry is strictly less than maxDistance from the given
+     * rectangle. Distances are calculated in double precision (see
+     * {@link RectangleDouble#distance(Geometry)}).
+     * 
+     * @param r
+     *            rectangle to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from rectangle r
+     * @return the sequence of matching entries
+     */
+    public Observable<Entry<T, S>> search(final RectangleDouble r, final double maxDistance) {
+        return search(new Func1<Geometry, Boolean>() {
+            @Override
+            public Boolean call(Geometry g) {
+                return r.distance(g) < maxDistance;
+            }
+        });
+    }
+
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose geometry is strictly less than maxDistance from the given
+     * point. Distances are calculated in double precision.
+     * 
+     * @param p
+     *            point to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from point p
+     * @return the sequence of matching entries
+     */
+    public Observable<Entry<T, S>> search(final PointDouble p, final double maxDistance) {
+        return search(toRectangle(p), maxDistance);
+    }
+
     /**
      * Returns the nearest k entries (k=maxCount) to the given rectangle where
      * the entries are strictly less than a given maximum distance from the
-     * rectangle.
+     * rectangle. The tree is traversed best-first so entries are emitted lazily
+     * (supporting backpressure) in ascending order of distance and only the
+     * nodes nearer than the k-th entry are visited.
      * 
      * @param r
      *            rectangle
@@ -679,9 +1168,11 @@ public final class RTree<T, S extends Geometry> {
      * @return nearest entries to maxCount, in ascending order of distance
      */
     public Observable<Entry<T, S>> nearest(final Rectangle r, final double maxDistance, int maxCount) {
-        return search(r, maxDistance).lift(
-                new OperatorBoundedPriorityQueue<Entry<T, S>>(maxCount, Comparators
-                        .<T, S> ascendingDistance(r)));
+        if (root.isPresent())
+            return Observable.from(new NearestIterable<T, S>(root.get(), r, maxDistance,
+                    maxCount));
+        else
+            return Observable.empty();
     }
 
     /**
@@ -700,6 +1191,306 @@ public final class RTree<T, S extends Geometry> {
         return nearest(p.mbr(), maxDistance, maxCount);
     }
 
+    /**
+     * Returns all entries of the R-tree in ascending order of distance from
+     * the given rectangle. The tree is traversed best-first as entries are
+     * requested (the sequence supports backpressure) so only the nodes nearer
+     * than the last entry requested are visited. Use operators like
+     * <code>takeWhile</code>, <code>filter</code> and <code>take</code>
+     * instead of guessing a maximum distance and count up front: the
+     * traversal stops when they unsubscribe.
+     * 
+     * @param r
+     *            rectangle to measure distance from
+     * @return all entries in ascending order of distance from r
+     */
+    public Observable<Entry<T, S>> nearestStream(Rectangle r) {
+        if (root.isPresent())
+            return Observable.from(new NearestIterable<T, S>(root.get(), r,
+                    Double.POSITIVE_INFINITY, Long.MAX_VALUE));
+        else
+            return Observable.empty();
+    }
+
+    /**
+     * Returns all entries of the R-tree in ascending order of distance from
+     * the given point. See {@link #nearestStream(Rectangle)}.
+     * 
+     * @param p
+     *            point to measure distance from
+     * @return all entries in ascending order of distance from p
+     */
+    public Observable<Entry<T, S>> nearestStream(Point p) {
+        return nearestStream(p.mbr());
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given rectangle where
+     * the entries are strictly less than a given maximum distance from the
+     * rectangle. Distances from entries are calculated in double precision
+     * (see {@link RectangleDouble#distance(Geometry)}).
+     * 
+     * @param r
+     *            rectangle
+     * @param maxDistance
+     *            max distance of returned entries from the rectangle
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(final RectangleDouble r, final double maxDistance,
+            int maxCount) {
+        if (root.isPresent())
+            return Observable.from(new NearestIterable<T, S>(root.get(), r, maxDistance,
+                    maxCount));
+        else
+            return Observable.empty();
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point where the
+     * entries are strictly less than a given maximum distance from the point.
+     * Distances are calculated in double precision.
+     * 
+     * @param p
+     *            point
+     * @param maxDistance
+     *            max distance of returned entries from the point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(final PointDouble p, final double maxDistance,
+            int maxCount) {
+        return nearest(toRectangle(p), maxDistance, maxCount);
+    }
+
+    private static RectangleDouble toRectangle(PointDouble p) {
+        return RectangleDouble.create(p.x(), p.y(), p.x(), p.y());
+    }
+
+    /**
+     * Returns the pairs of entries, one from this tree and one from the other
+     * tree, whose minimum bounding rectangles intersect and whose geometries
+     * satisfy the predicate (a spatial join). Both trees are descended
+     * together so that only pairs of nodes whose mbrs intersect are visited,
+     * which is much faster than searching one tree for each entry of the
+     * other. The pairs are found lazily as they are requested so the
+     * {@link Observable} supports backpressure.
+     * 
+     * @param other
+     *            tree to join with
+     * @param predicate
+     *            returns true if the geometries of a pair of entries with
+     *            intersecting mbrs match
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return pairs of matching entries
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> join(
+            final RTree<U, R> other, final Func2<? super S, ? super R, Boolean> predicate) {
+        Preconditions.checkNotNull(predicate);
+        if (!root.isPresent() || !other.root.isPresent())
+            return Observable.empty();
+        else
+            return Observable.from(new Iterable<EntryPair<T, S, U, R>>() {
+                @Override
+                public Iterator<EntryPair<T, S, U, R>> iterator() {
+                    return new JoinIterator<T, S, U, R>(root.get(), other.root.get(), predicate);
+                }
+            });
+    }
+
+    /**
+     * As {@link #join(RTree, Func2)} but joins pairs of subtrees concurrently
+     * on {@link Schedulers#computation()} using one task per available
+     * processor. The order of the pairs is not deterministic. Small trees are
+     * joined on the current thread.
+     * 
+     * @param other
+     *            tree to join with
+     * @param predicate
+     *            returns true if the geometries of a pair of entries with
+     *            intersecting mbrs match
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return pairs of matching entries
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> joinParallel(
+            RTree<U, R> other, Func2<? super S, ? super R, Boolean> predicate) {
+        return joinParallel(other, predicate, Schedulers.computation(), Runtime.getRuntime()
+                .availableProcessors(), false);
+    }
+
+    /**
+     * As {@link #join(RTree, Func2)} but joins up to <code>parallelism</code>
+     * pairs of subtrees concurrently on the given scheduler. The pairs of
+     * subtrees are found by descending both trees together until there are a
+     * few per task, but subtrees with fewer than about 1000 entries are not
+     * split off so small trees are joined on the current thread. If
+     * <code>ordered</code> then the pairs are emitted in the same order as
+     * {@link #join(RTree, Func2)}: pairs of subtrees are joined in
+     * consecutive groups of <code>parallelism</code> and the pairs found for
+     * a group are collected and emitted once the whole group has been joined.
+     * Otherwise pairs are emitted as they are found on the joining threads.
+     * 
+     * @param other
+     *            tree to join with
+     * @param predicate
+     *            returns true if the geometries of a pair of entries with
+     *            intersecting mbrs match
+     * @param scheduler
+     *            scheduler to join pairs of subtrees on
+     * @param parallelism
+     *            max number of pairs of subtrees joined concurrently
+     * @param ordered
+     *            if true emit pairs in the order of the single threaded join
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return pairs of matching entries
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> joinParallel(
+            RTree<U, R> other, Func2<? super S, ? super R, Boolean> predicate,
+            Scheduler scheduler, int parallelism, boolean ordered) {
+        Preconditions.checkNotNull(predicate);
+        Preconditions.checkNotNull(scheduler);
+        Preconditions.checkArgument(parallelism > 0);
+        if (!root.isPresent() || !other.root.isPresent())
+            return Observable.empty();
+        else
+            return ParallelJoin.join(root.get(), size, other.root.get(), other.size, predicate,
+                    scheduler, parallelism, ordered);
+    }
+
+    /**
+     * Returns the pairs of entries, one from this tree and one from the other
+     * tree, whose minimum bounding rectangles intersect. See
+     * {@link #join(RTree, Func2)}.
+     * 
+     * @param other
+     *            tree to join with
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return pairs of entries with intersecting mbrs
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> join(RTree<U, R> other) {
+        return join(other, new Func2<Geometry, Geometry, Boolean>() {
+            @Override
+            public Boolean call(Geometry g1, Geometry g2) {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Returns every entry of this tree with its nearest k entries (k=maxCount)
+     * in the other tree that are strictly less than maxDistance from it (an
+     * all-nearest-neighbours or kNN join). The neighbours of each entry are
+     * those that {@link #nearest(Rectangle, double, int)} on the other tree
+     * with the entry mbr would return, in ascending order of distance, but
+     * the entries of each leaf of this tree are processed together in one
+     * traversal of the other tree that prunes its nodes using the mbrs of
+     * both trees. Results are produced leaf by leaf as they are requested.
+     * 
+     * @param other
+     *            tree to find neighbours in
+     * @param maxDistance
+     *            max distance of neighbours from an entry
+     * @param maxCount
+     *            max number of neighbours per entry
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return each entry of this tree with its nearest entries in the other
+     *         tree
+     */
+    public <U, R extends Geometry> Observable<Neighbours<T, S, U, R>> nearestJoin(
+            RTree<U, R> other, double maxDistance, int maxCount) {
+        Preconditions.checkArgument(maxCount > 0);
+        if (!root.isPresent())
+            return Observable.empty();
+        else if (!other.root.isPresent())
+            return entries().map(new Func1<Entry<T, S>, Neighbours<T, S, U, R>>() {
+                @Override
+                public Neighbours<T, S, U, R> call(Entry<T, S> entry) {
+                    return new Neighbours<T, S, U, R>(entry, Collections.<Entry<U, R>> emptyList());
+                }
+            });
+        else
+            return NearestJoin.join(root.get(), other.root.get(), maxDistance, maxCount);
+    }
+
+    /**
+     * As {@link #nearestJoin(RTree, double, int)} but processes groups of
+     * leaves of this tree concurrently on {@link Schedulers#computation()}
+     * using one task per available processor. The order of the results is not
+     * deterministic. Small trees are processed on the current thread.
+     * 
+     * @param other
+     *            tree to find neighbours in
+     * @param maxDistance
+     *            max distance of neighbours from an entry
+     * @param maxCount
+     *            max number of neighbours per entry
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return each entry of this tree with its nearest entries in the other
+     *         tree
+     */
+    public <U, R extends Geometry> Observable<Neighbours<T, S, U, R>> nearestJoinParallel(
+            RTree<U, R> other, double maxDistance, int maxCount) {
+        return nearestJoinParallel(other, maxDistance, maxCount, Schedulers.computation(),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * As {@link #nearestJoin(RTree, double, int)} but processes up to
+     * <code>parallelism</code> groups of leaves of this tree concurrently on
+     * the given scheduler. The order of the results is not deterministic.
+     * Groups are not made smaller than about 1000 entries so small trees are
+     * processed on the current thread.
+     * 
+     * @param other
+     *            tree to find neighbours in
+     * @param maxDistance
+     *            max distance of neighbours from an entry
+     * @param maxCount
+     *            max number of neighbours per entry
+     * @param scheduler
+     *            scheduler to process groups of leaves on
+     * @param parallelism
+     *            max number of groups of leaves processed concurrently
+     * @param <U>
+     *            the entry value type of the other tree
+     * @param <R>
+     *            the entry geometry type of the other tree
+     * @return each entry of this tree with its nearest entries in the other
+     *         tree
+     */
+    public <U, R extends Geometry> Observable<Neighbours<T, S, U, R>> nearestJoinParallel(
+            RTree<U, R> other, double maxDistance, int maxCount, Scheduler scheduler,
+            int parallelism) {
+        Preconditions.checkArgument(maxCount > 0);
+        Preconditions.checkNotNull(scheduler);
+        Preconditions.checkArgument(parallelism > 0);
+        if (!root.isPresent() || !other.root.isPresent())
+            return nearestJoin(other, maxDistance, maxCount);
+        else
+            return NearestJoin.join(root.get(), size, other.root.get(), maxDistance, maxCount,
+                    scheduler, parallelism);
+    }
+
     /**
      * Returns all entries in the tree as an {@link Observable} sequence.
      * 
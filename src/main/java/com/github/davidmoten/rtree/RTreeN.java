@@ -0,0 +1,639 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import rx.Observable;
+
+import com.github.davidmoten.rtree.geometry.Box;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Immutable in-memory R-tree of {@link Box}es in any fixed number of
+ * dimensions, for instance (lon, lat, altitude) or (x, y, time). Searches prune
+ * on every dimension at once.
+ * </p>
+ *
+ * <p>
+ * Nodes are split with the R*-tree split over every axis (see
+ * {@link SplitterRStar}) and an entry is added to the child needing the least
+ * volume enlargement (then the child with least volume). As for {@link RTree}
+ * additions and deletions return a new tree sharing unchanged nodes with the
+ * old one. A deletion removes nodes that become empty but doesn't otherwise
+ * redistribute children.
+ * </p>
+ *
+ * @param <T>
+ *            the entry value type
+ */
+public final class RTreeN<T> {
+
+    private static final int MAX_CHILDREN_DEFAULT = 4;
+
+    private final int dimensions;
+    private final int minChildren;
+    private final int maxChildren;
+    // null if the tree is empty
+    private final Node<T> root;
+    private final int size;
+
+    private RTreeN(int dimensions, int minChildren, int maxChildren, Node<T> root, int size) {
+        this.dimensions = dimensions;
+        this.minChildren = minChildren;
+        this.maxChildren = maxChildren;
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty tree with the given number of dimensions and default
+     * node sizes.
+     *
+     * @param <T>
+     *            the value type of the entries in the tree
+     * @param dimensions
+     *            number of dimensions of the boxes in the tree
+     * @return empty tree
+     */
+    public static <T> RTreeN<T> create(int dimensions) {
+        return dimensions(dimensions).create();
+    }
+
+    /**
+     * Returns a builder for a tree with the given number of dimensions.
+     *
+     * @param dimensions
+     *            number of dimensions of the boxes in the tree
+     * @return builder
+     */
+    public static Builder dimensions(int dimensions) {
+        return new Builder(dimensions);
+    }
+
+    /**
+     * RTreeN builder.
+     */
+    public static final class Builder {
+
+        private static final double DEFAULT_FILLING_FACTOR = 0.4;
+
+        private final int dimensions;
+        private int maxChildren = MAX_CHILDREN_DEFAULT;
+        private int minChildren = -1;
+
+        private Builder(int dimensions) {
+            Preconditions.checkArgument(dimensions > 0, "dimensions must be positive");
+            this.dimensions = dimensions;
+        }
+
+        /**
+         * Sets the max number of children in a node.
+         *
+         * @param maxChildren
+         *            max number of children in a node
+         * @return builder
+         */
+        public Builder maxChildren(int maxChildren) {
+            Preconditions.checkArgument(maxChildren >= 3);
+            this.maxChildren = maxChildren;
+            return this;
+        }
+
+        /**
+         * Sets the min number of children in each node created by a split.
+         * Defaults to 40% of maxChildren and must be at most half of
+         * maxChildren + 1 so that an overflowing node can always be split.
+         *
+         * @param minChildren
+         *            min number of children in each node created by a split
+         * @return builder
+         */
+        public Builder minChildren(int minChildren) {
+            Preconditions.checkArgument(minChildren >= 1);
+            this.minChildren = minChildren;
+            return this;
+        }
+
+        /**
+         * Builds an empty {@link RTreeN}.
+         *
+         * @param <T>
+         *            value type
+         * @return empty tree
+         */
+        public <T> RTreeN<T> create() {
+            int min = minChildren == -1 ? (int) Math.round(maxChildren * DEFAULT_FILLING_FACTOR)
+                    : minChildren;
+            Preconditions.checkArgument(2 * min <= maxChildren + 1,
+                    "minChildren must be at most half of maxChildren + 1");
+            return new RTreeN<T>(dimensions, min, maxChildren, null, 0);
+        }
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new tree with the entry added.
+     *
+     * @param entry
+     *            entry to add
+     * @return a new immutable tree including the new entry
+     */
+    public RTreeN<T> add(EntryN<T> entry) {
+        Preconditions.checkArgument(entry.box().dimensions() == dimensions,
+                "entry has wrong number of dimensions");
+        final Node<T> node;
+        if (root == null)
+            node = Node.leaf(Collections.singletonList(entry));
+        else {
+            List<Node<T>> nodes = add(root, entry);
+            if (nodes.size() == 1)
+                node = nodes.get(0);
+            else
+                node = Node.nonLeaf(nodes);
+        }
+        return new RTreeN<T>(dimensions, minChildren, maxChildren, node, size + 1);
+    }
+
+    /**
+     * Returns a new tree with an entry for the value and box added.
+     *
+     * @param value
+     *            value of the entry to add
+     * @param box
+     *            box of the entry to add
+     * @return a new immutable tree including the new entry
+     */
+    public RTreeN<T> add(T value, Box box) {
+        return add(EntryN.entry(value, box));
+    }
+
+    /**
+     * Returns a new tree with the entries added.
+     *
+     * @param entries
+     *            entries to add
+     * @return a new immutable tree including the new entries
+     */
+    public RTreeN<T> add(Iterable<EntryN<T>> entries) {
+        RTreeN<T> tree = this;
+        for (EntryN<T> entry : entries)
+            tree = tree.add(entry);
+        return tree;
+    }
+
+    /**
+     * Returns a new tree with one entry equal to the given entry removed. If
+     * there is no such entry this tree is returned.
+     *
+     * @param entry
+     *            entry to delete
+     * @return a new immutable tree without one instance of the entry
+     */
+    public RTreeN<T> delete(EntryN<T> entry) {
+        if (root == null)
+            return this;
+        Node<T> node = delete(root, entry);
+        if (node == root)
+            return this;
+        while (node != null && node.children != null && node.children.size() == 1)
+            node = node.children.get(0);
+        return new RTreeN<T>(dimensions, minChildren, maxChildren, node, size - 1);
+    }
+
+    /**
+     * Returns a new tree with one entry for the value and box removed.
+     *
+     * @param value
+     *            value of the entry to delete
+     * @param box
+     *            box of the entry to delete
+     * @return a new immutable tree without one instance of the entry
+     */
+    public RTreeN<T> delete(T value, Box box) {
+        return delete(EntryN.entry(value, box));
+    }
+
+    /**
+     * Returns the entries whose boxes intersect with the given box. The tree
+     * is walked lazily as the entries are requested (backpressure is
+     * supported).
+     *
+     * @param box
+     *            box with the same number of dimensions as the tree
+     * @return entries that intersect with the box
+     */
+    public Observable<EntryN<T>> search(final Box box) {
+        Preconditions.checkArgument(box.dimensions() == dimensions,
+                "box has wrong number of dimensions");
+        return Observable.from(new Iterable<EntryN<T>>() {
+            @Override
+            public Iterator<EntryN<T>> iterator() {
+                return new SearchIterator<T>(root, box, true, 0);
+            }
+        });
+    }
+
+    /**
+     * Returns the entries whose boxes are strictly less than maxDistance from
+     * the given box.
+     *
+     * @param box
+     *            box with the same number of dimensions as the tree
+     * @param maxDistance
+     *            entries returned are strictly less than this distance from the
+     *            box (so none are returned if it is not positive)
+     * @return entries strictly less than maxDistance from the box
+     */
+    public Observable<EntryN<T>> search(final Box box, final double maxDistance) {
+        Preconditions.checkArgument(box.dimensions() == dimensions,
+                "box has wrong number of dimensions");
+        return Observable.from(new Iterable<EntryN<T>>() {
+            @Override
+            public Iterator<EntryN<T>> iterator() {
+                return new SearchIterator<T>(root, box, false, maxDistance);
+            }
+        });
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given box where the
+     * entries are strictly less than maxDistance from the box. The tree is
+     * traversed best-first as for the nearest searches of {@link RTree}
+     * so entries are emitted lazily in ascending order of distance.
+     *
+     * @param box
+     *            box with the same number of dimensions as the tree
+     * @param maxDistance
+     *            max distance of returned entries from the box
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<EntryN<T>> nearest(final Box box, final double maxDistance,
+            final int maxCount) {
+        Preconditions.checkArgument(box.dimensions() == dimensions,
+                "box has wrong number of dimensions");
+        return Observable.from(new Iterable<EntryN<T>>() {
+            @Override
+            public Iterator<EntryN<T>> iterator() {
+                return new NearestIterator<T>(root, box, maxDistance, maxCount);
+            }
+        });
+    }
+
+    /**
+     * Returns all entries in the tree.
+     *
+     * @return all entries in the tree
+     */
+    public Observable<EntryN<T>> entries() {
+        return Observable.from(new Iterable<EntryN<T>>() {
+            @Override
+            public Iterator<EntryN<T>> iterator() {
+                return new SearchIterator<T>(root, null, false, 0);
+            }
+        });
+    }
+
+    /**
+     * Returns the depth of the tree (0 if empty, 1 if the root is a leaf).
+     *
+     * @return depth of the tree
+     */
+    public int calculateDepth() {
+        int depth = 0;
+        for (Node<T> node = root; node != null; node = node.children == null ? null
+                : node.children.get(0))
+            depth++;
+        return depth;
+    }
+
+    private List<Node<T>> add(Node<T> node, EntryN<T> entry) {
+        if (node.entries != null) {
+            List<EntryN<T>> entries = Util.add(node.entries, entry);
+            if (entries.size() <= maxChildren)
+                return Collections.singletonList(Node.leaf(entries));
+            else
+                return split(entries, true);
+        } else {
+            Node<T> child = choose(node.children, entry.box());
+            List<Node<T>> added = add(child, entry);
+            List<Node<T>> children = new ArrayList<Node<T>>(node.children.size() + 1);
+            for (Node<T> c : node.children)
+                if (c != child)
+                    children.add(c);
+            children.addAll(added);
+            if (children.size() <= maxChildren)
+                return Collections.singletonList(Node.nonLeaf(children));
+            else
+                return split(children, false);
+        }
+    }
+
+    /**
+     * Returns the child needing the least volume enlargement to include the
+     * box, then the child with least volume, without creating any objects.
+     */
+    private static <T> Node<T> choose(List<Node<T>> children, Box box) {
+        int best = -1;
+        float bestIncrease = 0;
+        float bestVolume = 0;
+        for (int i = 0; i < children.size(); i++) {
+            final Box mbr = children.get(i).mbr;
+            final float volume = mbr.volume();
+            float enlarged = 1;
+            for (int k = 0; k < box.dimensions(); k++)
+                enlarged *= Math.max(mbr.max(k), box.max(k)) - Math.min(mbr.min(k), box.min(k));
+            final float increase = enlarged - volume;
+            if (best == -1 || increase < bestIncrease || increase == bestIncrease
+                    && volume < bestVolume) {
+                best = i;
+                bestIncrease = increase;
+                bestVolume = volume;
+            }
+        }
+        return children.get(best);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> List<Node<T>> split(List<R> items, boolean leaf) {
+        final int n = items.size();
+        final int width = 2 * dimensions;
+        final float[] coords = new float[width * n];
+        for (int i = 0; i < n; i++) {
+            Box box = leaf ? ((EntryN<T>) items.get(i)).box() : ((Node<T>) items.get(i)).mbr;
+            for (int k = 0; k < dimensions; k++) {
+                coords[width * i + k] = box.min(k);
+                coords[width * i + dimensions + k] = box.max(k);
+            }
+        }
+        final int[] order = new int[n];
+        final int size1 = SplitterRStar.split(coords, dimensions, minChildren, order);
+        final List<R> group1 = new ArrayList<R>(size1);
+        for (int i = 0; i < size1; i++)
+            group1.add(items.get(order[i]));
+        final List<R> group2 = new ArrayList<R>(n - size1);
+        for (int i = size1; i < n; i++)
+            group2.add(items.get(order[i]));
+        final List<Node<T>> result = new ArrayList<Node<T>>(2);
+        if (leaf) {
+            result.add(Node.leaf((List<EntryN<T>>) group1));
+            result.add(Node.leaf((List<EntryN<T>>) group2));
+        } else {
+            result.add(Node.nonLeaf((List<Node<T>>) group1));
+            result.add(Node.nonLeaf((List<Node<T>>) group2));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node without the entry, the same node if the entry is not in
+     * it or null if the node would be empty.
+     */
+    private static <T> Node<T> delete(Node<T> node, EntryN<T> entry) {
+        if (!node.mbr.intersects(entry.box()))
+            return node;
+        else if (node.entries != null) {
+            int index = node.entries.indexOf(entry);
+            if (index == -1)
+                return node;
+            else if (node.entries.size() == 1)
+                return null;
+            List<EntryN<T>> entries = new ArrayList<EntryN<T>>(node.entries);
+            entries.remove(index);
+            return Node.leaf(entries);
+        } else {
+            for (int i = 0; i < node.children.size(); i++) {
+                Node<T> child = node.children.get(i);
+                Node<T> result = delete(child, entry);
+                if (result != child) {
+                    List<Node<T>> children = new ArrayList<Node<T>>(node.children);
+                    if (result == null)
+                        children.remove(i);
+                    else
+                        children.set(i, result);
+                    if (children.isEmpty())
+                        return null;
+                    else
+                        return Node.nonLeaf(children);
+                }
+            }
+            return node;
+        }
+    }
+
+    /**
+     * A leaf (with entries) or a non-leaf (with children) and its mbr.
+     */
+    private static final class Node<T> {
+        final Box mbr;
+        final List<Node<T>> children;
+        final List<EntryN<T>> entries;
+
+        private Node(Box mbr, List<Node<T>> children, List<EntryN<T>> entries) {
+            this.mbr = mbr;
+            this.children = children;
+            this.entries = entries;
+        }
+
+        static <T> Node<T> leaf(List<EntryN<T>> entries) {
+            Box mbr = entries.get(0).box();
+            for (int i = 1; i < entries.size(); i++)
+                mbr = mbr.add(entries.get(i).box());
+            return new Node<T>(mbr, null, entries);
+        }
+
+        static <T> Node<T> nonLeaf(List<Node<T>> children) {
+            Box mbr = children.get(0).mbr;
+            for (int i = 1; i < children.size(); i++)
+                mbr = mbr.add(children.get(i).mbr);
+            return new Node<T>(mbr, children, null);
+        }
+    }
+
+    /**
+     * Depth-first search of the entries whose boxes intersect with the query
+     * box or, if not <code>intersects</code>, are strictly less than
+     * maxDistance from it. A null query box matches everything.
+     */
+    private static final class SearchIterator<T> implements Iterator<EntryN<T>> {
+
+        private final Box box;
+        private final boolean intersects;
+        private final double maxDistance;
+        private final Deque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        private List<EntryN<T>> entries = Collections.emptyList();
+        private int index;
+        private EntryN<T> next;
+
+        SearchIterator(Node<T> root, Box box, boolean intersects, double maxDistance) {
+            this.box = box;
+            this.intersects = intersects;
+            this.maxDistance = maxDistance;
+            if (root != null && matches(root.mbr))
+                stack.push(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (index < entries.size()) {
+                    EntryN<T> entry = entries.get(index++);
+                    if (matches(entry.box()))
+                        next = entry;
+                } else if (stack.isEmpty())
+                    return false;
+                else {
+                    Node<T> node = stack.pop();
+                    if (node.entries != null) {
+                        entries = node.entries;
+                        index = 0;
+                    } else {
+                        // push in reverse so children are visited in order
+                        for (int i = node.children.size() - 1; i >= 0; i--)
+                            if (matches(node.children.get(i).mbr))
+                                stack.push(node.children.get(i));
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public EntryN<T> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            EntryN<T> entry = next;
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean matches(Box b) {
+            if (box == null)
+                return true;
+            else if (intersects)
+                return b.intersects(box);
+            else
+                return b.distance(box) < maxDistance;
+        }
+    }
+
+    /**
+     * Best-first nearest search as for {@link NearestIterable}.
+     */
+    private static final class NearestIterator<T> implements Iterator<EntryN<T>> {
+
+        private final PriorityQueue<Candidate<T>> queue = new PriorityQueue<Candidate<T>>();
+        private final Box box;
+        private final double maxDistance;
+        private int remaining;
+        private long sequence;
+        private EntryN<T> next;
+
+        NearestIterator(Node<T> root, Box box, double maxDistance, int maxCount) {
+            this.box = box;
+            this.maxDistance = maxDistance;
+            this.remaining = maxCount;
+            if (root != null)
+                offer(root, null, root.mbr);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && remaining > 0) {
+                Candidate<T> c;
+                while (next == null && (c = queue.poll()) != null) {
+                    if (c.entry != null)
+                        next = c.entry;
+                    else if (c.node.entries != null) {
+                        for (EntryN<T> entry : c.node.entries)
+                            offer(null, entry, entry.box());
+                    } else {
+                        for (Node<T> child : c.node.children)
+                            offer(child, null, child.mbr);
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public EntryN<T> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            EntryN<T> entry = next;
+            next = null;
+            remaining--;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void offer(Node<T> node, EntryN<T> entry, Box b) {
+            double distance = b.distance(box);
+            if (distance < maxDistance)
+                queue.add(new Candidate<T>(node, entry, distance, sequence++));
+        }
+    }
+
+    /**
+     * A node or an entry with its distance from the query box. Ties are
+     * broken in favour of entries then by order of discovery.
+     */
+    private static final class Candidate<T> implements Comparable<Candidate<T>> {
+
+        final Node<T> node;
+        final EntryN<T> entry;
+        final double distance;
+        final long sequence;
+
+        Candidate(Node<T> node, EntryN<T> entry, double distance, long sequence) {
+            this.node = node;
+            this.entry = entry;
+            this.distance = distance;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Candidate<T> c) {
+            int result = Double.compare(distance, c.distance);
+            if (result != 0)
+                return result;
+            else if ((entry == null) != (c.entry == null))
+                return entry != null ? -1 : 1;
+            else if (sequence < c.sequence)
+                return -1;
+            else if (sequence > c.sequence)
+                return 1;
+            else
+                return 0;
+        }
+    }
+
+}
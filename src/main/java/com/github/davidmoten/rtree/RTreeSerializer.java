@@ -0,0 +1,342 @@
+package com.github.davidmoten.rtree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.PointDouble;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.geometry.RectangleDouble;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Writes an {@link RTree} to a stream in a compact binary format and reads it
+ * back. The node hierarchy is written as is, so reading a tree does no
+ * selection or splitting work and is limited by I/O rather than by tree
+ * construction.
+ * </p>
+ * 
+ * <p>
+ * The format is a header (magic number, version, the {@link Context}
+ * parameters including the class names of the selector and splitter, and the
+ * number of entries) followed by the nodes depth first. Each node is a type
+ * and a child count followed by its children or, for a leaf, its entries. An
+ * entry is a geometry type and its coordinates (floats, or doubles for the
+ * double precision geometries) followed by the value as a length-prefixed
+ * byte array produced by the value serializer. Supported geometries are
+ * {@link Point}, {@link Rectangle}, {@link Circle}, {@link PointDouble} and
+ * {@link RectangleDouble}. Node mbrs are not written because they are recalculated
+ * cheaply from the entries when the nodes are created.
+ * </p>
+ * 
+ * <p>
+ * The selector and splitter are instantiated on read using their public no-arg
+ * constructors. If they don't have one use {@link #read(InputStream, Context)}
+ * to supply the {@link Context} directly. The search cache size is a runtime
+ * setting and is not written, so trees read without a supplied context have no
+ * search cache.
+ * </p>
+ * 
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class RTreeSerializer<T, S extends Geometry> {
+
+    private static final int MAGIC = 0x52545245; // "RTRE"
+    private static final int VERSION = 1;
+
+    /**
+     * Byte arrays are read in chunks of at most this size so that a corrupt
+     * length can't allocate much more than the stream holds.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final byte LEAF = 0;
+    private static final byte NON_LEAF = 1;
+
+    private static final byte POINT = 0;
+    private static final byte RECTANGLE = 1;
+    private static final byte CIRCLE = 2;
+    private static final byte POINT_DOUBLE = 3;
+    private static final byte RECTANGLE_DOUBLE = 4;
+
+    private final Func1<? super T, byte[]> serializer;
+    private final Func1<byte[], ? extends T> deserializer;
+
+    private RTreeSerializer(Func1<? super T, byte[]> serializer,
+            Func1<byte[], ? extends T> deserializer) {
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(deserializer);
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+    }
+
+    /**
+     * Returns a serializer for R-trees using the given functions to convert
+     * entry values to and from bytes.
+     * 
+     * @param serializer
+     *            converts an entry value to bytes
+     * @param deserializer
+     *            converts bytes written by <code>serializer</code> back to an
+     *            entry value
+     * @param <T>
+     *            the entry value type
+     * @param <S>
+     *            the entry geometry type
+     * @return serializer
+     */
+    public static <T, S extends Geometry> RTreeSerializer<T, S> create(
+            Func1<? super T, byte[]> serializer, Func1<byte[], ? extends T> deserializer) {
+        return new RTreeSerializer<T, S>(serializer, deserializer);
+    }
+
+    /**
+     * Writes the R-tree to the stream. The stream is flushed but not closed.
+     * 
+     * @param tree
+     *            R-tree to write
+     * @param os
+     *            stream to write to
+     * @throws IOException
+     *             if the write fails
+     * @throws IllegalArgumentException
+     *             if an entry has a geometry other than {@link Point},
+     *             {@link Rectangle}, {@link Circle}, {@link PointDouble} or
+     *             {@link RectangleDouble}
+     */
+    public void write(RTree<T, S> tree, OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        Context context = tree.context();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(context.minChildren());
+        out.writeInt(context.maxChildren());
+        out.writeUTF(context.selector().getClass().getName());
+        out.writeUTF(context.splitter().getClass().getName());
+        out.writeBoolean(context.flatPointLeaves());
+        out.writeDouble(context.reinsertionFraction());
+        out.writeInt(tree.size());
+        out.writeBoolean(tree.root().isPresent());
+        if (tree.root().isPresent())
+            writeNode(tree.root().get(), out);
+        out.flush();
+    }
+
+    private void writeNode(Node<T, S> node, DataOutputStream out) throws IOException {
+        if (node instanceof Leaf) {
+            List<Entry<T, S>> entries = ((Leaf<T, S>) node).entries();
+            out.writeByte(LEAF);
+            out.writeInt(entries.size());
+            for (Entry<T, S> entry : entries)
+                writeEntry(entry, out);
+        } else {
+            List<? extends Node<T, S>> children = ((NonLeaf<T, S>) node).children();
+            out.writeByte(NON_LEAF);
+            out.writeInt(children.size());
+            for (Node<T, S> child : children)
+                writeNode(child, out);
+        }
+    }
+
+    private void writeEntry(Entry<T, S> entry, DataOutputStream out) throws IOException {
+        Geometry g = entry.geometry();
+        if (g instanceof Point) {
+            Point p = (Point) g;
+            out.writeByte(POINT);
+            out.writeFloat(p.x());
+            out.writeFloat(p.y());
+        } else if (g instanceof Rectangle) {
+            Rectangle r = (Rectangle) g;
+            out.writeByte(RECTANGLE);
+            out.writeFloat(r.x1());
+            out.writeFloat(r.y1());
+            out.writeFloat(r.x2());
+            out.writeFloat(r.y2());
+        } else if (g instanceof Circle) {
+            Circle c = (Circle) g;
+            out.writeByte(CIRCLE);
+            out.writeFloat(c.x());
+            out.writeFloat(c.y());
+            out.writeFloat(c.radius());
+        } else if (g instanceof PointDouble) {
+            PointDouble p = (PointDouble) g;
+            out.writeByte(POINT_DOUBLE);
+            out.writeDouble(p.x());
+            out.writeDouble(p.y());
+        } else if (g instanceof RectangleDouble) {
+            RectangleDouble r = (RectangleDouble) g;
+            out.writeByte(RECTANGLE_DOUBLE);
+            out.writeDouble(r.x1());
+            out.writeDouble(r.y1());
+            out.writeDouble(r.x2());
+            out.writeDouble(r.y2());
+        } else
+            throw new IllegalArgumentException("cannot serialize geometry of type "
+                    + g.getClass().getName());
+        byte[] bytes = serializer.call(entry.value());
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads an R-tree written by {@link #write(RTree, OutputStream)}. The
+     * selector and splitter are created from their class names using their
+     * public no-arg constructors. The stream is read through a buffer so bytes
+     * after the end of the tree may be consumed. The stream is not closed.
+     * 
+     * @param is
+     *            stream to read from
+     * @return R-tree
+     * @throws IOException
+     *             if the read fails or the stream is not in the expected
+     *             format
+     */
+    public RTree<T, S> read(InputStream is) throws IOException {
+        return read(is, Optional.<Context> absent());
+    }
+
+    /**
+     * Reads an R-tree written by {@link #write(RTree, OutputStream)} using the
+     * given context for the R-tree instead of the context parameters in the
+     * stream. The stream is not closed.
+     * 
+     * @param is
+     *            stream to read from
+     * @param context
+     *            context for the R-tree
+     * @return R-tree
+     * @throws IOException
+     *             if the read fails or the stream is not in the expected
+     *             format
+     */
+    public RTree<T, S> read(InputStream is, Context context) throws IOException {
+        return read(is, Optional.of(context));
+    }
+
+    private RTree<T, S> read(InputStream is, Optional<Context> suppliedContext)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC)
+            throw new IOException("not a serialized RTree");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("unsupported version " + version);
+        int minChildren = in.readInt();
+        int maxChildren = in.readInt();
+        String selectorClassName = in.readUTF();
+        String splitterClassName = in.readUTF();
+        boolean flatPointLeaves = in.readBoolean();
+        double reinsertionFraction = in.readDouble();
+        final Context context;
+        if (suppliedContext.isPresent())
+            context = suppliedContext.get();
+        else
+            context = new Context(minChildren, maxChildren, instantiate(selectorClassName,
+                    Selector.class), instantiate(splitterClassName, Splitter.class),
+                    flatPointLeaves, reinsertionFraction);
+        int size = in.readInt();
+        if (in.readBoolean())
+            return new RTree<T, S>(Optional.of(readNode(in, context)), size, context);
+        else
+            return new RTree<T, S>(Optional.<Node<T, S>> absent(), size, context);
+    }
+
+    private Node<T, S> readNode(DataInputStream in, Context context) throws IOException {
+        byte type = in.readByte();
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException("negative child count " + count);
+        if (type == LEAF) {
+            List<Entry<T, S>> entries = new ArrayList<Entry<T, S>>();
+            for (int i = 0; i < count; i++)
+                entries.add(readEntry(in));
+            return new Leaf<T, S>(entries, context);
+        } else if (type == NON_LEAF) {
+            List<Node<T, S>> children = new ArrayList<Node<T, S>>();
+            for (int i = 0; i < count; i++)
+                children.add(readNode(in, context));
+            return new NonLeaf<T, S>(children, context);
+        } else
+            throw new IOException("unexpected node type " + type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T, S> readEntry(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        final Geometry g;
+        if (type == POINT)
+            g = Geometries.point(in.readFloat(), in.readFloat());
+        else if (type == RECTANGLE)
+            g = Geometries.rectangle(in.readFloat(), in.readFloat(), in.readFloat(),
+                    in.readFloat());
+        else if (type == CIRCLE)
+            g = Geometries.circle(in.readFloat(), in.readFloat(), in.readFloat());
+        else if (type == POINT_DOUBLE)
+            g = Geometries.pointDouble(in.readDouble(), in.readDouble());
+        else if (type == RECTANGLE_DOUBLE)
+            g = Geometries.rectangleDouble(in.readDouble(), in.readDouble(), in.readDouble(),
+                    in.readDouble());
+        else
+            throw new IOException("unexpected geometry type " + type);
+        return Entry.entry((T) deserializer.call(readBytes(in)), (S) g);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("negative byte array length " + length);
+        byte[] bytes = new byte[Math.min(length, CHUNK_SIZE)];
+        int n = 0;
+        while (n < length) {
+            if (n == bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * n));
+            int read = in.read(bytes, n, bytes.length - n);
+            if (read < 0)
+                throw new EOFException("stream ended " + (length - n)
+                        + " bytes before the end of a byte array of length " + length);
+            n += read;
+        }
+        return bytes;
+    }
+
+    private static <R> R instantiate(String className, Class<R> cls) throws IOException {
+        try {
+            // don't initialize the class until it is known to be of the right type
+            Class<?> c = Class.forName(className, false, RTreeSerializer.class.getClassLoader());
+            if (!cls.isAssignableFrom(c))
+                throw new IOException(className + " is not a " + cls.getName());
+            return cls.cast(c.getConstructor().newInstance());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("could not create " + className, e);
+        } catch (NoSuchMethodException e) {
+            throw new IOException("could not create " + className, e);
+        } catch (InstantiationException e) {
+            throw new IOException("could not create " + className, e);
+        } catch (IllegalAccessException e) {
+            throw new IOException("could not create " + className, e);
+        } catch (InvocationTargetException e) {
+            throw new IOException("could not create " + className, e);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Walks the entries intersecting a rectangle. The path from the root to the
+ * current node is held in mutable arrays (node and position at each level) so
+ * that no objects are allocated as the search progresses. The bounds of the
+ * current entry are read from {@link PointEntries} directly for flat leaves.
+ * Not thread-safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class RectangleCursor<T, S extends Geometry> implements Cursor<T> {
+
+    private final Rectangle r;
+    private Node<T, S>[] nodes;
+    private int[] positions;
+    // index of the current node in nodes, -1 when the search is finished
+    private int depth = -1;
+    // true if positioned on a matching entry that has not been moved past
+    private boolean current;
+
+    /**
+     * Constructor.
+     *
+     * @param root
+     *            root node of the tree to search or null if the tree is empty
+     * @param r
+     *            rectangle to check intersection with
+     */
+    @SuppressWarnings("unchecked")
+    RectangleCursor(Node<T, S> root, Rectangle r) {
+        this.r = r;
+        this.nodes = (Node<T, S>[]) new Node<?, ?>[8];
+        this.positions = new int[8];
+        if (root != null && root.geometry().mbr().intersects(r))
+            push(root);
+    }
+
+    @Override
+    public boolean next() {
+        if (current) {
+            positions[depth]++;
+            current = false;
+        }
+        while (depth >= 0) {
+            final Node<T, S> node = nodes[depth];
+            final int position = positions[depth];
+            if (position == node.count())
+                pop();
+            else if (node instanceof NonLeaf) {
+                NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+                if (nonLeaf.childIntersects(position, r))
+                    push(nonLeaf.children().get(position));
+                else
+                    positions[depth]++;
+            } else if (((Leaf<T, S>) node).entryIntersects(position, r)) {
+                current = true;
+                return true;
+            } else
+                positions[depth]++;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current entry (created on demand for flat leaves).
+     *
+     * @return current entry
+     */
+    Entry<T, S> entry() {
+        List<Entry<T, S>> entries = entries();
+        return entries.get(positions[depth]);
+    }
+
+    @Override
+    public float x1() {
+        List<Entry<T, S>> entries = entries();
+        if (entries instanceof PointEntries)
+            return ((PointEntries<T, S>) entries).x(positions[depth]);
+        else
+            return entries.get(positions[depth]).geometry().mbr().x1();
+    }
+
+    @Override
+    public float y1() {
+        List<Entry<T, S>> entries = entries();
+        if (entries instanceof PointEntries)
+            return ((PointEntries<T, S>) entries).y(positions[depth]);
+        else
+            return entries.get(positions[depth]).geometry().mbr().y1();
+    }
+
+    @Override
+    public float x2() {
+        List<Entry<T, S>> entries = entries();
+        if (entries instanceof PointEntries)
+            return ((PointEntries<T, S>) entries).x(positions[depth]);
+        else
+            return entries.get(positions[depth]).geometry().mbr().x2();
+    }
+
+    @Override
+    public float y2() {
+        List<Entry<T, S>> entries = entries();
+        if (entries instanceof PointEntries)
+            return ((PointEntries<T, S>) entries).y(positions[depth]);
+        else
+            return entries.get(positions[depth]).geometry().mbr().y2();
+    }
+
+    @Override
+    public T value() {
+        List<Entry<T, S>> entries = entries();
+        if (entries instanceof PointEntries)
+            return ((PointEntries<T, S>) entries).value(positions[depth]);
+        else
+            return entries.get(positions[depth]).value();
+    }
+
+    private List<Entry<T, S>> entries() {
+        if (!current)
+            throw new NoSuchElementException("no current entry");
+        return ((Leaf<T, S>) nodes[depth]).entries();
+    }
+
+    private void push(Node<T, S> node) {
+        depth++;
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, 2 * depth);
+            positions = Arrays.copyOf(positions, 2 * depth);
+        }
+        nodes[depth] = node;
+        positions[depth] = 0;
+    }
+
+    private void pop() {
+        nodes[depth] = null;
+        depth--;
+        if (depth >= 0)
+            positions[depth]++;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Iterates the entries intersecting a rectangle using a
+ * {@link RectangleCursor} so that, unlike the {@link Backpressure} search, no
+ * objects are allocated as the search progresses. Used for the backpressure
+ * path of {@link OnSubscribeSearchRectangle} and by
+ * {@link RTree#searchIterable}. Not thread-safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class RectangleSearchCursor<T, S extends Geometry> implements Iterator<Entry<T, S>> {
+
+    private final RectangleCursor<T, S> cursor;
+    // true if the cursor is on an entry not yet returned by next()
+    private boolean matched;
+
+    RectangleSearchCursor(Node<T, S> root, Rectangle r) {
+        this.cursor = new RectangleCursor<T, S>(root, r);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!matched)
+            matched = cursor.next();
+        return matched;
+    }
+
+    @Override
+    public Entry<T, S> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        matched = false;
+        return cursor.entry();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
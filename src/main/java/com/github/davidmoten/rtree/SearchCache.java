@@ -0,0 +1,84 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * Cache of the results of rectangle searches of one version of an
+ * {@link RTree} bounded by the total number of entries in the cached results
+ * (an empty result counts as one). Results are held as arrays of entries and
+ * the least recently used rectangles are evicted first.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class SearchCache<T, S extends Geometry> {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final Node<T, S> root;
+    private final Cache<Rectangle, Object[]> cache;
+
+    SearchCache(Node<T, S> root, int maxEntries) {
+        this.root = root;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxEntries)
+                .weigher(new Weigher<Rectangle, Object[]>() {
+                    @Override
+                    public int weigh(Rectangle r, Object[] entries) {
+                        return Math.max(1, entries.length);
+                    }
+                }).recordStats().build();
+    }
+
+    @SuppressWarnings("unchecked")
+    List<Entry<T, S>> search(final Rectangle r) {
+        final Object[] entries;
+        try {
+            entries = cache.get(r, new Callable<Object[]>() {
+                @Override
+                public Object[] call() {
+                    return searchArray(r);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return (List<Entry<T, S>>) (List<?>) Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    private Object[] searchArray(Rectangle r) {
+        final List<Entry<T, S>> list = new ArrayList<Entry<T, S>>();
+        Visitor<Entry<T, S>> visitor = new Visitor<Entry<T, S>>() {
+            @Override
+            public boolean visit(Entry<T, S> entry) {
+                list.add(entry);
+                return true;
+            }
+        };
+        if (!root.geometry().mbr().intersects(r))
+            return EMPTY;
+        else if (root instanceof NonLeaf)
+            ((NonLeaf<T, S>) root).visitChildren(r, visitor);
+        else
+            ((Leaf<T, S>) root).visitEntries(r, visitor);
+        return list.isEmpty() ? EMPTY : list.toArray();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+}
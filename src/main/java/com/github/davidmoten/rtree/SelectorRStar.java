@@ -5,17 +5,19 @@ import java.util.List;
 import com.github.davidmoten.rtree.geometry.Geometry;
 
 /**
- * Uses minimal overlap area selector for leaf nodes and minimal areea increase
- * selector for non-leaf nodes.
+ * Uses minimal overlap area selector (considering only the 32 nodes with least
+ * area increase, see {@link SelectorPrunedOverlapArea}) for leaf nodes and
+ * minimal area increase selector for non-leaf nodes.
  */
 public final class SelectorRStar implements Selector {
 
-    private static Selector overlapAreaSelector = new SelectorMinimalOverlapArea();
+    private static Selector overlapAreaSelector = new SelectorPrunedOverlapArea();
     private static Selector areaIncreaseSelector = new SelectorMinimalAreaIncrease();
 
     @Override
     public <T, S extends Geometry> Node<T, S> select(Geometry g, List<? extends Node<T, S>> nodes) {
-        boolean leafNodes = nodes.get(0) instanceof Leaf;
+        Node<T, S> first = nodes.get(0);
+        boolean leafNodes = first instanceof Leaf || first instanceof TransientRTree.EditableLeaf;
         if (leafNodes)
             return overlapAreaSelector.select(g, nodes);
         else
@@ -0,0 +1,145 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * The linear split of Ang and Tan (1997). Each item is placed in the left or
+ * right group according to whether its mbr is nearer the left or right side of
+ * the mbr of all the items, and likewise in the bottom or top group. The axis
+ * whose groups are the more even in size is used, ties being broken by the
+ * least overlap between the group mbrs then the least total area.
+ * </p>
+ *
+ * <p>
+ * If a group has fewer than minSize items the items of the other group nearest
+ * (by mbr centre) to it are moved across. This is the only step that is not
+ * linear in the number of items and only sorts the items of one group.
+ * </p>
+ */
+public final class SplitterAngTan implements Splitter {
+
+    @Override
+    public <T extends HasGeometry> ListPair<T> split(List<T> items, int minSize) {
+        Preconditions.checkArgument(items.size() >= 2);
+        final int n = items.size();
+        final float[] mbrs = Util.mbrs(items);
+        final float[] mbr = mbr(mbrs);
+
+        // lower[i] is true if item i is nearer the low side along x (or y)
+        final boolean[] lowerX = new boolean[n];
+        final boolean[] lowerY = new boolean[n];
+        int countLowerX = 0;
+        int countLowerY = 0;
+        for (int i = 0; i < n; i++) {
+            final int j = 4 * i;
+            lowerX[i] = mbrs[j] - mbr[0] < mbr[2] - mbrs[j + 2];
+            lowerY[i] = mbrs[j + 1] - mbr[1] < mbr[3] - mbrs[j + 3];
+            if (lowerX[i])
+                countLowerX++;
+            if (lowerY[i])
+                countLowerY++;
+        }
+        int axis = chooseAxis(mbrs, lowerX, countLowerX, lowerY, countLowerY);
+        final boolean[] lower = axis == 0 ? lowerX : lowerY;
+        final int countLower = axis == 0 ? countLowerX : countLowerY;
+        if (countLower < minSize)
+            move(mbrs, lower, axis, true, minSize - countLower);
+        else if (n - countLower < minSize)
+            move(mbrs, lower, axis, false, minSize - (n - countLower));
+
+        final List<T> group1 = new ArrayList<T>(n - minSize);
+        final List<T> group2 = new ArrayList<T>(n - minSize);
+        for (int i = 0; i < n; i++)
+            if (lower[i])
+                group1.add(items.get(i));
+            else
+                group2.add(items.get(i));
+        return new ListPair<T>(group1, group2);
+    }
+
+    private static int chooseAxis(float[] mbrs, boolean[] lowerX, int countLowerX,
+            boolean[] lowerY, int countLowerY) {
+        final int n = lowerX.length;
+        final int largestX = Math.max(countLowerX, n - countLowerX);
+        final int largestY = Math.max(countLowerY, n - countLowerY);
+        if (largestX != largestY)
+            return largestX < largestY ? 0 : 1;
+        final float[] x = groupMbrs(mbrs, lowerX);
+        final float[] y = groupMbrs(mbrs, lowerY);
+        final float overlapX = overlap(x);
+        final float overlapY = overlap(y);
+        if (overlapX != overlapY)
+            return overlapX < overlapY ? 0 : 1;
+        else
+            return area(x, 0) + area(x, 4) <= area(y, 0) + area(y, 4) ? 0 : 1;
+    }
+
+    /**
+     * Moves the given number of items into the group (lower or not lower)
+     * given by <code>toLower</code>, taking the items of the other group whose
+     * centres are nearest to it along the axis.
+     */
+    private static void move(float[] mbrs, boolean[] lower, int axis, boolean toLower, int count) {
+        final int n = lower.length;
+        final long[] keys = new long[n];
+        int size = 0;
+        for (int i = 0; i < n; i++)
+            if (lower[i] != toLower) {
+                float centre = mbrs[4 * i + axis] + mbrs[4 * i + 2 + axis];
+                keys[size++] = Util.sortKey(toLower ? centre : -centre, i);
+            }
+        Arrays.sort(keys, 0, size);
+        for (int k = 0; k < count; k++)
+            lower[(int) keys[k]] = toLower;
+    }
+
+    private static float[] mbr(float[] mbrs) {
+        final float[] mbr = new float[4];
+        System.arraycopy(mbrs, 0, mbr, 0, 4);
+        for (int j = 4; j < mbrs.length; j += 4)
+            include(mbr, 0, mbrs, j);
+        return mbr;
+    }
+
+    /**
+     * Returns the mbr of the lower group followed by the mbr of the other
+     * group. An empty group has an empty (inverted) mbr.
+     */
+    private static float[] groupMbrs(float[] mbrs, boolean[] lower) {
+        final float[] result = { Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE,
+                -Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE,
+                -Float.MAX_VALUE };
+        for (int i = 0; i < lower.length; i++)
+            include(result, lower[i] ? 0 : 4, mbrs, 4 * i);
+        return result;
+    }
+
+    private static void include(float[] mbr, int offset, float[] mbrs, int j) {
+        mbr[offset] = Math.min(mbr[offset], mbrs[j]);
+        mbr[offset + 1] = Math.min(mbr[offset + 1], mbrs[j + 1]);
+        mbr[offset + 2] = Math.max(mbr[offset + 2], mbrs[j + 2]);
+        mbr[offset + 3] = Math.max(mbr[offset + 3], mbrs[j + 3]);
+    }
+
+    private static float overlap(float[] groups) {
+        return Rectangle.intersectionArea(groups[0], groups[1], groups[2], groups[3], groups[4],
+                groups[5], groups[6], groups[7]);
+    }
+
+    private static float area(float[] groups, int offset) {
+        if (groups[offset + 2] < groups[offset])
+            return 0;
+        else
+            return (groups[offset + 2] - groups[offset])
+                    * (groups[offset + 3] - groups[offset + 1]);
+    }
+
+}
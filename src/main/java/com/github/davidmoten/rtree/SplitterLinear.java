@@ -0,0 +1,137 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * Guttman's linear split (1984). The two seeds are the pair of items with the
+ * greatest separation along either axis, normalized by the width of all the
+ * items along that axis. The remaining items are then assigned in one pass to
+ * the group whose mbr needs the least enlargement to include them (then the
+ * group with the smaller area, then the group with fewer items) unless a
+ * group needs all the remaining items to reach minSize.
+ * </p>
+ *
+ * <p>
+ * The cost is linear in the number of items so splits of wide nodes are much
+ * cheaper than with {@link SplitterQuadratic} or {@link SplitterRStar} at the
+ * expense of more overlap between nodes.
+ * </p>
+ */
+public final class SplitterLinear implements Splitter {
+
+    @Override
+    public <T extends HasGeometry> ListPair<T> split(List<T> items, int minSize) {
+        Preconditions.checkArgument(items.size() >= 2);
+        final int n = items.size();
+        final float[] mbrs = Util.mbrs(items);
+
+        // pick seeds
+        final int[] seedsX = seeds(mbrs, 0);
+        final int[] seedsY = seeds(mbrs, 1);
+        final int[] seeds = separation(mbrs, seedsX, 0) >= separation(mbrs, seedsY, 1) ? seedsX
+                : seedsY;
+
+        final List<T> group1 = new ArrayList<T>(n - minSize);
+        final List<T> group2 = new ArrayList<T>(n - minSize);
+        group1.add(items.get(seeds[0]));
+        group2.add(items.get(seeds[1]));
+        final float[] mbr1 = new float[4];
+        final float[] mbr2 = new float[4];
+        System.arraycopy(mbrs, 4 * seeds[0], mbr1, 0, 4);
+        System.arraycopy(mbrs, 4 * seeds[1], mbr2, 0, 4);
+
+        int remaining = n - 2;
+        for (int i = 0; i < n; i++) {
+            if (i == seeds[0] || i == seeds[1])
+                continue;
+            final boolean toGroup1;
+            if (group1.size() + remaining <= minSize)
+                toGroup1 = true;
+            else if (group2.size() + remaining <= minSize)
+                toGroup1 = false;
+            else {
+                float area1 = area(mbr1);
+                float area2 = area(mbr2);
+                float increase1 = enlargedArea(mbr1, mbrs, i) - area1;
+                float increase2 = enlargedArea(mbr2, mbrs, i) - area2;
+                if (increase1 != increase2)
+                    toGroup1 = increase1 < increase2;
+                else if (area1 != area2)
+                    toGroup1 = area1 < area2;
+                else
+                    toGroup1 = group1.size() <= group2.size();
+            }
+            if (toGroup1) {
+                group1.add(items.get(i));
+                include(mbr1, mbrs, i);
+            } else {
+                group2.add(items.get(i));
+                include(mbr2, mbrs, i);
+            }
+            remaining--;
+        }
+        return new ListPair<T>(group1, group2);
+    }
+
+    /**
+     * Returns the index of the item with the lowest high side then the index
+     * of a different item with the highest low side along the given axis (0
+     * for x, 1 for y).
+     */
+    private static int[] seeds(float[] mbrs, int axis) {
+        final int n = mbrs.length / 4;
+        int lowestHigh = 0;
+        for (int i = 1; i < n; i++)
+            if (mbrs[4 * i + 2 + axis] < mbrs[4 * lowestHigh + 2 + axis])
+                lowestHigh = i;
+        int highestLow = lowestHigh == 0 ? 1 : 0;
+        for (int i = 0; i < n; i++)
+            if (i != lowestHigh && mbrs[4 * i + axis] > mbrs[4 * highestLow + axis])
+                highestLow = i;
+        return new int[] { lowestHigh, highestLow };
+    }
+
+    /**
+     * Returns the separation of the seeds along the axis divided by the width
+     * of all the items along the axis.
+     */
+    private static float separation(float[] mbrs, int[] seeds, int axis) {
+        final int n = mbrs.length / 4;
+        float low = Float.MAX_VALUE;
+        float high = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            low = Math.min(low, mbrs[4 * i + axis]);
+            high = Math.max(high, mbrs[4 * i + 2 + axis]);
+        }
+        final float separation = mbrs[4 * seeds[1] + axis] - mbrs[4 * seeds[0] + 2 + axis];
+        if (high > low)
+            return separation / (high - low);
+        else
+            return 0;
+    }
+
+    private static float area(float[] mbr) {
+        return (mbr[2] - mbr[0]) * (mbr[3] - mbr[1]);
+    }
+
+    private static float enlargedArea(float[] mbr, float[] mbrs, int index) {
+        final int j = 4 * index;
+        return (Math.max(mbr[2], mbrs[j + 2]) - Math.min(mbr[0], mbrs[j]))
+                * (Math.max(mbr[3], mbrs[j + 3]) - Math.min(mbr[1], mbrs[j + 1]));
+    }
+
+    private static void include(float[] mbr, float[] mbrs, int index) {
+        final int j = 4 * index;
+        mbr[0] = Math.min(mbr[0], mbrs[j]);
+        mbr[1] = Math.min(mbr[1], mbrs[j + 1]);
+        mbr[2] = Math.max(mbr[2], mbrs[j + 2]);
+        mbr[3] = Math.max(mbr[3], mbrs[j + 3]);
+    }
+
+}
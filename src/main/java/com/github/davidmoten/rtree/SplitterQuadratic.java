@@ -1,8 +1,5 @@
 package com.github.davidmoten.rtree;
 
-import static com.google.common.base.Optional.absent;
-import static com.google.common.base.Optional.of;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -11,7 +8,6 @@ import com.github.davidmoten.rtree.geometry.ListPair;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 import com.github.davidmoten.util.Pair;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
@@ -55,8 +51,8 @@ public final class SplitterQuadratic implements Splitter {
         final Rectangle mbr2 = Util.mbr(group2);
         final T item1 = getBestCandidateForGroup(remaining, group1, mbr1);
         final T item2 = getBestCandidateForGroup(remaining, group2, mbr2);
-        final boolean area1LessThanArea2 = item1.geometry().mbr().add(mbr1).area() <= item2
-                .geometry().mbr().add(mbr2).area();
+        final boolean area1LessThanArea2 = Functions.areaOfUnion(mbr1, item1) <= Functions
+                .areaOfUnion(mbr2, item2);
 
         if (area1LessThanArea2 && (group2.size() + remaining.size() - 1 >= minGroupSize)
                 || !area1LessThanArea2 && (group1.size() + remaining.size() == minGroupSize)) {
@@ -71,40 +67,40 @@ public final class SplitterQuadratic implements Splitter {
     @VisibleForTesting
     static <T extends HasGeometry> T getBestCandidateForGroup(List<T> list, List<T> group,
             Rectangle groupMbr) {
-        Optional<T> minEntry = absent();
-        Optional<Double> minArea = absent();
-        for (final T entry : list) {
-            final double area = groupMbr.add(entry.geometry().mbr()).area();
-            if (!minArea.isPresent() || area < minArea.get()) {
-                minArea = of(area);
-                minEntry = of(entry);
+        int minIndex = -1;
+        float minArea = 0;
+        for (int i = 0; i < list.size(); i++) {
+            final float area = Functions.areaOfUnion(groupMbr, list.get(i));
+            if (minIndex == -1 || area < minArea) {
+                minArea = area;
+                minIndex = i;
             }
         }
-        return minEntry.get();
+        return list.get(minIndex);
     }
 
     @VisibleForTesting
     static <T extends HasGeometry> Pair<T> worstCombination(List<T> items) {
-        Optional<T> e1 = absent();
-        Optional<T> e2 = absent();
+        int e1 = -1;
+        int e2 = -1;
         {
-            Optional<Double> maxArea = absent();
-            for (final T entry1 : items) {
-                for (final T entry2 : items) {
-                    if (entry1 != entry2) {
-                        final double area = entry1.geometry().mbr().add(entry2.geometry().mbr())
-                                .area();
-                        if (!maxArea.isPresent() || area > maxArea.get()) {
-                            e1 = of(entry1);
-                            e2 = of(entry2);
-                            maxArea = of(area);
+            float maxArea = 0;
+            for (int i = 0; i < items.size(); i++) {
+                final Rectangle r = items.get(i).geometry().mbr();
+                for (int j = 0; j < items.size(); j++) {
+                    if (items.get(i) != items.get(j)) {
+                        final float area = Functions.areaOfUnion(r, items.get(j));
+                        if (e1 == -1 || area > maxArea) {
+                            e1 = i;
+                            e2 = j;
+                            maxArea = area;
                         }
                     }
                 }
             }
         }
-        if (e1.isPresent())
-            return new Pair<T>(e1.get(), e2.get());
+        if (e1 != -1)
+            return new Pair<T>(items.get(e1), items.get(e2));
         else
             // all items are the same item
             return new Pair<T>(items.get(0), items.get(1));
@@ -2,121 +2,192 @@ package com.github.davidmoten.rtree;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
-import rx.functions.Func1;
 
 import com.github.davidmoten.rtree.geometry.HasGeometry;
 import com.github.davidmoten.rtree.geometry.ListPair;
 import com.google.common.base.Preconditions;
 
+/**
+ * <p>
+ * The R*-tree split (Beckmann et al, 1990). The items are sorted by each of
+ * the lower and upper x and y bounds of their mbrs and for each sort every
+ * distribution into two groups of at least minSize is considered. The sort
+ * with the least sum of group perimeters over its distributions is chosen and
+ * within it the distribution with the least overlap between the group mbrs
+ * (then least total area).
+ * </p>
+ *
+ * <p>
+ * The mbr coordinates are copied into a <code>float[]</code> once and each sort
+ * is of primitive keys (see {@link Util#sortKey(float, int)}). For a given sort
+ * the mbrs of every prefix and suffix are computed in one sweep each so that
+ * all distributions are evaluated in O(n) without creating any objects. Only
+ * the chosen split is materialised as a {@link ListPair}. The same code splits
+ * the nodes of an {@link RTreeN} in any number of dimensions.
+ * </p>
+ */
 public final class SplitterRStar implements Splitter {
 
-    private final Comparator<ListPair<?>> comparator;
-
-    @SuppressWarnings("unchecked")
-    public SplitterRStar() {
-        this.comparator = Comparators.compose(Comparators.overlapListPairComparator,
-                Comparators.areaPairComparator);
-    }
-
     @Override
     public <T extends HasGeometry> ListPair<T> split(List<T> items, int minSize) {
         Preconditions.checkArgument(!items.isEmpty());
-        // sort nodes into increasing x, calculate min overlap where both groups
-        // have more than minChildren
-
-        Map<SortType, List<ListPair<T>>> map = new HashMap<SortType, List<ListPair<T>>>(5, 1.0f);
-        map.put(SortType.X_LOWER, getPairs(minSize, sort(items, INCREASING_X_LOWER)));
-        map.put(SortType.X_UPPER, getPairs(minSize, sort(items, INCREASING_X_UPPER)));
-        map.put(SortType.Y_LOWER, getPairs(minSize, sort(items, INCREASING_Y_LOWER)));
-        map.put(SortType.Y_UPPER, getPairs(minSize, sort(items, INCREASING_Y_UPPER)));
-
-        // compute S the sum of all margin-values of the lists above
-        // the list with the least S is then used to find minimum overlap
+        final int n = items.size();
+        final int[] order = new int[n];
+        final int size1 = split(Util.mbrs(items), 2, minSize, order);
+        List<T> list1 = new ArrayList<T>(size1);
+        for (int i = 0; i < size1; i++)
+            list1.add(items.get(order[i]));
+        List<T> list2 = new ArrayList<T>(n - size1);
+        for (int i = size1; i < n; i++)
+            list2.add(items.get(order[i]));
+        return new ListPair<T>(list1, list2);
+    }
 
-        SortType leastMarginSumSortType = Collections.min(sortTypes, marginSumComparator(map));
-        List<ListPair<T>> pairs = map.get(leastMarginSumSortType);
+    /**
+     * Chooses the R* split of items with mbrs in the given number of
+     * dimensions. The mbr of item i is at <code>2 * dimensions * i</code> in
+     * <code>coords</code> as its lower bounds followed by its upper bounds (so
+     * x1, y1, x2, y2 in two dimensions). The indexes of the items are placed in
+     * <code>order</code> in the order of the chosen sort and the number of
+     * items in the first group is returned.
+     *
+     * @param coords
+     *            mbrs of the items
+     * @param dimensions
+     *            number of dimensions
+     * @param minSize
+     *            minimum number of items in each group
+     * @param order
+     *            receives the item indexes, its length is the number of items
+     * @return number of items (at the start of order) in the first group
+     */
+    static int split(float[] coords, int dimensions, int minSize, int[] order) {
+        final int n = order.length;
+        final int width = 2 * dimensions;
+        // prefix[width * i ..] is the mbr of the first i + 1 sorted items and
+        // suffix[width * i ..] is the mbr of the sorted items from i on
+        final float[] prefix = new float[width * n];
+        final float[] suffix = new float[width * n];
+        final long[] keys = new long[n];
+
+        // choose the sort (by lower then upper bound on each axis in turn)
+        // with the least sum of the margins of its distributions
+        int[] best = null;
+        float bestMarginSum = 0;
+        int[] sorted = new int[n];
+        for (int axis = 0; axis < dimensions; axis++) {
+            for (int bound = axis; bound < width; bound += dimensions) {
+                sort(coords, width, bound, keys, sorted);
+                sweep(coords, width, sorted, prefix, suffix);
+                float marginSum = 0;
+                for (int i = minSize; i <= n - minSize; i++)
+                    marginSum += margin(prefix, width, i - 1) + margin(suffix, width, i);
+                if (best == null || marginSum < bestMarginSum) {
+                    bestMarginSum = marginSum;
+                    int[] t = best == null ? new int[n] : best;
+                    best = sorted;
+                    sorted = t;
+                }
+            }
+        }
 
-        return Collections.min(pairs, comparator);
+        // choose the distribution with least overlap then least volume
+        sweep(coords, width, best, prefix, suffix);
+        int bestIndex = -1;
+        float bestOverlap = 0;
+        float bestVolume = 0;
+        for (int i = minSize; i <= n - minSize; i++) {
+            float overlap = intersectionVolume(prefix, i - 1, suffix, i, dimensions);
+            float volume = volume(prefix, width, i - 1) + volume(suffix, width, i);
+            if (bestIndex == -1 || overlap < bestOverlap || overlap == bestOverlap
+                    && volume < bestVolume) {
+                bestIndex = i;
+                bestOverlap = overlap;
+                bestVolume = volume;
+            }
+        }
+        if (bestIndex == -1)
+            throw new IllegalArgumentException("too few items to split: " + n);
+        System.arraycopy(best, 0, order, 0, n);
+        return bestIndex;
     }
 
-    private static enum SortType {
-        X_LOWER, X_UPPER, Y_LOWER, Y_UPPER;
+    /**
+     * Places the indexes of the items in increasing order of the mbr bound at
+     * the given offset in <code>order</code>. Items with equal bounds stay in
+     * their original order.
+     */
+    private static void sort(float[] coords, int width, int bound, long[] keys, int[] order) {
+        final int n = keys.length;
+        for (int i = 0; i < n; i++)
+            keys[i] = Util.sortKey(coords[width * i + bound], i);
+        Arrays.sort(keys);
+        for (int i = 0; i < n; i++)
+            order[i] = (int) keys[i];
     }
 
-    private static final List<SortType> sortTypes = Collections.unmodifiableList(Arrays
-            .asList(SortType.values()));
+    private static void sweep(float[] coords, int width, int[] order, float[] prefix,
+            float[] suffix) {
+        final int n = order.length;
+        System.arraycopy(coords, width * order[0], prefix, 0, width);
+        for (int i = 1; i < n; i++)
+            include(prefix, i, prefix, i - 1, coords, order[i], width);
+        System.arraycopy(coords, width * order[n - 1], suffix, width * (n - 1), width);
+        for (int i = n - 2; i >= 0; i--)
+            include(suffix, i, suffix, i + 1, coords, order[i], width);
+    }
 
-    private static <T extends HasGeometry> Comparator<SortType> marginSumComparator(
-            final Map<SortType, List<ListPair<T>>> map) {
-        return Comparators.toComparator(new Func1<SortType, Double>() {
-            @Override
-            public Double call(SortType sortType) {
-                return (double) marginValueSum(map.get(sortType));
-            }
-        });
+    /**
+     * Sets the mbr at index <code>to</code> of <code>a</code> to the mbr at
+     * index <code>from</code> of <code>b</code> expanded to include the item.
+     */
+    private static void include(float[] a, int to, float[] b, int from, float[] coords,
+            int item, int width) {
+        final int t = width * to;
+        final int f = width * from;
+        final int c = width * item;
+        final int dimensions = width / 2;
+        for (int k = 0; k < dimensions; k++) {
+            a[t + k] = Math.min(b[f + k], coords[c + k]);
+            a[t + dimensions + k] = Math.max(b[f + dimensions + k], coords[c + dimensions + k]);
+        }
     }
 
-    private static <T extends HasGeometry> float marginValueSum(List<ListPair<T>> list) {
+    /**
+     * Returns the sum of the extents of the mbr which is proportional to its
+     * margin (the perimeter in two dimensions).
+     */
+    private static float margin(float[] mbrs, int width, int index) {
+        final int j = width * index;
+        final int dimensions = width / 2;
         float sum = 0;
-        for (ListPair<T> p : list)
-            sum += p.marginSum();
+        for (int k = 0; k < dimensions; k++)
+            sum += mbrs[j + dimensions + k] - mbrs[j + k];
         return sum;
     }
 
-    private static <T extends HasGeometry> List<ListPair<T>> getPairs(int minSize, List<T> list) {
-        List<ListPair<T>> pairs = new ArrayList<ListPair<T>>(list.size() - 2 * minSize + 1);
-        for (int i = minSize; i < list.size() - minSize; i++) {
-            List<T> list1 = list.subList(0, i);
-            List<T> list2 = list.subList(i, list.size());
-            ListPair<T> pair = new ListPair<T>(list1, list2);
-            pairs.add(pair);
-        }
-        return pairs;
-    }
-
-    private static <T extends HasGeometry> List<T> sort(List<T> items,
-            Comparator<HasGeometry> comparator) {
-        ArrayList<T> list = new ArrayList<T>(items);
-        Collections.sort(list, comparator);
-        return list;
+    private static float volume(float[] mbrs, int width, int index) {
+        final int j = width * index;
+        final int dimensions = width / 2;
+        float product = 1;
+        for (int k = 0; k < dimensions; k++)
+            product *= mbrs[j + dimensions + k] - mbrs[j + k];
+        return product;
     }
 
-    private static Comparator<HasGeometry> INCREASING_X_LOWER = new Comparator<HasGeometry>() {
-
-        @Override
-        public int compare(HasGeometry n1, HasGeometry n2) {
-            return ((Float) n1.geometry().mbr().x1()).compareTo(n2.geometry().mbr().x1());
-        }
-    };
-
-    private static Comparator<HasGeometry> INCREASING_X_UPPER = new Comparator<HasGeometry>() {
-
-        @Override
-        public int compare(HasGeometry n1, HasGeometry n2) {
-            return ((Float) n1.geometry().mbr().x2()).compareTo(n2.geometry().mbr().x2());
+    private static float intersectionVolume(float[] a, int i, float[] b, int j, int dimensions) {
+        final int p = 2 * dimensions * i;
+        final int q = 2 * dimensions * j;
+        float product = 1;
+        for (int k = 0; k < dimensions; k++) {
+            final float low = Math.max(a[p + k], b[q + k]);
+            final float high = Math.min(a[p + dimensions + k], b[q + dimensions + k]);
+            if (high < low)
+                return 0;
+            product *= high - low;
         }
-    };
-
-    private static Comparator<HasGeometry> INCREASING_Y_LOWER = new Comparator<HasGeometry>() {
-
-        @Override
-        public int compare(HasGeometry n1, HasGeometry n2) {
-            return ((Float) n1.geometry().mbr().y1()).compareTo(n2.geometry().mbr().y1());
-        }
-    };
-
-    private static Comparator<HasGeometry> INCREASING_Y_UPPER = new Comparator<HasGeometry>() {
-
-        @Override
-        public int compare(HasGeometry n1, HasGeometry n2) {
-            return ((Float) n1.geometry().mbr().y2()).compareTo(n2.geometry().mbr().y2());
-        }
-    };
+        return product;
+    }
 
 }
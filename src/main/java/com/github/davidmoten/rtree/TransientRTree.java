@@ -0,0 +1,403 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * A mutable view of an {@link RTree} for applying a batch of additions and
+ * deletions cheaply (in the style of Clojure's transients). Obtain one with
+ * {@link RTree#toTransient()}, make changes then call {@link #build()} to get
+ * an immutable {@link RTree} again.
+ * </p>
+ *
+ * <p>
+ * The first time an addition passes through a node of the source tree the node
+ * is copied into an editable node private to this transient and from then on
+ * that copy is modified in place. Nodes not touched by the batch are shared
+ * with the source tree which is never modified. Editable nodes are converted
+ * to immutable nodes by {@link #build()} and before a deletion, which is then
+ * performed as for {@link RTree} with any entries it redistributes added in
+ * place. If the tree uses forced reinsertion
+ * ({@link RTree.Builder#forcedReinsertion()}) additions are performed as for
+ * {@link RTree} so only the saving of creating one tree per change applies.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe. Once {@link #build()} has been called any further use of
+ * the transient throws an {@link IllegalStateException}.
+ * </p>
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class TransientRTree<T, S extends Geometry> {
+
+    private final Context context;
+    private Optional<? extends Node<T, S>> root;
+    private int size;
+    private boolean built;
+
+    /**
+     * When a node is split by {@link #insert(Node, Entry)} the second node of
+     * the split is placed here for the caller to pick up.
+     */
+    private Node<T, S> sibling;
+
+    TransientRTree(Optional<? extends Node<T, S>> root, int size, Context context) {
+        this.root = root;
+        this.size = size;
+        this.context = context;
+    }
+
+    /**
+     * Adds the entry in place.
+     *
+     * @param entry
+     *            item to add
+     * @return this
+     */
+    @SuppressWarnings("unchecked")
+    public TransientRTree<T, S> add(Entry<? extends T, ? extends S> entry) {
+        checkNotBuilt();
+        addEntry((Entry<T, S>) entry);
+        return this;
+    }
+
+    /**
+     * Adds an entry comprised of the given value and geometry in place.
+     *
+     * @param value
+     *            the value of the {@link Entry} to be added
+     * @param geometry
+     *            the geometry of the {@link Entry} to be added
+     * @return this
+     */
+    public TransientRTree<T, S> add(T value, S geometry) {
+        return add(Entry.entry(value, geometry));
+    }
+
+    /**
+     * Adds the entries in place.
+     *
+     * @param entries
+     *            entries to add
+     * @return this
+     */
+    public TransientRTree<T, S> add(Iterable<Entry<T, S>> entries) {
+        checkNotBuilt();
+        for (Entry<T, S> entry : entries)
+            addEntry(entry);
+        return this;
+    }
+
+    /**
+     * Deletes one or all matching entries depending on the value of
+     * <code>all</code>. The entry must match on both value and geometry to be
+     * deleted.
+     *
+     * @param entry
+     *            the {@link Entry} to be deleted
+     * @param all
+     *            if true deletes all matches otherwise deletes first found
+     * @return this
+     */
+    public TransientRTree<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        checkNotBuilt();
+        if (root.isPresent()) {
+            freezeRoot();
+            NodeAndEntries<T, S> nodeAndEntries = root.get().delete(entry, all);
+            if (!nodeAndEntries.node().isPresent() || nodeAndEntries.node().get() != root.get()) {
+                root = nodeAndEntries.node();
+                size -= nodeAndEntries.countDeleted() + nodeAndEntries.entriesToAdd().size();
+                for (Entry<T, S> e : nodeAndEntries.entriesToAdd())
+                    addEntry(e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Deletes one entry if it exists. The entry must match on both value and
+     * geometry to be deleted.
+     *
+     * @param entry
+     *            the {@link Entry} to be deleted
+     * @return this
+     */
+    public TransientRTree<T, S> delete(Entry<? extends T, ? extends S> entry) {
+        return delete(entry, false);
+    }
+
+    /**
+     * Deletes maximum one entry matching the given value and geometry.
+     *
+     * @param value
+     *            the value of the {@link Entry} to be deleted
+     * @param geometry
+     *            the geometry of the {@link Entry} to be deleted
+     * @return this
+     */
+    public TransientRTree<T, S> delete(T value, S geometry) {
+        return delete(Entry.entry(value, geometry), false);
+    }
+
+    /**
+     * Deletes the given entries, one matching occurrence of each if
+     * <code>all</code> is false otherwise all matching occurrences.
+     *
+     * @param entries
+     *            entries to delete
+     * @param all
+     *            if false deletes one if exists else deletes all
+     * @return this
+     */
+    public TransientRTree<T, S> delete(Iterable<Entry<T, S>> entries, boolean all) {
+        for (Entry<T, S> entry : entries)
+            delete(entry, all);
+        return this;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if and only if there are no entries.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns an immutable {@link RTree} with the changes made to this
+     * transient. This transient cannot be used afterwards.
+     *
+     * @return immutable R-tree
+     */
+    public RTree<T, S> build() {
+        checkNotBuilt();
+        built = true;
+        freezeRoot();
+        return new RTree<T, S>(root, size, context);
+    }
+
+    private void checkNotBuilt() {
+        Preconditions.checkState(!built, "transient used after build()");
+    }
+
+    private void addEntry(Entry<T, S> entry) {
+        if (root.isPresent() && context.reinsertionFraction() > 0) {
+            freezeRoot();
+            root = Optional.of(ForcedReinsertion.add(root.get(), entry, context));
+        } else if (root.isPresent()) {
+            Node<T, S> node = insert(root.get(), entry);
+            Node<T, S> s = takeSibling();
+            if (s == null)
+                root = Optional.of(node);
+            else {
+                List<Node<T, S>> children = newList();
+                children.add(node);
+                children.add(s);
+                root = Optional.of(new EditableNonLeaf<T, S>(children));
+            }
+        } else {
+            List<Entry<T, S>> entries = newList();
+            entries.add(entry);
+            root = Optional.of(new EditableLeaf<T, S>(entries));
+        }
+        size++;
+    }
+
+    private Node<T, S> insert(Node<T, S> node, Entry<T, S> entry) {
+        if (node instanceof EditableLeaf)
+            return insert((EditableLeaf<T, S>) node, entry);
+        else if (node instanceof EditableNonLeaf)
+            return insert((EditableNonLeaf<T, S>) node, entry);
+        else if (node instanceof Leaf)
+            return insert(new EditableLeaf<T, S>(copy(((Leaf<T, S>) node).entries())), entry);
+        else
+            return insert(new EditableNonLeaf<T, S>(copy(((NonLeaf<T, S>) node).children())),
+                    entry);
+    }
+
+    private Node<T, S> insert(EditableLeaf<T, S> leaf, Entry<T, S> entry) {
+        leaf.entries.add(entry);
+        leaf.mbr = Util.expand(leaf.mbr, entry.geometry().mbr());
+        if (leaf.count() <= context.maxChildren())
+            return leaf;
+        else {
+            ListPair<Entry<T, S>> pair = context.splitter().split(leaf.entries,
+                    context.minChildren());
+            sibling = new EditableLeaf<T, S>(copy(pair.group2().list()));
+            return new EditableLeaf<T, S>(copy(pair.group1().list()));
+        }
+    }
+
+    private Node<T, S> insert(EditableNonLeaf<T, S> node, Entry<T, S> entry) {
+        List<Node<T, S>> children = node.children;
+        Node<T, S> child = context.selector().select(entry.geometry().mbr(), children);
+        Node<T, S> replacement = insert(child, entry);
+        Node<T, S> s = takeSibling();
+        children.set(children.indexOf(child), replacement);
+        if (s != null)
+            children.add(s);
+        node.mbr = Util.expand(node.mbr, entry.geometry().mbr());
+        if (node.count() <= context.maxChildren())
+            return node;
+        else {
+            ListPair<Node<T, S>> pair = context.splitter().split(children,
+                    context.minChildren());
+            sibling = new EditableNonLeaf<T, S>(copy(pair.group2().list()));
+            return new EditableNonLeaf<T, S>(copy(pair.group1().list()));
+        }
+    }
+
+    private Node<T, S> takeSibling() {
+        Node<T, S> s = sibling;
+        sibling = null;
+        return s;
+    }
+
+    private void freezeRoot() {
+        if (root.isPresent())
+            root = Optional.of(freeze(root.get()));
+    }
+
+    /**
+     * Returns the node with its editable nodes replaced by immutable ones.
+     * Immutable nodes never have editable descendants so are returned as is.
+     */
+    private Node<T, S> freeze(Node<T, S> node) {
+        if (node instanceof EditableLeaf)
+            return new Leaf<T, S>(((EditableLeaf<T, S>) node).entries, context);
+        else if (node instanceof EditableNonLeaf) {
+            List<Node<T, S>> children = ((EditableNonLeaf<T, S>) node).children;
+            List<Node<T, S>> frozen = new ArrayList<Node<T, S>>(children.size());
+            for (Node<T, S> child : children)
+                frozen.add(freeze(child));
+            return new NonLeaf<T, S>(frozen, context);
+        } else
+            return node;
+    }
+
+    private <R> List<R> newList() {
+        return new ArrayList<R>(context.maxChildren() + 1);
+    }
+
+    /**
+     * Returns a copy of the list with enough capacity to absorb an overflow
+     * without resizing.
+     */
+    private <R> List<R> copy(List<? extends R> list) {
+        List<R> result = newList();
+        result.addAll(list);
+        return result;
+    }
+
+    /**
+     * A leaf that only this transient can see and that it modifies in place.
+     * Only its geometry and count are used (by the selectors and splitters);
+     * it is converted to a {@link Leaf} before any other operation.
+     */
+    static final class EditableLeaf<T, S extends Geometry> implements Node<T, S> {
+
+        private final List<Entry<T, S>> entries;
+        private Rectangle mbr;
+
+        private EditableLeaf(List<Entry<T, S>> entries) {
+            this.entries = entries;
+            this.mbr = Util.mbr(entries);
+        }
+
+        @Override
+        public Geometry geometry() {
+            return mbr;
+        }
+
+        @Override
+        public int count() {
+            return entries.size();
+        }
+
+        @Override
+        public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void search(Func1<? super Geometry, Boolean> condition,
+                Subscriber<? super Entry<T, S>> subscriber) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * A non-leaf node that only this transient can see and that it modifies
+     * in place. Only its geometry and count are used (by the selectors and
+     * splitters); it is converted to a {@link NonLeaf} before any other
+     * operation.
+     */
+    private static final class EditableNonLeaf<T, S extends Geometry> implements Node<T, S> {
+
+        private final List<Node<T, S>> children;
+        private Rectangle mbr;
+
+        private EditableNonLeaf(List<Node<T, S>> children) {
+            this.children = children;
+            this.mbr = Util.mbr(children);
+        }
+
+        @Override
+        public Geometry geometry() {
+            return mbr;
+        }
+
+        @Override
+        public int count() {
+            return children.size();
+        }
+
+        @Override
+        public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void search(Func1<? super Geometry, Boolean> condition,
+                Subscriber<? super Entry<T, S>> subscriber) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
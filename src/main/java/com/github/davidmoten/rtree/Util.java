@@ -59,6 +59,62 @@ public final class Util {
         return Rectangle.create(minX1, minY1, maxX2, maxY2);
     }
 
+    /**
+     * Returns the minimum bounding rectangle of r and s, reusing r if it
+     * already contains s (to avoid allocation).
+     * 
+     * @param r
+     *            rectangle to expand
+     * @param s
+     *            rectangle to include
+     * @return r if r contains s otherwise the mbr of r and s
+     */
+    static Rectangle expand(Rectangle r, Rectangle s) {
+        if (r.x1() <= s.x1() && r.y1() <= s.y1() && r.x2() >= s.x2() && r.y2() >= s.y2())
+            return r;
+        else
+            return r.add(s);
+    }
+
+    /**
+     * Returns the mbrs of the items as a <code>float[]</code> of x1, y1, x2,
+     * y2 for each item in turn (for the splitters to work on primitives).
+     * 
+     * @param items
+     *            items to read
+     * @return mbr coordinates of the items
+     */
+    static float[] mbrs(List<? extends HasGeometry> items) {
+        final float[] mbrs = new float[4 * items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Rectangle r = items.get(i).geometry().mbr();
+            mbrs[4 * i] = r.x1();
+            mbrs[4 * i + 1] = r.y1();
+            mbrs[4 * i + 2] = r.x2();
+            mbrs[4 * i + 3] = r.y2();
+        }
+        return mbrs;
+    }
+
+    /**
+     * Returns a long that orders by value (as {@link Float#compareTo(Float)}
+     * does) then by index so that sorting an array of these keys with
+     * {@link java.util.Arrays#sort(long[])} is a stable primitive sort. The
+     * index is recovered by casting the key to an int.
+     * 
+     * @param value
+     *            sort value
+     * @param index
+     *            non-negative index of the item with the value
+     * @return sort key
+     */
+    static long sortKey(float value, int index) {
+        int bits = Float.floatToIntBits(value);
+        if (bits < 0)
+            bits ^= Integer.MAX_VALUE;
+        return ((long) bits << 32) | index;
+    }
+
     static <T> List<T> add(List<T> list, T element) {
         final ArrayList<T> result = new ArrayList<T>(list.size() + 2);
         result.addAll(list);
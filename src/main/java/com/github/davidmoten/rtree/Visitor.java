@@ -0,0 +1,22 @@
+package com.github.davidmoten.rtree;
+
+/**
+ * Callback for the synchronous search methods of {@link RTree} such as
+ * {@link RTree#search(com.github.davidmoten.rtree.geometry.Rectangle, Visitor)}
+ * which avoid the overhead of creating an Observable for small queries.
+ *
+ * @param <T>
+ *            type of item visited
+ */
+public interface Visitor<T> {
+
+    /**
+     * Called for each item found by a search.
+     *
+     * @param t
+     *            item found
+     * @return true to continue the search or false to stop it
+     */
+    boolean visit(T t);
+
+}
@@ -0,0 +1,165 @@
+package com.github.davidmoten.rtree.geometry;
+
+import java.util.Arrays;
+
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * An axis-aligned box in any number of dimensions, for instance (lon, lat,
+ * altitude) or (x, y, time). A point is a box with equal lower and upper
+ * bounds (see {@link #point(double...)}). Boxes are the geometry of the
+ * entries of a {@link com.github.davidmoten.rtree.RTreeN}.
+ */
+public final class Box {
+
+    private final float[] mins;
+    private final float[] maxs;
+
+    protected Box(float[] mins, float[] maxs) {
+        Preconditions.checkArgument(mins.length > 0, "must have at least one dimension");
+        Preconditions.checkArgument(mins.length == maxs.length,
+                "mins and maxs must have the same number of dimensions");
+        for (int i = 0; i < mins.length; i++)
+            Preconditions.checkArgument(maxs[i] >= mins[i]);
+        this.mins = mins;
+        this.maxs = maxs;
+    }
+
+    public static Box create(float[] mins, float[] maxs) {
+        return new Box(mins.clone(), maxs.clone());
+    }
+
+    public static Box create(double[] mins, double[] maxs) {
+        return new Box(toFloats(mins), toFloats(maxs));
+    }
+
+    public static Box point(double... coordinates) {
+        float[] values = toFloats(coordinates);
+        return new Box(values, values);
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++)
+            result[i] = (float) values[i];
+        return result;
+    }
+
+    public int dimensions() {
+        return mins.length;
+    }
+
+    public float min(int dimension) {
+        return mins[dimension];
+    }
+
+    public float max(int dimension) {
+        return maxs[dimension];
+    }
+
+    /**
+     * Returns the product of the extents of the box in each dimension (the
+     * area in two dimensions).
+     *
+     * @return the volume of the box
+     */
+    public float volume() {
+        float product = 1;
+        for (int i = 0; i < mins.length; i++)
+            product *= maxs[i] - mins[i];
+        return product;
+    }
+
+    /**
+     * Returns the sum of the extents of the box in each dimension (half the
+     * perimeter in two dimensions).
+     *
+     * @return the sum of the extents of the box
+     */
+    public float margin() {
+        float sum = 0;
+        for (int i = 0; i < mins.length; i++)
+            sum += maxs[i] - mins[i];
+        return sum;
+    }
+
+    public Box add(Box b) {
+        checkDimensions(b);
+        float[] x1 = new float[mins.length];
+        float[] x2 = new float[mins.length];
+        for (int i = 0; i < mins.length; i++) {
+            x1[i] = Math.min(mins[i], b.mins[i]);
+            x2[i] = Math.max(maxs[i], b.maxs[i]);
+        }
+        return new Box(x1, x2);
+    }
+
+    public boolean contains(double... point) {
+        Preconditions.checkArgument(point.length == mins.length,
+                "point has wrong number of dimensions");
+        for (int i = 0; i < mins.length; i++)
+            if (point[i] < mins[i] || point[i] > maxs[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns true if the boxes overlap in every dimension (touching counts).
+     *
+     * @param b
+     *            box with the same number of dimensions
+     * @return true if the boxes intersect
+     */
+    public boolean intersects(Box b) {
+        checkDimensions(b);
+        for (int i = 0; i < mins.length; i++)
+            if (Math.max(mins[i], b.mins[i]) > Math.min(maxs[i], b.maxs[i]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the Euclidean distance between the nearest points of the boxes
+     * (zero if they intersect).
+     *
+     * @param b
+     *            box with the same number of dimensions
+     * @return distance between the boxes
+     */
+    public double distance(Box b) {
+        checkDimensions(b);
+        double sum = 0;
+        for (int i = 0; i < mins.length; i++) {
+            double d = Math.max(0, Math.max(b.mins[i] - maxs[i], mins[i] - b.maxs[i]));
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private void checkDimensions(Box b) {
+        Preconditions.checkArgument(b.mins.length == mins.length,
+                "boxes have different numbers of dimensions");
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(mins) + Arrays.hashCode(maxs);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Optional<Box> other = ObjectsHelper.asClass(obj, Box.class);
+        if (other.isPresent()) {
+            return Arrays.equals(mins, other.get().mins) && Arrays.equals(maxs, other.get().maxs);
+        } else
+            return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Box [mins=" + Arrays.toString(mins) + ", maxs=" + Arrays.toString(maxs) + "]";
+    }
+
+}
@@ -28,6 +28,10 @@ public final class Circle implements Geometry {
         return y;
     }
 
+    public float radius() {
+        return radius;
+    }
+
     @Override
     public Rectangle mbr() {
         return mbr;
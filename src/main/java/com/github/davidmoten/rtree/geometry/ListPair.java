@@ -4,7 +4,8 @@ import java.util.List;
 
 /**
  *
- * Not thread safe.
+ * A split of a list into two groups with the sums of the areas and perimeters
+ * of the group mbrs calculated once without boxing.
  *
  * @param <T>
  *            list type
@@ -12,15 +13,16 @@ import java.util.List;
 public final class ListPair<T extends HasGeometry> {
     private final Group<T> group1;
     private final Group<T> group2;
-    // these non-final variable mean that this class is not thread-safe
-    // because access to them is not synchronized
-    private Float areaSum = null;
-    private final Float marginSum;
+    private final float areaSum;
+    private final float marginSum;
 
     public ListPair(List<T> list1, List<T> list2) {
         this.group1 = new Group<T>(list1);
         this.group2 = new Group<T>(list2);
-        this.marginSum = group1.geometry().mbr().perimeter() + group2.geometry().mbr().perimeter();
+        Rectangle mbr1 = group1.geometry().mbr();
+        Rectangle mbr2 = group2.geometry().mbr();
+        this.areaSum = mbr1.area() + mbr2.area();
+        this.marginSum = mbr1.perimeter() + mbr2.perimeter();
     }
 
     public Group<T> group1() {
@@ -32,8 +34,6 @@ public final class ListPair<T extends HasGeometry> {
     }
 
     public float areaSum() {
-        if (areaSum == null)
-            areaSum = group1.geometry().mbr().area() + group2.geometry().mbr().area();
         return areaSum;
     }
 
@@ -112,17 +112,80 @@ public final class Rectangle implements Geometry, HasGeometry {
     }
 
     public float intersectionArea(Rectangle r) {
-        if (!intersects(r))
-            return 0;
-        else
-            return create(Math.max(x1, r.x1), Math.max(y1, r.y1), Math.min(x2, r.x2),
-                    Math.min(y2, r.y2)).area();
+        return intersectionArea(x1, y1, x2, y2, r.x1, r.y1, r.x2, r.y2);
     }
 
     public float perimeter() {
         return 2 * (x2 - x1) + 2 * (y2 - y1);
     }
 
+    /**
+     * Returns the area of the mbr of the two rectangles given by their
+     * coordinates. No objects are created so this is suitable for the inner
+     * loops of {@link com.github.davidmoten.rtree.Selector}s and
+     * {@link com.github.davidmoten.rtree.Splitter}s.
+     * 
+     * @param x1
+     *            minimum x of the first rectangle
+     * @param y1
+     *            minimum y of the first rectangle
+     * @param x2
+     *            maximum x of the first rectangle
+     * @param y2
+     *            maximum y of the first rectangle
+     * @param a1
+     *            minimum x of the second rectangle
+     * @param b1
+     *            minimum y of the second rectangle
+     * @param a2
+     *            maximum x of the second rectangle
+     * @param b2
+     *            maximum y of the second rectangle
+     * @return area of the union mbr
+     */
+    public static float areaOfUnion(float x1, float y1, float x2, float y2, float a1, float b1,
+            float a2, float b2) {
+        return (Math.max(x2, a2) - Math.min(x1, a1)) * (Math.max(y2, b2) - Math.min(y1, b1));
+    }
+
+    /**
+     * Returns the area of the intersection of the two rectangles given by
+     * their coordinates (ordered as for
+     * {@link #areaOfUnion(float, float, float, float, float, float, float, float)}
+     * ) or zero if they do not intersect. No objects are created.
+     * 
+     * @param x1
+     *            minimum x of the first rectangle
+     * @param y1
+     *            minimum y of the first rectangle
+     * @param x2
+     *            maximum x of the first rectangle
+     * @param y2
+     *            maximum y of the first rectangle
+     * @param a1
+     *            minimum x of the second rectangle
+     * @param b1
+     *            minimum y of the second rectangle
+     * @param a2
+     *            maximum x of the second rectangle
+     * @param b2
+     *            maximum y of the second rectangle
+     * @return area of the intersection
+     */
+    public static float intersectionArea(float x1, float y1, float x2, float y2, float a1,
+            float b1, float a2, float b2) {
+        final float left = Math.max(x1, a1);
+        final float right = Math.min(x2, a2);
+        if (right < left)
+            return 0;
+        final float bottom = Math.max(y1, b1);
+        final float top = Math.min(y2, b2);
+        if (top < bottom)
+            return 0;
+        else
+            return (right - left) * (top - bottom);
+    }
+
     @Override
     public Geometry geometry() {
         return this;
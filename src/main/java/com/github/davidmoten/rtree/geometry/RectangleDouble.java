@@ -0,0 +1,219 @@
+package com.github.davidmoten.rtree.geometry;
+
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * A rectangle with double precision coordinates. The R-tree indexes the
+ * {@link #mbr()} which is the smallest float {@link Rectangle} containing this
+ * rectangle (the coordinates are rounded outwards) so that nearby geometries
+ * share index nodes as usual but are never missed. Intersection and distance
+ * calculations against this rectangle are done in double precision.
+ * </p>
+ *
+ * <p>
+ * Use this (or {@link PointDouble}) where float precision (about 7 significant
+ * digits) is not enough to tell geometries apart, for instance lat-long
+ * coordinates at city scale. The float geometries use less memory.
+ * </p>
+ */
+public final class RectangleDouble implements Geometry, HasGeometry {
+
+    private final double x1, y1, x2, y2;
+    private final Rectangle mbr;
+
+    protected RectangleDouble(double x1, double y1, double x2, double y2) {
+        Preconditions.checkArgument(x2 >= x1);
+        Preconditions.checkArgument(y2 >= y1);
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.mbr = Rectangle.create(floor(x1), floor(y1), ceil(x2), ceil(y2));
+    }
+
+    public static RectangleDouble create(double x1, double y1, double x2, double y2) {
+        return new RectangleDouble(x1, y1, x2, y2);
+    }
+
+    public double x1() {
+        return x1;
+    }
+
+    public double y1() {
+        return y1;
+    }
+
+    public double x2() {
+        return x2;
+    }
+
+    public double y2() {
+        return y2;
+    }
+
+    public double area() {
+        return (x2 - x1) * (y2 - y1);
+    }
+
+    public double perimeter() {
+        return 2 * (x2 - x1) + 2 * (y2 - y1);
+    }
+
+    public RectangleDouble add(RectangleDouble r) {
+        return new RectangleDouble(Math.min(x1, r.x1), Math.min(y1, r.y1), Math.max(x2, r.x2),
+                Math.max(y2, r.y2));
+    }
+
+    public boolean contains(double x, double y) {
+        return x >= x1 && x <= x2 && y >= y1 && y <= y2;
+    }
+
+    @Override
+    public Rectangle mbr() {
+        return mbr;
+    }
+
+    @Override
+    public Geometry geometry() {
+        return this;
+    }
+
+    @Override
+    public boolean intersects(Rectangle r) {
+        return intersects(x1, y1, x2, y2, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    public boolean intersects(RectangleDouble r) {
+        return intersects(x1, y1, x2, y2, r.x1, r.y1, r.x2, r.y2);
+    }
+
+    /**
+     * Returns true if the geometry intersects with this rectangle. The test is
+     * exact in double precision for {@link PointDouble},
+     * {@link RectangleDouble}, {@link Point}, {@link Rectangle} and
+     * {@link Circle}. Other geometries are tested against {@link #mbr()}.
+     *
+     * @param g
+     *            geometry to test
+     * @return true if g intersects with this rectangle
+     */
+    public boolean intersects(Geometry g) {
+        if (g instanceof PointDouble) {
+            PointDouble p = (PointDouble) g;
+            return contains(p.x(), p.y());
+        } else if (g instanceof RectangleDouble)
+            return intersects((RectangleDouble) g);
+        else if (g instanceof Point || g instanceof Rectangle)
+            return intersects(g.mbr());
+        else if (g instanceof Circle)
+            return distance(g) == 0;
+        else
+            return g.intersects(mbr);
+    }
+
+    @Override
+    public double distance(Rectangle r) {
+        return distance(x1, y1, x2, y2, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    public double distance(RectangleDouble r) {
+        return distance(x1, y1, x2, y2, r.x1, r.y1, r.x2, r.y2);
+    }
+
+    /**
+     * Returns the distance from this rectangle to the point (x, y).
+     *
+     * @param x
+     *            x coordinate of the point
+     * @param y
+     *            y coordinate of the point
+     * @return distance to the point (zero if the point is inside)
+     */
+    public double distance(double x, double y) {
+        return distance(x1, y1, x2, y2, x, y, x, y);
+    }
+
+    /**
+     * Returns the distance from the geometry to this rectangle. The distance
+     * is exact in double precision for the same geometries as
+     * {@link #intersects(Geometry)}. Other geometries are measured to
+     * {@link #mbr()}.
+     *
+     * @param g
+     *            geometry to measure the distance to
+     * @return distance from this rectangle to g
+     */
+    public double distance(Geometry g) {
+        if (g instanceof PointDouble) {
+            PointDouble p = (PointDouble) g;
+            return distance(p.x(), p.y());
+        } else if (g instanceof RectangleDouble)
+            return distance((RectangleDouble) g);
+        else if (g instanceof Point || g instanceof Rectangle)
+            return distance(g.mbr());
+        else if (g instanceof Circle) {
+            Circle c = (Circle) g;
+            return Math.max(0, distance(c.x(), c.y()) - c.radius());
+        } else
+            return g.distance(mbr);
+    }
+
+    static boolean intersects(double x1, double y1, double x2, double y2, double a1, double b1,
+            double a2, double b2) {
+        return Math.max(x1, a1) <= Math.min(x2, a2) && Math.max(y1, b1) <= Math.min(y2, b2);
+    }
+
+    static double distance(double x1, double y1, double x2, double y2, double a1, double b1,
+            double a2, double b2) {
+        final double dx = Math.max(0, Math.max(a1 - x2, x1 - a2));
+        final double dy = Math.max(0, Math.max(b1 - y2, y1 - b2));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns the largest float not greater than d.
+     */
+    static float floor(double d) {
+        float f = (float) d;
+        if (f > d)
+            return Math.nextAfter(f, Double.NEGATIVE_INFINITY);
+        else
+            return f;
+    }
+
+    /**
+     * Returns the smallest float not less than d.
+     */
+    static float ceil(double d) {
+        float f = (float) d;
+        if (f < d)
+            return Math.nextAfter(f, Double.POSITIVE_INFINITY);
+        else
+            return f;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(x1, y1, x2, y2);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Optional<RectangleDouble> other = ObjectsHelper.asClass(obj, RectangleDouble.class);
+        if (other.isPresent()) {
+            return Objects.equal(x1, other.get().x1) && Objects.equal(x2, other.get().x2)
+                    && Objects.equal(y1, other.get().y1) && Objects.equal(y2, other.get().y2);
+        } else
+            return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RectangleDouble [x1=" + x1 + ", y1=" + y1 + ", x2=" + x2 + ", y2=" + y2 + "]";
+    }
+
+}
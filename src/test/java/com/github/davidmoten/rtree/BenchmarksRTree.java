@@ -2,6 +2,11 @@ package com.github.davidmoten.rtree;
 
 import static com.github.davidmoten.rtree.Utilities.entries1000;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -9,6 +14,8 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 
 import rx.Subscriber;
+import rx.functions.Func1;
+import rx.functions.Func2;
 
 import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Point;
@@ -45,6 +52,63 @@ public class BenchmarksRTree {
     private final RTree<Object, Point> starTreeM128 = RTree.maxChildren(128).star()
             .<Object, Point> create().add(entries);
 
+    // built by a long sequence of inserts
+    private final RTree<Object, Point> reinsertingStarTreeM10 = RTree.maxChildren(10).star()
+            .forcedReinsertion().<Object, Point> create().add(entries);
+
+    private final RTree<Object, Point> reinsertingStarTreeM32 = RTree.maxChildren(32).star()
+            .forcedReinsertion().<Object, Point> create().add(entries);
+
+    private final RTree<Object, Point> linearTreeM128 = RTree.maxChildren(128)
+            .splitter(new SplitterLinear()).<Object, Point> create().add(entries);
+
+    private final RTree<Object, Point> angTanTreeM128 = RTree.maxChildren(128)
+            .splitter(new SplitterAngTan()).<Object, Point> create().add(entries);
+
+    private final RTree<Object, Point> packedTreeM10 = RTree.maxChildren(10)
+            .<Object, Point> create(entries);
+
+    private final RTree<Object, Point> packedTreeM128 = RTree.maxChildren(128)
+            .<Object, Point> create(entries);
+
+    private final RTree<Object, Point> flatStarTreeM10 = RTree.maxChildren(10).star()
+            .flatPointLeaves().<Object, Point> create().add(entries);
+
+    private final RTree<Object, Point> flatStarTreeM128 = RTree.maxChildren(128).star()
+            .flatPointLeaves().<Object, Point> create().add(entries);
+
+    private static final Func1<Object, byte[]> TO_BYTES = new Func1<Object, byte[]>() {
+        @Override
+        public byte[] call(Object value) {
+            return new byte[0];
+        }
+    };
+
+    private static final Func1<byte[], Object> FROM_BYTES = new Func1<byte[], Object>() {
+        @Override
+        public Object call(byte[] bytes) {
+            return null;
+        }
+    };
+
+    private static final Func2<Point, Point, Boolean> ALWAYS_TRUE = new Func2<Point, Point, Boolean>() {
+        @Override
+        public Boolean call(Point p1, Point p2) {
+            return true;
+        }
+    };
+
+    private static final RTreeSerializer<Object, Point> SERIALIZER = RTreeSerializer.create(
+            TO_BYTES, FROM_BYTES);
+
+    private final List<Rectangle> queries = queries(entries);
+
+    private final byte[] starTreeM10Bytes = serialize(starTreeM10);
+
+    private final MappedRTree<Object, Point> mappedStarTreeM10 = map(starTreeM10);
+
+    private final MappedRTree<Object, Point> mappedStarTreeM128 = map(starTreeM128);
+
     private final RTree<Object, Rectangle> smallDefaultTreeM4 = RTree.maxChildren(4)
             .<Object, Rectangle> create().add(some);
 
@@ -109,6 +173,16 @@ public class BenchmarksRTree {
         searchGreek(starTreeM10);
     }
 
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010Mapped() {
+        mappedStarTreeM10.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren128Mapped() {
+        mappedStarTreeM128.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
+    }
+
     @Benchmark
     public void rStarTreeSearchOfGreekDataPointsMaxChildren010WithBackpressure() {
         searchGreekWithBackpressure(starTreeM10);
@@ -144,6 +218,68 @@ public class BenchmarksRTree {
         searchGreek(defaultTreeM128);
     }
 
+    @Benchmark
+    public void rStarTreeCreateFromGreekDataMaxChildren128() {
+        RTree.maxChildren(128).star().<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeWithReinsertionSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(reinsertingStarTreeM10);
+    }
+
+    @Benchmark
+    public void rStarTreeWithReinsertionSearchOfGreekDataPointsMaxChildren032() {
+        searchGreek(reinsertingStarTreeM32);
+    }
+
+    @Benchmark
+    public void rStarTreeWithReinsertionInsertOneEntryIntoGreekDataEntriesMaxChildren010() {
+        insertPoint(reinsertingStarTreeM10);
+    }
+
+    @Benchmark
+    public void rStarTreeWithReinsertionCreateFromGreekDataMaxChildren010() {
+        RTree.maxChildren(10).star().forcedReinsertion().<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public void linearRTreeInsertOneEntryIntoGreekDataEntriesMaxChildren128() {
+        insertPoint(linearTreeM128);
+    }
+
+    @Benchmark
+    public void linearRTreeSearchOfGreekDataPointsMaxChildren128() {
+        searchGreek(linearTreeM128);
+    }
+
+    @Benchmark
+    public void angTanRTreeInsertOneEntryIntoGreekDataEntriesMaxChildren128() {
+        insertPoint(angTanTreeM128);
+    }
+
+    @Benchmark
+    public void angTanRTreeSearchOfGreekDataPointsMaxChildren128() {
+        searchGreek(angTanTreeM128);
+    }
+
+    @Benchmark
+    public void linearRTreeCreateFromGreekDataMaxChildren128() {
+        RTree.maxChildren(128).splitter(new SplitterLinear()).<Object, Point> create()
+                .add(entries);
+    }
+
+    @Benchmark
+    public void angTanRTreeCreateFromGreekDataMaxChildren128() {
+        RTree.maxChildren(128).splitter(new SplitterAngTan()).<Object, Point> create()
+                .add(entries);
+    }
+
+    @Benchmark
+    public void defaultRTreeCreateFromGreekDataMaxChildren128() {
+        RTree.maxChildren(128).<Object, Point> create().add(entries);
+    }
+
     @Benchmark
     public void rStarTreeInsertOneEntryIntoGreekDataEntriesMaxChildren128() {
         insertPoint(starTreeM128);
@@ -239,10 +375,210 @@ public class BenchmarksRTree {
         deleteAll(starTreeM10);
     }
 
+    @Benchmark
+    public void packedRTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(packedTreeM10);
+    }
+
+    @Benchmark
+    public void packedRTreeSearchOfGreekDataPointsMaxChildren128() {
+        searchGreek(packedTreeM128);
+    }
+
+    @Benchmark
+    public void flatRStarTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(flatStarTreeM10);
+    }
+
+    @Benchmark
+    public void flatRStarTreeSearchOfGreekDataPointsMaxChildren128() {
+        searchGreek(flatStarTreeM128);
+    }
+
+    @Benchmark
+    public void flatRStarTreeSearchOfGreekDataPointsMaxChildren128WithBackpressure() {
+        searchGreekWithBackpressure(flatStarTreeM128);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchWithVisitorOfGreekDataPointsMaxChildren010() {
+        searchGreekWithVisitor(starTreeM10);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchWithVisitorOfGreekDataPointsMaxChildren128() {
+        searchGreekWithVisitor(starTreeM128);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchIterableOfGreekDataPointsMaxChildren010() {
+        searchGreekIterable(starTreeM10);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchAllOfGreekDataPointsMaxChildren010() {
+        starTreeM10.search(Geometries.rectangle(-180, -90, 180, 90)).subscribe();
+    }
+
+    @Benchmark
+    public double rStarTreeCursorAllOfGreekDataPointsMaxChildren010() {
+        return sumOfX(starTreeM10.cursor(Geometries.rectangle(-180, -90, 180, 90)));
+    }
+
+    @Benchmark
+    public double rStarTreeCursorAllOfGreekDataPointsFlatMaxChildren128() {
+        return sumOfX(flatStarTreeM128.cursor(Geometries.rectangle(-180, -90, 180, 90)));
+    }
+
+    @Benchmark
+    public double rStarTreeCursorAllOfGreekDataPointsMappedMaxChildren128() {
+        return sumOfX(mappedStarTreeM128.cursor(Geometries.rectangle(-180, -90, 180, 90)));
+    }
+
+    @Benchmark
+    public void rStarTreeSearchParallelAllOfGreekDataPointsMaxChildren010() {
+        starTreeM10.searchParallel(Geometries.rectangle(-180, -90, 180, 90)).toBlocking()
+                .last();
+    }
+
+    @Benchmark
+    public void packedRTreeCreateFromGreekDataMaxChildren010() {
+        RTree.maxChildren(10).<Object, Point> create(entries);
+    }
+
+    @Benchmark
+    public void packedRTreeCreateInParallelFromGreekDataMaxChildren010() {
+        RTree.maxChildren(10).parallel().<Object, Point> create(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeReadSerializedGreekDataMaxChildren010() throws IOException {
+        SERIALIZER.read(new ByteArrayInputStream(starTreeM10Bytes));
+    }
+
+    @Benchmark
+    public long rStarTreeJoinWithDefaultTreeMaxChildren010() {
+        return smallStarTreeM10.join(smallDefaultTreeM10).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public List<List<Entry<Object, Point>>> rStarTreeSearchBatchGreekDataMaxChildren010() {
+        return starTreeM10.searchBatch(queries);
+    }
+
+    @Benchmark
+    public int rStarTreeSearchBatchSeparatelyGreekDataMaxChildren010() {
+        final int[] count = new int[1];
+        Visitor<Entry<Object, Point>> visitor = new Visitor<Entry<Object, Point>>() {
+            @Override
+            public boolean visit(Entry<Object, Point> entry) {
+                count[0]++;
+                return true;
+            }
+        };
+        for (Rectangle r : queries)
+            starTreeM10.search(r, visitor);
+        return count[0];
+    }
+
+    @Benchmark
+    public long rStarTreeNearestJoin3OfSmallTreeGreekDataMaxChildren010() {
+        return smallStarTreeM10.nearestJoin(starTreeM10, Double.POSITIVE_INFINITY, 3).count()
+                .toBlocking().single();
+    }
+
+    @Benchmark
+    public long rStarTreeNearest3ForEachEntryOfSmallTreeGreekDataMaxChildren010() {
+        long count = 0;
+        for (Entry<Object, Rectangle> entry : some)
+            count += starTreeM10.nearest(entry.geometry(), Double.POSITIVE_INFINITY, 3).count()
+                    .toBlocking().single();
+        return count;
+    }
+
+    @Benchmark
+    public long rStarTreeJoinWithItselfGreekDataMaxChildren010() {
+        return starTreeM10.join(starTreeM10).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public long rStarTreeJoinInParallelWithItselfGreekDataMaxChildren010() {
+        return starTreeM10.joinParallel(starTreeM10, ALWAYS_TRUE).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public long defaultTreeSearchForEachEntryOfStarTreeMaxChildren010() {
+        long count = 0;
+        for (Entry<Object, Rectangle> entry : some)
+            count += smallDefaultTreeM10.search(entry.geometry()).count().toBlocking().single();
+        return count;
+    }
+
+    @Benchmark
+    public void defaultRTreeCreateFromGreekDataMaxChildren010() {
+        RTree.maxChildren(10).<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public void rStarTreeInsert1000EntriesInBatchIntoGreekDataEntriesMaxChildren010() {
+        starTreeM10.add(entries.subList(0, 1000));
+    }
+
+    @Benchmark
+    public void rStarTreeInsert1000EntriesInBatchIntoGreekDataEntriesMaxChildren128() {
+        starTreeM128.add(entries.subList(0, 1000));
+    }
+
+    @Benchmark
+    public void rStarTreeInsert1000EntriesOneAtATimeIntoGreekDataEntriesMaxChildren010() {
+        RTree<Object, Point> tree = starTreeM10;
+        for (Entry<Object, Point> entry : entries.subList(0, 1000))
+            tree = tree.add(entry);
+    }
+
     private void deleteAll(RTree<Object, Point> tree) {
         tree.delete(entries.get(1000), true);
     }
 
+    private static byte[] serialize(RTree<Object, Point> tree) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            SERIALIZER.write(tree, bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MappedRTree<Object, Point> map(RTree<Object, Point> tree) {
+        try {
+            File file = File.createTempFile("rtree", ".bin");
+            file.deleteOnExit();
+            MappedRTree.write(tree, file, TO_BYTES);
+            return MappedRTree.open(file, FROM_BYTES);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<Rectangle> queries(List<Entry<Object, Point>> entries) {
+        // 1000 small rectangles around entries spread through the data
+        List<Rectangle> list = new ArrayList<Rectangle>();
+        for (int i = 0; i < 1000; i++) {
+            Point p = entries.get(i * 37).geometry();
+            list.add(Geometries.rectangle(p.x() - 0.25, p.y() - 0.25, p.x() + 0.25,
+                    p.y() + 0.25));
+        }
+        return list;
+    }
+
+    private static double sumOfX(Cursor<?> cursor) {
+        double sum = 0;
+        while (cursor.next())
+            sum += cursor.x1();
+        return sum;
+    }
+
     private void search(RTree<Object, Rectangle> tree) {
         // returns 10 results
         tree.search(Geometries.rectangle(500, 500, 630, 630)).subscribe();
@@ -253,6 +589,30 @@ public class BenchmarksRTree {
         tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
     }
 
+    private int searchGreekWithVisitor(RTree<Object, Point> tree) {
+        // should return 22 results
+        final int[] count = new int[1];
+        tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5),
+                new Visitor<Entry<Object, Point>>() {
+                    @Override
+                    public boolean visit(Entry<Object, Point> entry) {
+                        count[0]++;
+                        return true;
+                    }
+                });
+        return count[0];
+    }
+
+    private int searchGreekIterable(RTree<Object, Point> tree) {
+        // should return 22 results
+        int count = 0;
+        for (Entry<Object, Point> entry : tree.searchIterable(Geometries.rectangle(40, 27.0,
+                40.5, 27.5)))
+            if (entry != null)
+                count++;
+        return count;
+    }
+
     private void searchGreekWithBackpressure(RTree<Object, Point> tree) {
         // should return 22 results
         tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe(new Subscriber<Object>() {
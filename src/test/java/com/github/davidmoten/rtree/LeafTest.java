@@ -1,6 +1,8 @@
 package com.github.davidmoten.rtree;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -8,6 +10,8 @@ import java.util.Arrays;
 import org.junit.Test;
 
 import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 
 public class LeafTest {
@@ -29,4 +33,30 @@ public class LeafTest {
                 Entry.entry(new Object(), r2)), context).geometry().mbr();
         assertEquals(r1.add(r2), r);
     }
+
+    @Test
+    public void testFlatPointLeafStoresPointsInArrays() {
+        Context flat = new Context(2, 4, new SelectorMinimalAreaIncrease(),
+                new SplitterQuadratic(), true);
+        @SuppressWarnings("unchecked")
+        Leaf<Object, Point> leaf = new Leaf<Object, Point>(Arrays.asList(
+                Entry.entry((Object) 1, Geometries.point(1, 2)),
+                Entry.entry((Object) 2, Geometries.point(3, 4))), flat);
+        assertTrue(leaf.entries() instanceof PointEntries);
+        assertEquals(Entry.entry(2, Geometries.point(3, 4)), leaf.entries().get(1));
+        assertEquals(Geometries.rectangle(1, 2, 3, 4), leaf.geometry());
+        assertTrue(leaf.entryMatches(0, RTree.intersects(Geometries.rectangle(0, 0, 1, 2))));
+        assertFalse(leaf.entryMatches(1, RTree.intersects(Geometries.rectangle(0, 0, 1, 2))));
+    }
+
+    @Test
+    public void testFlatPointLeafNotUsedForOtherGeometries() {
+        Context flat = new Context(2, 4, new SelectorMinimalAreaIncrease(),
+                new SplitterQuadratic(), true);
+        @SuppressWarnings("unchecked")
+        Leaf<Object, Geometry> leaf = new Leaf<Object, Geometry>(Arrays.asList(
+                Entry.entry((Object) 1, (Geometry) Geometries.point(1, 2)),
+                Entry.entry((Object) 2, (Geometry) Geometries.rectangle(3, 4, 5, 6))), flat);
+        assertFalse(leaf.entries() instanceof PointEntries);
+    }
 }
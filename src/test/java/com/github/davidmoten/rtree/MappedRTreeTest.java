@@ -0,0 +1,181 @@
+package com.github.davidmoten.rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class MappedRTreeTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Func1<Object, byte[]> TO_BYTES = new Func1<Object, byte[]>() {
+        @Override
+        public byte[] call(Object value) {
+            return String.valueOf(value).getBytes(UTF_8);
+        }
+    };
+
+    private static final Func1<byte[], Object> FROM_BYTES = new Func1<byte[], Object>() {
+        @Override
+        public Object call(byte[] bytes) {
+            return new String(bytes, UTF_8);
+        }
+    };
+
+    @Test
+    public void testSearchesOfGreekDataMatchHeapTree() throws IOException {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.star().maxChildren(10).<Object, Point> create()
+                .add(entries);
+        MappedRTree<Object, Point> mapped = writeAndOpen(tree);
+        assertEquals(tree.size(), mapped.size());
+        assertFalse(mapped.isEmpty());
+        assertEquals(10, mapped.maxChildren());
+        assertEquals(tree.context().minChildren(), mapped.minChildren());
+        Rectangle r = Geometries.rectangle(40, 27.0, 40.5, 27.5);
+        assertEquals(22, (int) mapped.search(r).count().toBlocking().single());
+        assertEquals(strings(tree.search(r)), strings(mapped.search(r)));
+        Point p = Geometries.point(38, 23);
+        assertEquals(strings(tree.search(p, 0.3)), strings(mapped.search(p, 0.3)));
+        assertEquals(strings(tree.search(entries.get(0).geometry())),
+                strings(mapped.search(entries.get(0).geometry())));
+        assertEquals(distances(tree.nearest(p, 1, 50), p), distances(mapped.nearest(p, 1, 50), p));
+        assertEquals(50, (int) mapped.nearest(p, 1, 50).count().toBlocking().single());
+        // all entries are returned by a search of everything
+        assertEquals(tree.size(),
+                (int) mapped.search(Geometries.rectangle(-180, -90, 180, 90)).count()
+                        .toBlocking().single());
+    }
+
+    @Test
+    public void testSearchesOfMixedGeometriesMatchHeapTree() throws IOException {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 50; i++)
+            tree = tree.add(i, Geometries.point(i, i))
+                    .add("r" + i, Geometries.rectangle(i, i, i + 1, i + 2))
+                    .add("c" + i, Geometries.circle(i, i, 0.5));
+        MappedRTree<Object, Geometry> mapped = writeAndOpen(tree);
+        assertEquals(150, mapped.size());
+        Rectangle r = Geometries.rectangle(10.2, 10.6, 15.3, 12);
+        assertEquals(strings(tree.search(r)), strings(mapped.search(r)));
+        assertEquals(strings(tree.search(r, 1.5)), strings(mapped.search(r, 1.5)));
+        assertEquals(distances(tree.nearest(r, 5, 20), r), distances(mapped.nearest(r, 5, 20), r));
+    }
+
+    @Test
+    public void testCursorMatchesSearch() throws IOException {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 50; i++)
+            tree = tree.add(i, Geometries.point(i, i))
+                    .add("r" + i, Geometries.rectangle(i, i, i + 1, i + 2))
+                    .add("c" + i, Geometries.circle(i, i, 0.5));
+        MappedRTree<Object, Geometry> mapped = writeAndOpen(tree);
+        Rectangle r = Geometries.rectangle(10.2, 10.6, 15.3, 12);
+        List<String> expected = mapped.search(r)
+                .map(new Func1<Entry<Object, Geometry>, String>() {
+                    @Override
+                    public String call(Entry<Object, Geometry> entry) {
+                        Rectangle mbr = entry.geometry().mbr();
+                        return entry.value() + " " + mbr.x1() + " " + mbr.y1() + " " + mbr.x2()
+                                + " " + mbr.y2();
+                    }
+                }).toList().toBlocking().single();
+        List<String> list = new ArrayList<String>();
+        MappedCursor<Object> cursor = mapped.cursor(r);
+        while (cursor.next()) {
+            assertEquals(cursor.value(), mapped.value(cursor.valueIndex()));
+            list.add(cursor.value() + " " + cursor.x1() + " " + cursor.y1() + " " + cursor.x2()
+                    + " " + cursor.y2());
+        }
+        assertEquals(expected, list);
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testEmptyTree() throws IOException {
+        MappedRTree<Object, Point> mapped = writeAndOpen(RTree.<Object, Point> create());
+        assertTrue(mapped.isEmpty());
+        assertEquals(0, (int) mapped.search(Geometries.rectangle(0, 0, 1, 1)).count()
+                .toBlocking().single());
+        assertEquals(0, (int) mapped.nearest(Geometries.point(0, 0), 1, 1).count().toBlocking()
+                .single());
+        assertFalse(mapped.cursor(Geometries.rectangle(0, 0, 1, 1)).next());
+    }
+
+    @Test
+    public void testSearchWithinNegativeDistanceReturnsNothing() throws IOException {
+        MappedRTree<Object, Point> mapped = writeAndOpen(RTree.<Object, Point> create().add(1,
+                Geometries.point(1, 2)));
+        Rectangle r = Geometries.rectangle(0, 0, 10, 10);
+        assertEquals(1, (int) mapped.search(r).count().toBlocking().single());
+        assertEquals(0, (int) mapped.search(r, -1).count().toBlocking().single());
+        assertEquals(0, (int) mapped.search(Geometries.point(1, 2), -1).count().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testSearchWithBackpressure() throws IOException {
+        MappedRTree<Object, Point> mapped = writeAndOpen(RTree.<Object, Point> create(GreekEarthquakes
+                .entriesList()));
+        assertEquals(5, (int) mapped.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).take(5)
+                .count().toBlocking().single());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenOfOtherDataThrows() throws IOException {
+        File file = File.createTempFile("rtree", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[64]);
+        } finally {
+            out.close();
+        }
+        MappedRTree.open(file, FROM_BYTES);
+    }
+
+    private static <S extends Geometry> MappedRTree<Object, S> writeAndOpen(RTree<Object, S> tree)
+            throws IOException {
+        File file = File.createTempFile("rtree", ".bin");
+        file.deleteOnExit();
+        MappedRTree.write(tree, file, TO_BYTES);
+        return MappedRTree.open(file, FROM_BYTES);
+    }
+
+    private static <S extends Geometry> List<String> strings(Observable<Entry<Object, S>> entries) {
+        return entries.map(new Func1<Entry<Object, S>, String>() {
+            @Override
+            public String call(Entry<Object, S> entry) {
+                return entry.value() + " " + entry.geometry();
+            }
+        }).toList().toBlocking().single();
+    }
+
+    private static <S extends Geometry> List<Double> distances(
+            Observable<Entry<Object, S>> entries, final Geometry g) {
+        return entries.map(new Func1<Entry<Object, S>, Double>() {
+            @Override
+            public Double call(Entry<Object, S> entry) {
+                return entry.geometry().distance(g.mbr());
+            }
+        }).toList().toBlocking().single();
+    }
+
+}
@@ -1,10 +1,16 @@
 package com.github.davidmoten.rtree;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
+import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
 
 public class NonLeafTest {
 
@@ -12,5 +18,23 @@ public class NonLeafTest {
     public void testNonLeafPrecondition() {
         new NonLeaf<Object,Geometry>(Collections.<Node<Object,Geometry>>emptyList(), null);
     }
-    
+
+    @Test
+    public void testChildMatchesAgreesWithRectangleIntersects() {
+        Context context = new Context(1, 4, new SelectorMinimalAreaIncrease(),
+                new SplitterQuadratic());
+        List<Node<Object, Rectangle>> children = new ArrayList<Node<Object, Rectangle>>();
+        for (int i = 0; i < 4; i++)
+            children.add(new Leaf<Object, Rectangle>(Collections.singletonList(Entry
+                    .<Object, Rectangle> entry(i, Geometries.rectangle(i, i, i + 1, i + 1))),
+                    context));
+        NonLeaf<Object, Rectangle> node = new NonLeaf<Object, Rectangle>(children, context);
+        for (Rectangle r : new Rectangle[] { Geometries.rectangle(0, 0, 0, 0),
+                Geometries.rectangle(1.5, 1.5, 1.6, 1.6), Geometries.rectangle(4, 0, 5, 5),
+                Geometries.rectangle(-1, -1, 10, 10), Geometries.rectangle(5, 5, 6, 6) })
+            for (int i = 0; i < children.size(); i++)
+                assertEquals(children.get(i).geometry().intersects(r),
+                        node.childMatches(i, RTree.intersects(r)));
+    }
+
 }
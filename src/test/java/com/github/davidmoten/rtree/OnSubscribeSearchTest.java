@@ -33,7 +33,8 @@ public class OnSubscribeSearchTest {
     @Test
     public void testSearchProducerThrowsExceptionFromRequestSome() {
         Node<Integer, Point> node = new Leaf<Integer, Point>(Collections.singletonList(Entry.entry(
-                1, Geometries.point(1, 1))), null);
+                1, Geometries.point(1, 1))), new Context(1, 4, new SelectorMinimalAreaIncrease(),
+                new SplitterQuadratic()));
 
         Func1<Geometry, Boolean> condition = Mockito.mock(Func1.class);
         Subscriber<Entry<Integer, Point>> subscriber = new Subscriber<Entry<Integer, Point>>() {
@@ -0,0 +1,173 @@
+package com.github.davidmoten.rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Box;
+
+public class RTreeNTest {
+
+    @Test
+    public void testEmptyTree() {
+        RTreeN<Integer> tree = RTreeN.create(3);
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.calculateDepth());
+        assertEquals(0, (int) tree.search(Box.point(0, 0, 0)).count().toBlocking().single());
+        assertEquals(0, (int) tree.nearest(Box.point(0, 0, 0), 1, 1).count().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testSearchPrunesOnEveryDimension() {
+        // same lon and lat, different altitudes
+        RTreeN<String> tree = RTreeN.<String> create(3).add("low", Box.point(151.2, -33.9, 1000))
+                .add("high", Box.point(151.2, -33.9, 10000));
+        Box query = Box.create(new double[] { 151, -34, 0 }, new double[] { 152, -33, 5000 });
+        assertEquals(Collections.singletonList("low"), values(tree.search(query).toList()
+                .toBlocking().single()));
+    }
+
+    @Test
+    public void testSearchOfManyEntriesMatchesBruteForce() {
+        List<EntryN<Integer>> entries = entries(1000, 3, 1);
+        RTreeN<Integer> tree = RTreeN.dimensions(3).maxChildren(8).<Integer> create().add(entries);
+        assertEquals(1000, tree.size());
+        assertTrue(tree.calculateDepth() > 2);
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            double[] mins = { random.nextDouble() * 80, random.nextDouble() * 80,
+                    random.nextDouble() * 80 };
+            double[] maxs = { mins[0] + 20, mins[1] + 20, mins[2] + 20 };
+            Box query = Box.create(mins, maxs);
+            Set<Integer> expected = new HashSet<Integer>();
+            for (EntryN<Integer> entry : entries)
+                if (entry.box().intersects(query))
+                    expected.add(entry.value());
+            assertEquals(expected, new HashSet<Integer>(values(tree.search(query).toList()
+                    .toBlocking().single())));
+        }
+        assertEquals(1000, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchWithinDistanceMatchesBruteForce() {
+        List<EntryN<Integer>> entries = entries(500, 4, 2);
+        RTreeN<Integer> tree = RTreeN.<Integer> create(4).add(entries);
+        Box query = Box.point(50, 50, 50, 50);
+        Set<Integer> expected = new HashSet<Integer>();
+        for (EntryN<Integer> entry : entries)
+            if (entry.box().distance(query) < 30)
+                expected.add(entry.value());
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, new HashSet<Integer>(values(tree.search(query, 30).toList()
+                .toBlocking().single())));
+    }
+
+    @Test
+    public void testNearestReturnsInOrder() {
+        List<EntryN<Integer>> entries = entries(1000, 3, 3);
+        RTreeN<Integer> tree = RTreeN.dimensions(3).maxChildren(6).<Integer> create()
+                .add(entries);
+        final Box query = Box.point(20, 30, 40);
+        List<EntryN<Integer>> sorted = new ArrayList<EntryN<Integer>>(entries);
+        Collections.sort(sorted, new Comparator<EntryN<Integer>>() {
+            @Override
+            public int compare(EntryN<Integer> e1, EntryN<Integer> e2) {
+                return Double.compare(e1.box().distance(query), e2.box().distance(query));
+            }
+        });
+        assertEquals(sorted.subList(0, 10), tree.nearest(query, 1000, 10).toList().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testDeleteAll() {
+        List<EntryN<Integer>> entries = entries(200, 3, 4);
+        RTreeN<Integer> tree = RTreeN.<Integer> create(3).add(entries);
+        for (int i = 0; i < entries.size(); i++) {
+            tree = tree.delete(entries.get(i));
+            assertEquals(entries.size() - i - 1, tree.size());
+            assertEquals(entries.size() - i - 1, (int) tree.entries().count().toBlocking()
+                    .single());
+        }
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    public void testDeleteOfMissingEntryReturnsSameTree() {
+        RTreeN<Integer> tree = RTreeN.<Integer> create(2).add(1, Box.point(1, 2));
+        assertTrue(tree == tree.delete(2, Box.point(1, 2)));
+    }
+
+    @Test
+    public void testTreeIsUnchangedByAdd() {
+        RTreeN<Integer> tree = RTreeN.<Integer> create(2).add(entries(100, 2, 5));
+        tree.add(1000, Box.point(1, 2));
+        assertEquals(100, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddOfWrongDimensionsThrows() {
+        RTreeN.<Integer> create(3).add(1, Box.point(1, 2));
+    }
+
+    @Test
+    public void testTreesWithMinChildrenOfHalfMaxChildrenPlusOneCanBeFilledAndEmptied() {
+        int[][] configs = { { 3, 1 }, { 3, 2 }, { 4, 2 }, { 5, 3 } };
+        for (int[] config : configs) {
+            List<EntryN<Integer>> entries = entries(300, 2, 6);
+            RTreeN<Integer> tree = RTreeN.dimensions(2).maxChildren(config[0])
+                    .minChildren(config[1]).<Integer> create().add(entries);
+            assertEquals(300, (int) tree.entries().count().toBlocking().single());
+            for (int i = 0; i < entries.size(); i++)
+                tree = tree.delete(entries.get(i));
+            assertTrue(tree.isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMinChildrenMoreThanHalfOfMaxChildrenPlusOneThrows() {
+        RTreeN.dimensions(2).maxChildren(4).minChildren(3).create();
+    }
+
+    @Test
+    public void testSearchWithinNegativeDistanceReturnsNothing() {
+        RTreeN<Integer> tree = RTreeN.<Integer> create(2).add(entries(100, 2, 7));
+        Box query = Box.create(new double[] { 0, 0 }, new double[] { 100, 100 });
+        assertEquals(100, (int) tree.search(query).count().toBlocking().single());
+        assertEquals(0, (int) tree.search(query, -1).count().toBlocking().single());
+    }
+
+    private static List<EntryN<Integer>> entries(int n, int dimensions, long seed) {
+        Random random = new Random(seed);
+        List<EntryN<Integer>> entries = new ArrayList<EntryN<Integer>>();
+        for (int i = 0; i < n; i++) {
+            double[] mins = new double[dimensions];
+            double[] maxs = new double[dimensions];
+            for (int k = 0; k < dimensions; k++) {
+                mins[k] = random.nextDouble() * 100;
+                maxs[k] = mins[k] + random.nextDouble() * 2;
+            }
+            entries.add(EntryN.entry(i, Box.create(mins, maxs)));
+        }
+        return entries;
+    }
+
+    private static <T> List<T> values(List<EntryN<T>> entries) {
+        List<T> list = new ArrayList<T>();
+        for (EntryN<T> entry : entries)
+            list.add(entry.value());
+        return list;
+    }
+
+}
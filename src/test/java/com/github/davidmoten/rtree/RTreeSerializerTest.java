@@ -0,0 +1,227 @@
+package com.github.davidmoten.rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.junit.Test;
+
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class RTreeSerializerTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Func1<Object, byte[]> TO_BYTES = new Func1<Object, byte[]>() {
+        @Override
+        public byte[] call(Object value) {
+            return String.valueOf(value).getBytes(UTF_8);
+        }
+    };
+
+    private static final Func1<byte[], Object> FROM_BYTES = new Func1<byte[], Object>() {
+        @Override
+        public Object call(byte[] bytes) {
+            return new String(bytes, UTF_8);
+        }
+    };
+
+    @Test
+    public void testRoundTripOfGreekData() throws IOException {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.star().maxChildren(10).<Object, Point> create()
+                .add(entries);
+        RTree<Object, Point> tree2 = roundTrip(tree);
+        assertEquals(tree.size(), tree2.size());
+        assertEquals(tree.asString(), tree2.asString());
+        assertEquals(tree.context().minChildren(), tree2.context().minChildren());
+        assertEquals(tree.context().maxChildren(), tree2.context().maxChildren());
+        assertTrue(tree2.context().selector() instanceof SelectorRStar);
+        assertTrue(tree2.context().splitter() instanceof SplitterRStar);
+        assertFalse(tree2.context().flatPointLeaves());
+        Rectangle r = Geometries.rectangle(40, 27.0, 40.5, 27.5);
+        assertEquals(tree.search(r).count().toBlocking().single(), tree2.search(r).count()
+                .toBlocking().single());
+        // can still add to the loaded tree
+        assertEquals(tree.size() + 1, tree2.add("a", Geometries.point(1, 2)).size());
+    }
+
+    @Test
+    public void testRoundTripOfMixedGeometries() throws IOException {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 50; i++)
+            tree = tree.add(i, Geometries.point(i, i))
+                    .add("r" + i, Geometries.rectangle(i, i, i + 1, i + 2))
+                    .add("c" + i, Geometries.circle(i, i, 0.5));
+        RTree<Object, Geometry> tree2 = roundTrip(tree);
+        assertEquals(150, tree2.size());
+        assertEquals(tree.asString(), tree2.asString());
+        assertEquals(tree.entries().map(new Func1<Entry<Object, Geometry>, String>() {
+            @Override
+            public String call(Entry<Object, Geometry> entry) {
+                return entry.value() + " " + entry.geometry();
+            }
+        }).toList().toBlocking().single(), tree2.entries()
+                .map(new Func1<Entry<Object, Geometry>, String>() {
+                    @Override
+                    public String call(Entry<Object, Geometry> entry) {
+                        return entry.value() + " " + entry.geometry();
+                    }
+                }).toList().toBlocking().single());
+    }
+
+    @Test
+    public void testRoundTripOfEmptyTree() throws IOException {
+        RTree<Object, Point> tree = roundTrip(RTree.<Object, Point> create());
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.root().isPresent());
+    }
+
+    @Test
+    public void testRoundTripOfFlatPointLeaves() throws IOException {
+        RTree<Object, Point> tree = RTree.flatPointLeaves().<Object, Point> create(
+                GreekEarthquakes.entriesList());
+        RTree<Object, Point> tree2 = roundTrip(tree);
+        assertTrue(tree2.context().flatPointLeaves());
+        assertEquals(tree.asString(), tree2.asString());
+    }
+
+    @Test
+    public void testRoundTripOfDoublePrecisionGeometries() throws IOException {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 50; i++)
+            tree = tree.add("p" + i, Geometries.pointDouble(151.2093 + i * 1e-7, -33.8688))
+                    .add("r" + i,
+                            Geometries.rectangleDouble(151.2093, -33.8688 + i * 1e-7, 151.2094,
+                                    -33.8687));
+        RTree<Object, Geometry> tree2 = roundTrip(tree);
+        assertEquals(100, tree2.size());
+        assertEquals(tree.entries().toList().toBlocking().single(), tree2.entries().toList()
+                .toBlocking().single());
+    }
+
+    @Test
+    public void testRoundTripOfForcedReinsertion() throws IOException {
+        RTree<Object, Point> tree = RTree.forcedReinsertion().<Object, Point> create().add(1,
+                Geometries.point(1, 2));
+        RTree<Object, Point> tree2 = roundTrip(tree);
+        assertEquals(0.3, tree2.context().reinsertionFraction(), 0.00001);
+        assertEquals(tree.asString(), tree2.asString());
+    }
+
+    @Test
+    public void testSearchCacheSizeIsNotWritten() throws IOException {
+        RTree<Object, Point> tree = RTree.searchCache(100).<Object, Point> create().add(1,
+                Geometries.point(1, 2));
+        RTree<Object, Point> tree2 = roundTrip(tree);
+        assertEquals(0, tree2.context().searchCacheSize());
+        assertFalse(tree2.searchCacheStats().isPresent());
+    }
+
+    @Test
+    public void testReadWithSuppliedContext() throws IOException {
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add(1, Geometries.point(1, 2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RTreeSerializer<Object, Point> serializer = RTreeSerializer.create(TO_BYTES, FROM_BYTES);
+        serializer.write(tree, bytes);
+        Context context = new Context(1, 3, new SelectorRStar(), new SplitterRStar());
+        RTree<Object, Point> tree2 = serializer.read(
+                new ByteArrayInputStream(bytes.toByteArray()), context);
+        assertTrue(context == tree2.context());
+        assertEquals(1, tree2.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteOfUnsupportedGeometryThrows() throws IOException {
+        Geometry g = new Geometry() {
+            @Override
+            public double distance(Rectangle r) {
+                return 0;
+            }
+
+            @Override
+            public Rectangle mbr() {
+                return Geometries.rectangle(0, 0, 1, 1);
+            }
+
+            @Override
+            public boolean intersects(Rectangle r) {
+                return true;
+            }
+        };
+        RTree<Object, Geometry> tree = RTree.create();
+        RTreeSerializer.<Object, Geometry> create(TO_BYTES, FROM_BYTES).write(tree.add(1, g),
+                new ByteArrayOutputStream());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOfOtherDataThrows() throws IOException {
+        RTreeSerializer.<Object, Point> create(TO_BYTES, FROM_BYTES).read(
+                new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOfNegativeValueLengthThrows() throws IOException {
+        readWithLastValueLength(-1);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOfValueLengthBeyondEndOfStreamThrows() throws IOException {
+        readWithLastValueLength(Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOfSelectorOfWrongTypeThrows() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x52545245);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeInt(4);
+        out.writeUTF(String.class.getName());
+        out.writeUTF(SplitterRStar.class.getName());
+        out.writeBoolean(false);
+        out.writeDouble(0);
+        out.writeInt(0);
+        out.writeBoolean(false);
+        RTreeSerializer.<Object, Point> create(TO_BYTES, FROM_BYTES).read(
+                new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /**
+     * Writes a tree with one entry whose value is the last thing written and
+     * reads it back after replacing the length of the value.
+     */
+    private static void readWithLastValueLength(int length) throws IOException {
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add("a",
+                Geometries.point(1, 2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RTreeSerializer<Object, Point> serializer = RTreeSerializer.create(TO_BYTES, FROM_BYTES);
+        serializer.write(tree, bytes);
+        byte[] b = bytes.toByteArray();
+        ByteBuffer.wrap(b).putInt(b.length - 5, length);
+        serializer.read(new ByteArrayInputStream(b));
+    }
+
+    private static <S extends Geometry> RTree<Object, S> roundTrip(RTree<Object, S> tree)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RTreeSerializer<Object, S> serializer = RTreeSerializer.create(TO_BYTES, FROM_BYTES);
+        serializer.write(tree, bytes);
+        return serializer.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+}
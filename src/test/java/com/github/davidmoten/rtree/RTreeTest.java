@@ -20,8 +20,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -29,15 +33,20 @@ import org.junit.Test;
 
 import rx.Observable;
 import rx.Subscriber;
+import rx.functions.Action1;
 import rx.functions.Func1;
 import rx.functions.Func2;
+import rx.schedulers.Schedulers;
 
+import com.github.davidmoten.rtree.JoinIterator.NodePair;
 import com.github.davidmoten.rtree.geometry.Circle;
 import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.HasGeometry;
 import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.PointDouble;
 import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.geometry.RectangleDouble;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -482,6 +491,68 @@ public class RTreeTest {
         assertEquals(point(4, 4), list.get(3).geometry());
     }
 
+    @Test
+    public void testSearchDoublePrecisionDistinguishesPointsThatAreEqualAsFloats() {
+        PointDouble p1 = Geometries.pointDouble(151.20930001, -33.8688);
+        PointDouble p2 = Geometries.pointDouble(151.20930002, -33.8688);
+        assertEquals(point(p1.x(), p1.y()), point(p2.x(), p2.y()));
+        RTree<Integer, PointDouble> tree = RTree.<Integer, PointDouble> create().add(1, p1)
+                .add(2, p2);
+        assertEquals(2, (int) tree.search(p1.mbr()).count().toBlocking().single());
+        assertEquals(asList(1), tree.search(p1).map(RTreeTest.<Integer> toValue())
+                .toList().toBlocking().single());
+        assertEquals(asList(2),
+                tree.search(Geometries.rectangleDouble(151.209300015, -34, 152, -33))
+                        .map(RTreeTest.<Integer> toValue()).toList().toBlocking()
+                        .single());
+        assertEquals(asList(1), tree.search(p1, 0.5e-8)
+                .map(RTreeTest.<Integer> toValue()).toList().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchDoublePrecisionOfManyEntriesMatchesBruteForce() {
+        Random random = new Random(123);
+        List<Entry<Integer, PointDouble>> entries = new ArrayList<Entry<Integer, PointDouble>>();
+        for (int i = 0; i < 1000; i++)
+            entries.add(entry(i, Geometries.pointDouble(151.2 + random.nextDouble() * 1e-5,
+                    -33.8 + random.nextDouble() * 1e-5)));
+        RTree<Integer, PointDouble> tree = RTree.maxChildren(8).<Integer, PointDouble> create()
+                .add(entries);
+        RectangleDouble r = Geometries.rectangleDouble(151.200002, -33.799998, 151.200005,
+                -33.799996);
+        Set<Integer> expected = new HashSet<Integer>();
+        for (Entry<Integer, PointDouble> e : entries)
+            if (r.contains(e.geometry().x(), e.geometry().y()))
+                expected.add(e.value());
+        assertTrue(expected.size() > 0);
+        assertEquals(expected,
+                new HashSet<Integer>(tree.search(r).map(RTreeTest.<Integer> toValue())
+                        .toList().toBlocking().single()));
+    }
+
+    @Test
+    public void testNearestDoublePrecisionReturnsInOrder() {
+        Random random = new Random(456);
+        List<Entry<Integer, PointDouble>> entries = new ArrayList<Entry<Integer, PointDouble>>();
+        for (int i = 0; i < 1000; i++)
+            entries.add(entry(i, Geometries.pointDouble(151.2 + random.nextDouble() * 1e-5,
+                    -33.8 + random.nextDouble() * 1e-5)));
+        RTree<Integer, PointDouble> tree = RTree.maxChildren(8).<Integer, PointDouble> create()
+                .add(entries);
+        final PointDouble p = Geometries.pointDouble(151.200005, -33.799995);
+        List<Entry<Integer, PointDouble>> sorted = new ArrayList<Entry<Integer, PointDouble>>(
+                entries);
+        Collections.sort(sorted, new Comparator<Entry<Integer, PointDouble>>() {
+            @Override
+            public int compare(Entry<Integer, PointDouble> e1, Entry<Integer, PointDouble> e2) {
+                return Double.compare(p.distance(e1.geometry()), p.distance(e2.geometry()));
+            }
+        });
+        List<Entry<Integer, PointDouble>> list = tree.nearest(p, 1, 10).toList().toBlocking()
+                .single();
+        assertEquals(sorted.subList(0, 10), list);
+    }
+
     @Test
     public void testNearestHonoursUnsubscribeJustBeforeCompletion() {
         Object value = new Object();
@@ -507,6 +578,798 @@ public class RTreeTest {
         assertFalse(completeCalled.get());
     }
 
+    @Test
+    public void testFlatPointLeavesSearchReturnsSameAsDefaultTree() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.star().<Object, Point> create().add(entries);
+        RTree<Object, Point> flat = RTree.star().flatPointLeaves().<Object, Point> create()
+                .add(entries);
+        RTree<Object, Point> flatPacked = RTree.flatPointLeaves().<Object, Point> create(entries);
+        assertTrue(flat.root().get() instanceof NonLeaf);
+        for (Rectangle r : new Rectangle[] { rectangle(40, 27.0, 40.5, 27.5),
+                rectangle(35, 20, 36, 21), rectangle(0, 0, 1, 1) }) {
+            Set<Entry<Object, Point>> expected = new HashSet<Entry<Object, Point>>(tree
+                    .search(r).toList().toBlocking().single());
+            assertEquals(expected, new HashSet<Entry<Object, Point>>(flat.search(r).toList()
+                    .toBlocking().single()));
+            assertEquals(expected, new HashSet<Entry<Object, Point>>(flatPacked.search(r)
+                    .toList().toBlocking().single()));
+            final Set<Entry<Object, Point>> set = new HashSet<Entry<Object, Point>>();
+            flat.search(r).subscribe(createBackpressureSubscriber(set));
+            assertEquals(expected, set);
+        }
+        assertEquals(entries.size(), (int) flat.entries().count().toBlocking().single());
+        assertEquals(tree.nearest(point(40, 27), 10, 5).toList().toBlocking().single(), flat
+                .nearest(point(40, 27), 10, 5).toList().toBlocking().single());
+    }
+
+    @Test
+    public void testFlatPointLeavesSupportAddAndDeleteOfMixedGeometries() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).flatPointLeaves().create();
+        for (int i = 0; i < 100; i++)
+            tree = tree.add(i, point(i, i));
+        tree = tree.add(1000, rectangle(1, 1, 2, 2));
+        tree = tree.toTransient().add(1001, rectangle(3, 3, 4, 4)).add(1002, point(5, 5))
+                .build();
+        assertEquals(103, (int) tree.entries().count().toBlocking().single());
+        assertEquals(3, (int) tree.search(rectangle(1, 1, 2, 2)).count().toBlocking().single());
+        tree = tree.delete(1000, rectangle(1, 1, 2, 2)).delete(2, point(2, 2));
+        assertEquals(101, tree.size());
+        assertEquals(Collections.singletonList(entry(1, point(1, 1))),
+                tree.search(rectangle(1, 1, 2, 2)).toList().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchRectangleWithBackpressureReturnsSameAsWithoutBackpressure() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        Rectangle r = rectangle(40, 27.0, 40.5, 27.5);
+        for (RTree<Object, Point> tree : starAndFlatTrees(entries)) {
+            List<Entry<Object, Point>> expected = tree.search(r).toList().toBlocking().single();
+            assertEquals(22, expected.size());
+            for (int n : new int[] { 1, 3, 22, 100 }) {
+                List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+                AtomicBoolean completed = new AtomicBoolean();
+                tree.search(r).subscribe(createRequestingSubscriber(list, n, completed));
+                assertEquals(expected, list);
+                assertTrue(completed.get());
+            }
+            assertEquals(expected.subList(0, 5), tree.search(r).take(5).toList().toBlocking()
+                    .single());
+        }
+    }
+
+    @Test
+    public void testSearchRectangleWithBackpressureCompletesWhenLastRequestedEntryIsLastMatch() {
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).<Object, Rectangle> create().add(
+                Utilities.entries1000());
+        final Rectangle r = rectangle(500, 500, 630, 630);
+        final int count = tree.search(r).count().toBlocking().single();
+        final List<Entry<Object, Rectangle>> list = new ArrayList<Entry<Object, Rectangle>>();
+        final AtomicBoolean completed = new AtomicBoolean();
+        tree.search(r).subscribe(
+                new Subscriber<Entry<Object, Rectangle>>() {
+
+                    @Override
+                    public void onStart() {
+                        request(count);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        completed.set(true);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                    }
+
+                    @Override
+                    public void onNext(Entry<Object, Rectangle> t) {
+                        list.add(t);
+                    }
+                });
+        assertEquals(count, list.size());
+        assertTrue(completed.get());
+    }
+
+    private static List<RTree<Object, Point>> starAndFlatTrees(
+            List<Entry<Object, Point>> entries) {
+        List<RTree<Object, Point>> trees = new ArrayList<RTree<Object, Point>>();
+        trees.add(RTree.star().<Object, Point> create().add(entries));
+        trees.add(RTree.maxChildren(128).flatPointLeaves().<Object, Point> create(entries));
+        return trees;
+    }
+
+    private static <T extends Geometry> Subscriber<Entry<Object, T>> createRequestingSubscriber(
+            final List<Entry<Object, T>> list, final int n, final AtomicBoolean completed) {
+        return new Subscriber<Entry<Object, T>>() {
+
+            int count;
+
+            @Override
+            public void onStart() {
+                request(n);
+            }
+
+            @Override
+            public void onCompleted() {
+                completed.set(true);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onNext(Entry<Object, T> t) {
+                list.add(t);
+                if (++count % n == 0)
+                    request(n);
+            }
+        };
+    }
+
+    @Test
+    public void testSearchWithVisitorAndIterableReturnSameAsObservable() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        for (RTree<Object, Point> tree : starAndFlatTrees(entries)) {
+            for (Rectangle r : new Rectangle[] { rectangle(40, 27.0, 40.5, 27.5),
+                    rectangle(0, 0, 1, 1), rectangle(-180, -90, 180, 90) }) {
+                List<Entry<Object, Point>> expected = tree.search(r).toList().toBlocking()
+                        .single();
+                final List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+                assertTrue(tree.search(r, new Visitor<Entry<Object, Point>>() {
+                    @Override
+                    public boolean visit(Entry<Object, Point> entry) {
+                        list.add(entry);
+                        return true;
+                    }
+                }));
+                assertEquals(expected, list);
+                assertEquals(expected, Lists.newArrayList(tree.searchIterable(r)));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchWithVisitorStopsWhenVisitorReturnsFalse() {
+        RTree<Object, Point> tree = RTree.maxChildren(4).<Object, Point> create().add(
+                GreekEarthquakes.entriesList());
+        final List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+        assertFalse(tree.search(rectangle(40, 27.0, 40.5, 27.5),
+                new Visitor<Entry<Object, Point>>() {
+                    @Override
+                    public boolean visit(Entry<Object, Point> entry) {
+                        list.add(entry);
+                        return list.size() < 5;
+                    }
+                }));
+        assertEquals(5, list.size());
+    }
+
+    @Test
+    public void testSearchWithVisitorAndIterableOnEmptyTree() {
+        RTree<Object, Point> tree = RTree.create();
+        assertTrue(tree.search(rectangle(0, 0, 1, 1), new Visitor<Entry<Object, Point>>() {
+            @Override
+            public boolean visit(Entry<Object, Point> entry) {
+                throw new RuntimeException();
+            }
+        }));
+        assertFalse(tree.searchIterable(rectangle(0, 0, 1, 1)).iterator().hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testSearchIterableNextAfterLastThrows() {
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create().add(e(1));
+        Iterator<Entry<Object, Rectangle>> it = tree.searchIterable(r(1)).iterator();
+        assertEquals(e(1), it.next());
+        assertFalse(it.hasNext());
+        it.next();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSearchIterableRemoveNotSupported() {
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create().add(e(1));
+        Iterator<Entry<Object, Rectangle>> it = tree.searchIterable(r(1)).iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testCursorReturnsSameAsSearch() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        for (RTree<Object, Point> tree : starAndFlatTrees(entries)) {
+            for (Rectangle r : new Rectangle[] { rectangle(40, 27.0, 40.5, 27.5),
+                    rectangle(0, 0, 1, 1), rectangle(-180, -90, 180, 90) }) {
+                List<Entry<Object, Point>> expected = tree.search(r).toList().toBlocking()
+                        .single();
+                List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+                Cursor<Object> cursor = tree.cursor(r);
+                while (cursor.next()) {
+                    assertEquals(cursor.x1(), cursor.x2(), PRECISION);
+                    assertEquals(cursor.y1(), cursor.y2(), PRECISION);
+                    list.add(Entry.entry(cursor.value(), point(cursor.x1(), cursor.y1())));
+                }
+                assertEquals(expected, list);
+                assertFalse(cursor.next());
+            }
+        }
+    }
+
+    @Test
+    public void testCursorOfRectanglesAndCircles() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create()
+                .add(1, rectangle(1, 2, 3, 4)).add(2, circle(10, 10, 1));
+        Cursor<Object> cursor = tree.cursor(rectangle(0, 0, 20, 20));
+        List<String> list = new ArrayList<String>();
+        while (cursor.next())
+            list.add(cursor.value() + ":" + cursor.x1() + "," + cursor.y1() + "," + cursor.x2()
+                    + "," + cursor.y2());
+        assertEquals(Arrays.asList("1:1.0,2.0,3.0,4.0", "2:9.0,9.0,11.0,11.0"), list);
+    }
+
+    @Test
+    public void testCursorOnEmptyTree() {
+        assertFalse(RTree.<Object, Point> create().cursor(rectangle(0, 0, 1, 1)).next());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testCursorAccessBeforeNextThrows() {
+        RTree.<Object, Rectangle> create().add(e(1)).cursor(r(1)).x1();
+    }
+
+    @Test
+    public void testLinearSplittersReturnSameSearchResultsAsQuadratic() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        Rectangle r = rectangle(40, 27.0, 40.5, 27.5);
+        Set<Entry<Object, Point>> expected = new HashSet<Entry<Object, Point>>(RTree
+                .maxChildren(32).<Object, Point> create().add(entries).search(r).toList()
+                .toBlocking().single());
+        assertEquals(22, expected.size());
+        for (Splitter splitter : new Splitter[] { new SplitterLinear(), new SplitterAngTan() }) {
+            RTree<Object, Point> tree = RTree.maxChildren(32).splitter(splitter)
+                    .<Object, Point> create().add(entries);
+            assertEquals(entries.size(), (int) tree.entries().count().toBlocking().single());
+            checkPacked(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+            assertEquals(expected, new HashSet<Entry<Object, Point>>(tree.search(r).toList()
+                    .toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testForcedReinsertionKeepsAllEntriesAndValidStructure() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        Rectangle r = rectangle(40, 27.0, 40.5, 27.5);
+        for (RTree.Builder builder : new RTree.Builder[] {
+                RTree.star().maxChildren(4).forcedReinsertion(),
+                RTree.star().maxChildren(10).forcedReinsertion(),
+                RTree.maxChildren(32).forcedReinsertion(0.4) }) {
+            RTree<Object, Point> tree = builder.<Object, Point> create();
+            // one at a time (persistent path) then in a batch (transient path)
+            for (Entry<Object, Point> entry : entries.subList(0, 3000))
+                tree = tree.add(entry);
+            tree = tree.add(entries.subList(3000, 10000));
+            assertEquals(10000, tree.size());
+            assertEquals(new HashSet<Entry<Object, Point>>(entries.subList(0, 10000)),
+                    new HashSet<Entry<Object, Point>>(tree.entries().toList().toBlocking()
+                            .single()));
+            checkFill(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+            Set<Entry<Object, Point>> expected = new HashSet<Entry<Object, Point>>();
+            for (Entry<Object, Point> entry : entries.subList(0, 10000))
+                if (entry.geometry().intersects(r))
+                    expected.add(entry);
+            assertEquals(expected, new HashSet<Entry<Object, Point>>(tree.search(r).toList()
+                    .toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testForcedReinsertionChangesTreeAndLeavesSourceUnchanged() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList().subList(0, 1000);
+        RTree<Object, Point> tree = RTree.star().maxChildren(4).<Object, Point> create();
+        RTree<Object, Point> reinserting = RTree.star().maxChildren(4).forcedReinsertion()
+                .<Object, Point> create();
+        assertEquals(0.3, reinserting.context().reinsertionFraction(), PRECISION);
+        for (Entry<Object, Point> entry : entries) {
+            tree = tree.add(entry);
+            String before = reinserting.asString();
+            RTree<Object, Point> next = reinserting.add(entry);
+            assertEquals(before, reinserting.asString());
+            reinserting = next;
+        }
+        assertFalse(tree.asString().equals(reinserting.asString()));
+        assertEquals(1000, (int) reinserting.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testForcedReinsertionWithMixedGeometriesAndDeletes() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).forcedReinsertion().create();
+        for (int i = 0; i < 500; i++)
+            tree = tree.add(i, point(i % 37, i % 23)).add("r" + i,
+                    rectangle(i % 19, i % 31, i % 19 + 2, i % 31 + 1));
+        for (int i = 0; i < 500; i += 2)
+            tree = tree.delete(i, point(i % 37, i % 23));
+        assertEquals(750, tree.size());
+        assertEquals(750, (int) tree.entries().count().toBlocking().single());
+        // deletion doesn't maintain minChildren in non-leaf nodes
+        checkMaxChildren(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+    }
+
+    @Test
+    public void testSearchCacheReturnsSameResultsAndRecordsHits() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList().subList(0, 1000);
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add(entries);
+        RTree<Object, Point> cached = RTree.searchCache(1000).<Object, Point> create()
+                .add(entries);
+        Point p = entries.get(0).geometry();
+        Rectangle r = rectangle(p.x() - 1, p.y() - 1, p.x() + 1, p.y() + 1);
+        List<Entry<Object, Point>> expected = tree.search(r).toList().toBlocking().single();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, cached.search(r).toList().toBlocking().single());
+        assertEquals(expected, cached.search(r).toList().toBlocking().single());
+        assertEquals(1, cached.searchCacheStats().get().missCount());
+        assertEquals(1, cached.searchCacheStats().get().hitCount());
+        assertFalse(tree.searchCacheStats().isPresent());
+    }
+
+    @Test
+    public void testSearchCacheIsBoundedByNumberOfEntries() {
+        RTree<Object, Point> tree = RTree.searchCache(10).<Object, Point> create().add(
+                GreekEarthquakes.entriesList().subList(0, 100));
+        Rectangle all = rectangle(-180, -90, 180, 90);
+        assertEquals(100, (int) tree.search(all).count().toBlocking().single());
+        assertEquals(100, (int) tree.search(all).count().toBlocking().single());
+        // too many entries to keep
+        assertEquals(0, tree.searchCacheStats().get().hitCount());
+        Rectangle none = rectangle(0, 0, 1, 1);
+        assertEquals(0, (int) tree.search(none).count().toBlocking().single());
+        assertEquals(0, (int) tree.search(none).count().toBlocking().single());
+        assertEquals(1, tree.searchCacheStats().get().hitCount());
+    }
+
+    @Test
+    public void testSearchCacheIsNotSharedWithNewVersions() {
+        RTree<Object, Point> tree = RTree.searchCache(10).<Object, Point> create().add(1,
+                point(1, 1));
+        Rectangle r = rectangle(0, 0, 3, 3);
+        assertEquals(1, (int) tree.search(r).count().toBlocking().single());
+        RTree<Object, Point> tree2 = tree.add(2, point(2, 2));
+        assertEquals(0, tree2.searchCacheStats().get().requestCount());
+        assertEquals(2, (int) tree2.search(r).count().toBlocking().single());
+        assertEquals(1, (int) tree.search(r).count().toBlocking().single());
+        assertEquals(1, tree.searchCacheStats().get().hitCount());
+        assertEquals(1, (int) tree2.delete(2, point(2, 2)).search(r).count().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testSearchCacheEvictsLeastRecentlyUsed() {
+        RTree<Object, Point> tree = RTree.searchCache(1).<Object, Point> create().add(1,
+                point(1, 1));
+        tree.search(rectangle(0, 0, 2, 2)).subscribe();
+        tree.search(rectangle(0, 0, 3, 3)).subscribe();
+        tree.search(rectangle(0, 0, 2, 2)).subscribe();
+        assertEquals(3, tree.searchCacheStats().get().missCount());
+        assertTrue(tree.searchCacheStats().get().evictionCount() >= 1);
+    }
+
+    @Test
+    public void testSearchBatchMatchesSeparateSearches() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        List<Rectangle> rectangles = new ArrayList<Rectangle>();
+        for (int i = 0; i < 200; i++) {
+            Point p = entries.get(i * 97).geometry();
+            rectangles.add(rectangle(p.x() - 0.2, p.y() - 0.2, p.x() + 0.3, p.y() + 0.1));
+        }
+        rectangles.add(rectangle(-10, -10, -9, -9));
+        List<RTree<Object, Point>> trees = new ArrayList<RTree<Object, Point>>();
+        trees.add(RTree.star().maxChildren(10).<Object, Point> create(entries));
+        trees.add(RTree.flatPointLeaves().maxChildren(4).<Object, Point> create()
+                .add(entries.subList(0, 2000)));
+        for (RTree<Object, Point> tree : trees) {
+            List<List<Entry<Object, Point>>> results = tree.searchBatch(rectangles);
+            assertEquals(rectangles.size(), results.size());
+            for (int i = 0; i < rectangles.size(); i++)
+                assertEquals(Lists.newArrayList(tree.searchIterable(rectangles.get(i))),
+                        results.get(i));
+            assertTrue(results.get(rectangles.size() - 1).isEmpty());
+        }
+    }
+
+    @Test
+    public void testSearchBatchOfEmptyTree() {
+        List<List<Entry<Object, Point>>> results = RTree.<Object, Point> create().searchBatch(
+                asList(rectangle(0, 0, 1, 1), rectangle(1, 1, 2, 2)));
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isEmpty());
+        assertTrue(results.get(1).isEmpty());
+    }
+
+    @Test
+    public void testNearestStreamEmitsAllEntriesInAscendingDistance() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList().subList(0, 2000);
+        RTree<Object, Point> tree = RTree.star().maxChildren(8).<Object, Point> create(entries);
+        final Point p = entries.get(500).geometry();
+        List<Entry<Object, Point>> list = tree.nearestStream(p).toList().toBlocking().single();
+        assertEquals(entries.size(), list.size());
+        assertEquals(new HashSet<Entry<Object, Point>>(entries),
+                new HashSet<Entry<Object, Point>>(list));
+        for (int i = 1; i < list.size(); i++)
+            assertTrue(list.get(i - 1).geometry().distance(p.mbr()) <= list.get(i).geometry()
+                    .distance(p.mbr()));
+        assertEquals(tree.nearest(p, 0.5, 10).toList().toBlocking().single(),
+                tree.nearestStream(p).takeWhile(new Func1<Entry<Object, Point>, Boolean>() {
+                    @Override
+                    public Boolean call(Entry<Object, Point> entry) {
+                        return entry.geometry().distance(p.mbr()) < 0.5;
+                    }
+                }).take(10).toList().toBlocking().single());
+    }
+
+    @Test
+    public void testNearestStreamSupportsBackpressure() {
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add(
+                GreekEarthquakes.entriesList());
+        final List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+        tree.nearestStream(point(25, 38)).subscribe(new Subscriber<Entry<Object, Point>>() {
+
+            @Override
+            public void onStart() {
+                request(2);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onNext(Entry<Object, Point> entry) {
+                list.add(entry);
+            }
+        });
+        assertEquals(2, list.size());
+        assertEquals(0, (int) RTree.<Object, Point> create().nearestStream(point(1, 1)).count()
+                .toBlocking().single());
+    }
+
+    @Test
+    public void testNearestJoinMatchesNearestForEachEntry() {
+        Random random = new Random(42);
+        List<Entry<Integer, Point>> sensors = new ArrayList<Entry<Integer, Point>>();
+        // enough for the parallel join to split the leaves into groups
+        for (int i = 0; i < 5000; i++)
+            sensors.add(entry(i, point(random.nextFloat() * 100, random.nextFloat() * 100)));
+        List<Entry<Integer, Rectangle>> stations = new ArrayList<Entry<Integer, Rectangle>>();
+        for (int i = 0; i < 3000; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            stations.add(entry(i, rectangle(x, y, x + random.nextFloat(), y + 0.5)));
+        }
+        RTree<Integer, Point> tree1 = RTree.star().maxChildren(6).<Integer, Point> create().add(
+                sensors);
+        RTree<Integer, Rectangle> tree2 = RTree.maxChildren(10)
+                .<Integer, Rectangle> create(stations);
+        for (boolean parallel : new boolean[] { false, true }) {
+            List<Neighbours<Integer, Point, Integer, Rectangle>> results = (parallel ? tree1
+                    .nearestJoinParallel(tree2, 5.0, 3, Schedulers.computation(), 4) : tree1
+                    .nearestJoin(tree2, 5.0, 3)).toList().toBlocking().single();
+            assertEquals(sensors.size(), results.size());
+            Set<Entry<Integer, Point>> seen = new HashSet<Entry<Integer, Point>>();
+            for (Neighbours<Integer, Point, Integer, Rectangle> n : results) {
+                seen.add(n.entry());
+                // entries at equal distances may come in either order
+                Point p = n.entry().geometry();
+                assertEquals(distances(p, tree2.nearest(p, 5.0, 3).toList().toBlocking()
+                        .single()), distances(p, n.neighbours()));
+            }
+            assertEquals(new HashSet<Entry<Integer, Point>>(sensors), seen);
+        }
+    }
+
+    private static List<Double> distances(Point p, List<Entry<Integer, Rectangle>> entries) {
+        List<Double> list = new ArrayList<Double>();
+        for (Entry<Integer, Rectangle> entry : entries)
+            list.add(entry.geometry().distance(p.mbr()));
+        return list;
+    }
+
+    @Test
+    public void testNearestJoinRespectsMaxDistanceAndEmptyTrees() {
+        RTree<Integer, Point> tree1 = RTree.<Integer, Point> create().add(1, point(0, 0))
+                .add(2, point(10, 10));
+        RTree<Integer, Point> tree2 = RTree.<Integer, Point> create().add(3, point(1, 0))
+                .add(4, point(2, 0)).add(5, point(3, 0));
+        List<Neighbours<Integer, Point, Integer, Point>> results = tree1
+                .nearestJoin(tree2, 2.5, 5).toList().toBlocking().single();
+        assertEquals(2, results.size());
+        List<Entry<Integer, Point>> expected = new ArrayList<Entry<Integer, Point>>();
+        expected.add(entry(3, point(1, 0)));
+        expected.add(entry(4, point(2, 0)));
+        for (Neighbours<Integer, Point, Integer, Point> n : results)
+            if (n.entry().value() == 1)
+                assertEquals(expected, n.neighbours());
+            else
+                assertTrue(n.neighbours().isEmpty());
+        List<Neighbours<Integer, Point, Integer, Point>> none = tree1
+                .nearestJoin(RTree.<Integer, Point> create(), 2.5, 5).toList().toBlocking()
+                .single();
+        assertEquals(2, none.size());
+        assertTrue(none.get(0).neighbours().isEmpty());
+        assertEquals(0, (int) RTree.<Integer, Point> create().nearestJoin(tree2, 1, 1).count()
+                .toBlocking().single());
+    }
+
+    @Test
+    public void testJoinMatchesNestedLoopJoin() {
+        Random random = new Random(123);
+        List<Entry<Integer, Rectangle>> entries1 = new ArrayList<Entry<Integer, Rectangle>>();
+        for (int i = 0; i < 300; i++) {
+            float x = random.nextFloat() * 100;
+            float y = random.nextFloat() * 100;
+            entries1.add(entry(i, rectangle(x, y, x + random.nextFloat() * 5, y + 2)));
+        }
+        List<Entry<String, Point>> entries2 = new ArrayList<Entry<String, Point>>();
+        for (int i = 0; i < 2000; i++)
+            entries2.add(entry("p" + i, point(random.nextFloat() * 100,
+                    random.nextFloat() * 100)));
+        // different depths on each side
+        RTree<Integer, Rectangle> tree1 = RTree.maxChildren(4).<Integer, Rectangle> create().add(
+                entries1);
+        RTree<String, Point> tree2 = RTree.star().maxChildren(16).<String, Point> create(entries2);
+        Set<EntryPair<Integer, Rectangle, String, Point>> expected =
+                new HashSet<EntryPair<Integer, Rectangle, String, Point>>();
+        for (Entry<Integer, Rectangle> e1 : entries1)
+            for (Entry<String, Point> e2 : entries2)
+                if (e1.geometry().intersects(e2.geometry().mbr()))
+                    expected.add(new EntryPair<Integer, Rectangle, String, Point>(e1, e2));
+        assertFalse(expected.isEmpty());
+        List<EntryPair<Integer, Rectangle, String, Point>> pairs = tree1.join(tree2).toList()
+                .toBlocking().single();
+        assertEquals(expected.size(), pairs.size());
+        assertEquals(expected, new HashSet<EntryPair<Integer, Rectangle, String, Point>>(pairs));
+        assertEquals(expected.size(), (int) tree2.join(tree1).count().toBlocking().single());
+    }
+
+    @Test
+    public void testJoinAppliesPredicate() {
+        RTree<Integer, Point> tree1 = RTree.<Integer, Point> create().add(1, point(1, 1))
+                .add(2, point(5, 5));
+        RTree<Integer, Circle> tree2 = RTree.<Integer, Circle> create().add(10,
+                circle(0, 0, 2)).add(20, circle(5, 5, 1));
+        List<EntryPair<Integer, Point, Integer, Circle>> pairs = tree1.join(tree2,
+                new Func2<Point, Circle, Boolean>() {
+                    @Override
+                    public Boolean call(Point p, Circle c) {
+                        return c.intersects(p.mbr()) && p.x() > 2;
+                    }
+                }).toList().toBlocking().single();
+        assertEquals(1, pairs.size());
+        assertEquals(2, (int) pairs.get(0).entry1().value());
+        assertEquals(20, (int) pairs.get(0).entry2().value());
+    }
+
+    @Test
+    public void testJoinWithEmptyTreeIsEmpty() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(1, 1));
+        assertEquals(0, (int) tree.join(RTree.<Integer, Point> create()).count().toBlocking()
+                .single());
+        assertEquals(0, (int) RTree.<Integer, Point> create().join(tree).count().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testJoinParallelFindsSamePairsAsJoin() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        List<Entry<Object, Rectangle>> regions = new ArrayList<Entry<Object, Rectangle>>();
+        for (Entry<Object, Point> entry : entries.subList(0, 5000)) {
+            Point p = entry.geometry();
+            regions.add(Entry.<Object, Rectangle> entry(entry.value(),
+                    rectangle(p.x() - 0.05, p.y() - 0.05, p.x() + 0.05, p.y() + 0.05)));
+        }
+        RTree<Object, Point> points = RTree.star().maxChildren(10).<Object, Point> create(entries);
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).<Object, Rectangle> create(regions);
+        Func2<Point, Rectangle, Boolean> contains = new Func2<Point, Rectangle, Boolean>() {
+            @Override
+            public Boolean call(Point p, Rectangle r) {
+                return r.contains(p.x(), p.y());
+            }
+        };
+        List<EntryPair<Object, Point, Object, Rectangle>> expected = points.join(tree, contains)
+                .toList().toBlocking().single();
+        List<NodePair<Object, Point, Object, Rectangle>> partitions = ParallelJoin.partition(
+                points.root().get(), points.size(), tree.root().get(), tree.size(), 16);
+        assertFalse(partitions.size() <= 1);
+        for (NodePair<Object, Point, Object, Rectangle> pair : partitions)
+            assertTrue(count(pair.node1) + count(pair.node2)
+                    >= ParallelSearch.MIN_ENTRIES_PER_PARTITION / 2);
+        List<EntryPair<Object, Point, Object, Rectangle>> unordered = points
+                .joinParallel(tree, contains).toList().toBlocking().single();
+        assertEquals(expected.size(), unordered.size());
+        assertEquals(new HashSet<EntryPair<Object, Point, Object, Rectangle>>(expected),
+                new HashSet<EntryPair<Object, Point, Object, Rectangle>>(unordered));
+        List<EntryPair<Object, Point, Object, Rectangle>> ordered = points
+                .joinParallel(tree, contains, Schedulers.computation(), 4, true).toList()
+                .toBlocking().single();
+        assertEquals(expected, ordered);
+    }
+
+    @Test
+    public void testJoinParallelOfSmallTreesRunsOnCurrentThread() {
+        RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(1, 1))
+                .add(2, point(2, 2));
+        final Thread thread = Thread.currentThread();
+        final AtomicBoolean otherThread = new AtomicBoolean();
+        assertEquals(2, (int) tree.joinParallel(tree, new Func2<Point, Point, Boolean>() {
+            @Override
+            public Boolean call(Point p1, Point p2) {
+                if (Thread.currentThread() != thread)
+                    otherThread.set(true);
+                return p1.equals(p2);
+            }
+        }).count().toBlocking().single());
+        assertFalse(otherThread.get());
+    }
+
+    @Test
+    public void testJoinSupportsBackpressure() {
+        RTree<Object, Point> tree = RTree.<Object, Point> create().add(
+                GreekEarthquakes.entriesList().subList(0, 1000));
+        final List<EntryPair<Object, Point, Object, Point>> list =
+                new ArrayList<EntryPair<Object, Point, Object, Point>>();
+        tree.join(tree).subscribe(new Subscriber<EntryPair<Object, Point, Object, Point>>() {
+
+            @Override
+            public void onStart() {
+                request(1);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onNext(EntryPair<Object, Point, Object, Point> pair) {
+                list.add(pair);
+                if (list.size() < 5)
+                    request(1);
+            }
+        });
+        assertEquals(5, list.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForcedReinsertionFractionMustBeLessThanOne() {
+        RTree.maxChildren(4).forcedReinsertion(1);
+    }
+
+    @Test
+    public void testSearchParallelReturnsSameAsSearch() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.star().maxChildren(10).<Object, Point> create()
+                .add(entries);
+        for (Rectangle r : new Rectangle[] { rectangle(-180, -90, 180, 90),
+                rectangle(36, 22, 39, 26), rectangle(40, 27.0, 40.5, 27.5),
+                rectangle(0, 0, 1, 1) }) {
+            List<Entry<Object, Point>> expected = tree.search(r).toList().toBlocking().single();
+            List<Entry<Object, Point>> list = tree.searchParallel(r).toList().toBlocking()
+                    .single();
+            assertEquals(expected.size(), list.size());
+            assertEquals(new HashSet<Entry<Object, Point>>(expected),
+                    new HashSet<Entry<Object, Point>>(list));
+            final Set<Entry<Object, Point>> set = new HashSet<Entry<Object, Point>>();
+            tree.searchParallel(r, Schedulers.computation(), 2).toBlocking().forEach(
+                    new Action1<Entry<Object, Point>>() {
+                        @Override
+                        public void call(Entry<Object, Point> entry) {
+                            set.add(entry);
+                        }
+                    });
+            assertEquals(new HashSet<Entry<Object, Point>>(expected), set);
+        }
+        assertEquals(100, (int) tree.searchParallel(rectangle(-180, -90, 180, 90)).take(100)
+                .count().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchParallelPartitionsAreDisjointAndCoverMatches() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.maxChildren(4).<Object, Point> create(entries);
+        Rectangle r = rectangle(36, 22, 39, 26);
+        List<Node<Object, Point>> partitions = ParallelSearch.partition(tree.root().get(),
+                tree.size(), r, 16);
+        assertTrue(partitions.size() > 1);
+        int count = 0;
+        for (Node<Object, Point> node : partitions)
+            count += Observable.create(new OnSubscribeSearchRectangle<Object, Point>(node, r))
+                    .count().toBlocking().single();
+        assertEquals((int) tree.search(r).count().toBlocking().single(), count);
+        assertTrue(ParallelSearch.partition(tree.root().get(), tree.size(),
+                rectangle(0, 0, 1, 1), 16).isEmpty());
+    }
+
+    @Test
+    public void testSearchParallelDoesNotSplitOffSmallSubtrees() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.maxChildren(4).<Object, Point> create(entries);
+        Point p = entries.get(0).geometry();
+        Rectangle small = rectangle(p.x(), p.y(), p.x() + 0.01, p.y() + 0.01);
+        List<Node<Object, Point>> partitions = ParallelSearch.partition(tree.root().get(),
+                tree.size(), small, 1000);
+        assertFalse(partitions.isEmpty());
+        for (Node<Object, Point> node : partitions)
+            assertTrue(count(node) >= ParallelSearch.MIN_ENTRIES_PER_PARTITION / 2);
+        // a small tree is never split
+        assertEquals(1, ParallelSearch.partition(tree.root().get(), 1500, small, 1000).size());
+    }
+
+    private static <T, S extends Geometry> int count(Node<T, S> node) {
+        if (node instanceof Leaf)
+            return node.count();
+        int count = 0;
+        for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+            count += count(child);
+        return count;
+    }
+
+    @Test
+    public void testSearchParallelOnEmptyAndSmallTrees() {
+        assertTrue(RTree.<Object, Rectangle> create().searchParallel(r(1)).isEmpty()
+                .toBlocking().single());
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create().add(e(1)).add(e(5));
+        assertEquals(Collections.singletonList(e(1)),
+                tree.searchParallel(r(1), Schedulers.computation(), 4).toList().toBlocking()
+                        .single());
+    }
+
+    @Test
+    public void testNearestReturnsSameDistancesAsSortingAllEntries() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.star().<Object, Point> create().add(entries);
+        for (Point p : new Point[] { point(40, 27), point(35.2, 20.1), point(0, 0) }) {
+            List<Entry<Object, Point>> sorted = new ArrayList<Entry<Object, Point>>(entries);
+            Collections.sort(sorted, Comparators.<Object, Point> ascendingDistance(p.mbr()));
+            List<Entry<Object, Point>> list = tree.nearest(p, Double.MAX_VALUE, 5).toList()
+                    .toBlocking().single();
+            assertEquals(5, list.size());
+            for (int i = 0; i < list.size(); i++)
+                assertEquals(sorted.get(i).geometry().distance(p.mbr()), list.get(i).geometry()
+                        .distance(p.mbr()), PRECISION);
+        }
+    }
+
+    @Test
+    public void testNearestWithBackpressure() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create(entries);
+        List<Entry<Object, Rectangle>> expected = tree.nearest(r(500), 100, 20).toList()
+                .toBlocking().single();
+        List<Entry<Object, Rectangle>> list = new ArrayList<Entry<Object, Rectangle>>();
+        tree.nearest(r(500), 100, 20).subscribe(createBackpressureSubscriber(list));
+        assertEquals(20, list.size());
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void testNearestOnEmptyTree() {
+        RTree<Object, Point> tree = RTree.create();
+        assertTrue(tree.nearest(point(1, 1), 10, 3).isEmpty().toBlocking().single());
+    }
+
+    @Test
+    public void testNearestWithMaxCountZeroReturnsNothing() {
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create().add(e(1));
+        assertTrue(tree.nearest(r(1), 10, 0).isEmpty().toBlocking().single());
+    }
+
     @Test
     public void testVisualizer() {
         List<Entry<Object, Geometry>> entries = createRandomEntries(1000);
@@ -834,6 +1697,180 @@ public class RTreeTest {
         }
     }
 
+    @Test
+    public void testBulkLoadingEmpty() {
+        RTree<Object, Point> tree = RTree.create(new ArrayList<Entry<Object, Point>>());
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.calculateDepth());
+    }
+
+    @Test
+    public void testBulkLoadingOneEntry() {
+        RTree<Object, Rectangle> tree = RTree.create(Collections.singletonList(e(1)));
+        assertEquals(1, tree.size());
+        assertEquals(1, tree.calculateDepth());
+        assertEquals(Collections.singletonList(e(1)), tree.entries().toList().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testBulkLoadingGreekDataReturnsSameSearchResultsAsIncrementalTree() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> packed = RTree.maxChildren(10).<Object, Point> create(entries);
+        RTree<Object, Point> tree = RTree.maxChildren(10).<Object, Point> create().add(entries);
+        assertEquals(entries.size(), packed.size());
+        assertEquals(entries.size(), (int) packed.entries().count().toBlocking().single());
+        checkPacked(packed.root().get(), packed.context(), packed.calculateDepth(), 1);
+        Rectangle r = rectangle(40, 27.0, 40.5, 27.5);
+        assertEquals(new HashSet<Entry<Object, Point>>(tree.search(r).toList().toBlocking()
+                .single()), new HashSet<Entry<Object, Point>>(packed.search(r).toList()
+                .toBlocking().single()));
+    }
+
+    @Test
+    public void testBulkLoadingDoesNotModifyList() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        List<Entry<Object, Rectangle>> copy = new ArrayList<Entry<Object, Rectangle>>(entries);
+        RTree.star().loadingFactor(1).<Object, Rectangle> create(entries);
+        assertEquals(copy, entries);
+    }
+
+    @Test
+    public void testBulkLoadingWithLoadingFactorsAndMaxChildren() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        for (int maxChildren : new int[] { 3, 4, 10, 32, 128 })
+            for (double factor : new double[] { 0.1, 0.4, 0.7, 1.0 }) {
+                RTree<Object, Rectangle> tree = RTree.loadingFactor(factor)
+                        .maxChildren(maxChildren).<Object, Rectangle> create(entries);
+                assertEquals(entries.size(), (int) tree.entries().count().toBlocking().single());
+                checkPacked(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+            }
+    }
+
+    @Test
+    public void testBulkLoadingGivesEveryNonRootNodeMinChildren() {
+        Random random = new Random(11);
+        List<Entry<Object, Rectangle>> entries = new ArrayList<Entry<Object, Rectangle>>();
+        for (int i = 0; i < 20001; i++) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            entries.add(Entry.<Object, Rectangle> entry(i, rectangle(x, y, x + 1, y + 1)));
+        }
+        for (int n : new int[] { 2, 5, 7, 13, 100, 1000, 20001 })
+            for (double factor : new double[] { 0.5, 0.7, 1.0 }) {
+                RTree<Object, Rectangle> tree = RTree.maxChildren(4).minChildren(2)
+                        .loadingFactor(factor).<Object, Rectangle> create(entries.subList(0, n));
+                assertEquals(n, (int) tree.entries().count().toBlocking().single());
+                checkPacked(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+            }
+        RTree<Object, Rectangle> tree = RTree.maxChildren(10).minChildren(5).loadingFactor(0.5)
+                .<Object, Rectangle> create(entries.subList(0, 1000));
+        checkPacked(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+    }
+
+    @Test
+    public void testParallelBulkLoadingGivesSameTreeAsSequential() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        assertTrue(entries.size() > 2 * Packing.MIN_PARALLEL_SIZE);
+        for (int maxChildren : new int[] { 4, 10 }) {
+            RTree<Object, Point> tree = RTree.maxChildren(maxChildren)
+                    .<Object, Point> create(entries);
+            RTree<Object, Point> parallel = RTree.maxChildren(maxChildren)
+                    .parallel(Schedulers.computation(), 4).<Object, Point> create(entries);
+            assertEquals(tree.asString(), parallel.asString());
+            assertEquals(tree.entries().toList().toBlocking().single(), parallel.entries()
+                    .toList().toBlocking().single());
+            checkPacked(parallel.root().get(), parallel.context(), parallel.calculateDepth(), 1);
+        }
+    }
+
+    @Test
+    public void testParallelSortKeepsEqualKeysInOrder() {
+        Random random = new Random(5);
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; i++)
+            list.add(random.nextInt(100) * 100000 + i);
+        // compare on the key only so that equal keys are distinguished by
+        // their original position
+        Comparator<Integer> byKey = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.valueOf(a / 100000).compareTo(b / 100000);
+            }
+        };
+        for (int parallelism : new int[] { 1, 2, 3, 4, 7 }) {
+            List<Integer> sorted = Packing.parallelSort(list, byKey, Schedulers.computation(),
+                    parallelism);
+            List<Integer> expected = new ArrayList<Integer>(list);
+            // the whole value is ascending within each key if order is kept
+            Collections.sort(expected);
+            assertEquals(expected, sorted);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParallelSortRethrowsExceptionFromTask() {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++)
+            list.add(i);
+        Packing.parallelSort(list, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                throw new IllegalStateException("boom");
+            }
+        }, Schedulers.computation(), 4);
+    }
+
+    @Test
+    public void testBulkLoadedTreeSupportsAddAndDelete() {
+        List<Entry<Object, Rectangle>> entries = Utilities.entries1000();
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create(entries);
+        for (Entry<Object, Rectangle> entry : entries.subList(0, 500))
+            tree = tree.delete(entry);
+        tree = tree.add(e(1));
+        assertEquals(501, tree.size());
+        assertEquals(501, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadingFactorMustBePositive() {
+        RTree.loadingFactor(0);
+    }
+
+    private static <T, S extends Geometry> void checkFill(Node<T, S> node, Context context,
+            int depth, int level) {
+        assertTrue(node.count() <= context.maxChildren());
+        assertTrue(level == 1 || node.count() >= context.minChildren());
+        assertEquals(Util.mbr(node instanceof Leaf ? ((Leaf<T, S>) node).entries()
+                : ((NonLeaf<T, S>) node).children()), node.geometry());
+        if (node instanceof Leaf)
+            assertEquals(depth, level);
+        else
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                checkFill(child, context, depth, level + 1);
+    }
+
+    private static <T, S extends Geometry> void checkPacked(Node<T, S> node, Context context,
+            int depth, int level) {
+        assertTrue(node.count() <= context.maxChildren());
+        assertTrue(level == 1 || node.count() >= context.minChildren());
+        if (node instanceof Leaf)
+            assertEquals(depth, level);
+        else
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                checkPacked(child, context, depth, level + 1);
+    }
+
+    private static <T, S extends Geometry> void checkMaxChildren(Node<T, S> node,
+            Context context, int depth, int level) {
+        assertTrue(node.count() <= context.maxChildren());
+        if (node instanceof Leaf)
+            assertEquals(depth, level);
+        else
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                checkMaxChildren(child, context, depth, level + 1);
+    }
+
     private static Func2<Point, Circle, Double> distanceCircleToPoint = new Func2<Point, Circle, Double>() {
         @Override
         public Double call(Point point, Circle circle) {
@@ -0,0 +1,99 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class SelectorPrunedOverlapAreaTest {
+
+    private static final Context CONTEXT = new Context(1, 4, new SelectorRStar(),
+            new SplitterRStar());
+
+    @Test
+    public void testSameAsMinimalOverlapAreaWhenNotPruned() {
+        Random random = new Random(123);
+        Selector pruned = new SelectorPrunedOverlapArea();
+        Selector full = new SelectorMinimalOverlapArea();
+        for (int t = 0; t < 2000; t++) {
+            List<Leaf<Object, Rectangle>> nodes = randomLeaves(random, 1 + random.nextInt(32));
+            Geometry g = randomRectangle(random);
+            assertTrue(full.select(g, nodes) == pruned.select(g, nodes));
+        }
+    }
+
+    @Test
+    public void testSelectsFromNodesWithLeastAreaIncrease() {
+        Random random = new Random(456);
+        for (int t = 0; t < 500; t++) {
+            List<Leaf<Object, Rectangle>> nodes = randomLeaves(random, 40);
+            Rectangle r = randomRectangle(random);
+            Node<Object, Rectangle> selected = new SelectorPrunedOverlapArea(3).select(r, nodes);
+            List<Float> increases = new ArrayList<Float>();
+            for (Leaf<Object, Rectangle> node : nodes)
+                increases.add(increase(node, r));
+            Collections.sort(increases);
+            assertTrue(increase(selected, r) <= increases.get(2));
+        }
+    }
+
+    @Test
+    public void testSelectsNodeContainingPointWithNoOverlap() {
+        List<Leaf<Object, Rectangle>> nodes = new ArrayList<Leaf<Object, Rectangle>>();
+        nodes.add(leaf(rectangle(0, 0, 10, 10)));
+        nodes.add(leaf(rectangle(20, 0, 30, 10)));
+        nodes.add(leaf(rectangle(5, 5, 25, 6)));
+        assertTrue(nodes.get(1) == new SelectorPrunedOverlapArea(1).select(point(28, 9), nodes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCandidatesMustBePositive() {
+        new SelectorPrunedOverlapArea(0);
+    }
+
+    @Test
+    public void testRStarTreeWithWideNodesReturnsSameSearchResults() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.star().maxChildren(64).<Object, Point> create()
+                .add(entries);
+        assertEquals(22, (int) tree.search(rectangle(40, 27.0, 40.5, 27.5)).count()
+                .toBlocking().single());
+        assertEquals(entries.size(), (int) tree.entries().count().toBlocking().single());
+    }
+
+    private static float increase(Node<Object, Rectangle> node, Rectangle r) {
+        Rectangle mbr = node.geometry().mbr();
+        return mbr.add(r).area() - mbr.area();
+    }
+
+    private static List<Leaf<Object, Rectangle>> randomLeaves(Random random, int n) {
+        List<Leaf<Object, Rectangle>> nodes = new ArrayList<Leaf<Object, Rectangle>>();
+        for (int i = 0; i < n; i++)
+            nodes.add(leaf(randomRectangle(random)));
+        return nodes;
+    }
+
+    private static Rectangle randomRectangle(Random random) {
+        float x = random.nextInt(100);
+        float y = random.nextInt(100);
+        return rectangle(x, y, x + random.nextInt(20), y + random.nextInt(20));
+    }
+
+    private static Leaf<Object, Rectangle> leaf(Rectangle r) {
+        List<Entry<Object, Rectangle>> entries = new ArrayList<Entry<Object, Rectangle>>();
+        entries.add(Entry.<Object, Rectangle> entry(1, r));
+        return new Leaf<Object, Rectangle>(entries, CONTEXT);
+    }
+
+}
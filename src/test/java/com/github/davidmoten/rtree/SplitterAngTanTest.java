@@ -0,0 +1,56 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class SplitterAngTanTest {
+
+    @Test
+    public void testAxisWithMoreEvenDistributionIsChosen() {
+        // along x three items are nearer the left side and one the right,
+        // along y two are nearer the bottom and two the top
+        Rectangle a = rectangle(0, 0, 1, 1);
+        Rectangle b = rectangle(9, 0, 10, 1);
+        Rectangle c = rectangle(1, 9, 2, 10);
+        Rectangle d = rectangle(2, 9, 3, 10);
+        ListPair<Rectangle> pair = new SplitterAngTan().split(Arrays.asList(a, b, c, d), 1);
+        assertEquals(Arrays.asList(a, b), pair.group1().list());
+        assertEquals(Arrays.asList(c, d), pair.group2().list());
+    }
+
+    @Test
+    public void testNearestItemsAreMovedToReachMinSize() {
+        // only the first item is nearer the left side, the item with the
+        // centre nearest the left side is moved across to reach minSize
+        Rectangle a = rectangle(0, 0, 1, 1);
+        Rectangle b = rectangle(7, 0, 8, 1);
+        Rectangle c = rectangle(8, 0, 9, 1);
+        Rectangle d = rectangle(9, 0, 10, 1);
+        Rectangle e = rectangle(6, 0, 7, 1);
+        List<Rectangle> list = Arrays.asList(a, b, c, d, e);
+        ListPair<Rectangle> pair = new SplitterAngTan().split(list, 1);
+        assertEquals(Arrays.asList(a), pair.group1().list());
+        pair = new SplitterAngTan().split(list, 2);
+        assertEquals(Arrays.asList(a, e), pair.group1().list());
+        assertEquals(Arrays.asList(b, c, d), pair.group2().list());
+    }
+
+    @Test
+    public void testSplitsArePartitionsRespectingMinSize() {
+        Utilities.checkSplitsArePartitionsRespectingMinSize(new SplitterAngTan());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitOfOneItemThrows() {
+        new SplitterAngTan().split(Arrays.asList(rectangle(1, 1, 2, 2)), 1);
+    }
+
+}
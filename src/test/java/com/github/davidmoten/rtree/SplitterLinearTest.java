@@ -0,0 +1,63 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class SplitterLinearTest {
+
+    @Test
+    public void testSeedsArePickedByNormalizedSeparation() {
+        // the seeds along x are 100 apart but the items are 1000 wide (0.1)
+        // while the seeds along y are 6 apart and the items 10 high (0.6)
+        Rectangle p = rectangle(0, 0, 450, 2);
+        Rectangle q = rectangle(550, 7, 1000, 10);
+        Rectangle r = rectangle(400, 0, 600, 1);
+        ListPair<Rectangle> pair = new SplitterLinear().split(Arrays.asList(p, q, r), 1);
+        // seeds come first in their groups
+        assertEquals(Arrays.asList(r, p), pair.group1().list());
+        assertEquals(Arrays.asList(q), pair.group2().list());
+    }
+
+    @Test
+    public void testItemsGoToGroupNeedingLeastEnlargement() {
+        List<Rectangle> list = Arrays.asList(rectangle(10, 0, 11, 1), rectangle(0, 0, 1, 1),
+                rectangle(11, 1, 12, 2), rectangle(1, 1, 2, 2), rectangle(12, 0, 13, 1));
+        ListPair<Rectangle> pair = new SplitterLinear().split(list, 2);
+        assertEquals(Arrays.asList(rectangle(0, 0, 1, 1), rectangle(1, 1, 2, 2)), pair.group1()
+                .list());
+        assertEquals(Arrays.asList(rectangle(12, 0, 13, 1), rectangle(10, 0, 11, 1),
+                rectangle(11, 1, 12, 2)), pair.group2().list());
+    }
+
+    @Test
+    public void testRemainingItemsGoToGroupThatNeedsThemToReachMinSize() {
+        // every item is nearer the seed at the left but the right group needs
+        // the last two to reach minSize
+        List<Rectangle> list = Arrays.asList(rectangle(0, 0, 1, 1), rectangle(1, 0, 2, 1),
+                rectangle(2, 0, 3, 1), rectangle(3, 0, 4, 1), rectangle(20, 0, 21, 1));
+        ListPair<Rectangle> pair = new SplitterLinear().split(list, 2);
+        assertEquals(Arrays.asList(rectangle(0, 0, 1, 1), rectangle(1, 0, 2, 1),
+                rectangle(2, 0, 3, 1)), pair.group1().list());
+        assertEquals(Arrays.asList(rectangle(20, 0, 21, 1), rectangle(3, 0, 4, 1)), pair
+                .group2().list());
+    }
+
+    @Test
+    public void testSplitsArePartitionsRespectingMinSize() {
+        Utilities.checkSplitsArePartitionsRespectingMinSize(new SplitterLinear());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitOfOneItemThrows() {
+        new SplitterLinear().split(Arrays.asList(rectangle(1, 1, 2, 2)), 1);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class SplitterRStarTest {
+
+    @Test
+    public void testSplitSeparatesTwoClusters() {
+        List<Rectangle> list = Arrays.asList(rectangle(10, 0, 11, 1), rectangle(0, 0, 1, 1),
+                rectangle(11, 1, 12, 2), rectangle(1, 1, 2, 2), rectangle(12, 0, 13, 1));
+        ListPair<Rectangle> pair = new SplitterRStar().split(list, 2);
+        assertEquals(Arrays.asList(rectangle(0, 0, 1, 1), rectangle(1, 1, 2, 2)), pair.group1()
+                .list());
+        assertEquals(Arrays.asList(rectangle(10, 0, 11, 1), rectangle(11, 1, 12, 2),
+                rectangle(12, 0, 13, 1)), pair.group2().list());
+    }
+
+    @Test
+    public void testSplitUsesYAxisWhenMarginsAreLess() {
+        List<Rectangle> list = Arrays.asList(rectangle(0, 10, 1, 11), rectangle(0, 0, 1, 1),
+                rectangle(1, 11, 2, 12), rectangle(1, 1, 2, 2));
+        ListPair<Rectangle> pair = new SplitterRStar().split(list, 1);
+        assertEquals(Arrays.asList(rectangle(0, 0, 1, 1), rectangle(1, 1, 2, 2)), pair.group1()
+                .list());
+        assertEquals(rectangle(0, 10, 2, 12), pair.group2().geometry());
+    }
+
+    @Test
+    public void testSplitOfRandomRectanglesIsAPartitionRespectingMinSize() {
+        Random random = new Random(12345);
+        SplitterRStar splitter = new SplitterRStar();
+        for (int n = 3; n < 130; n++) {
+            List<Rectangle> list = new ArrayList<Rectangle>();
+            for (int i = 0; i < n; i++) {
+                float x = random.nextFloat() * 100 - 50;
+                float y = random.nextFloat() * 100 - 50;
+                list.add(rectangle(x, y, x + random.nextFloat(), y + random.nextFloat()));
+            }
+            int minSize = Math.max(1, (n - 1) * 2 / 5);
+            ListPair<Rectangle> pair = splitter.split(list, minSize);
+            assertTrue(pair.group1().list().size() >= minSize);
+            assertTrue(pair.group2().list().size() >= minSize);
+            assertEquals(n, pair.group1().list().size() + pair.group2().list().size());
+            HashSet<Rectangle> all = new HashSet<Rectangle>(pair.group1().list());
+            all.addAll(pair.group2().list());
+            assertEquals(new HashSet<Rectangle>(list), all);
+        }
+    }
+
+    @Test
+    public void testSplitOfTwiceMinSizeItemsGivesEqualGroups() {
+        List<Rectangle> list = Arrays.asList(rectangle(10, 0, 11, 1), rectangle(0, 0, 1, 1),
+                rectangle(11, 1, 12, 2), rectangle(1, 1, 2, 2));
+        ListPair<Rectangle> pair = new SplitterRStar().split(list, 2);
+        assertEquals(Arrays.asList(rectangle(0, 0, 1, 1), rectangle(1, 1, 2, 2)), pair.group1()
+                .list());
+        assertEquals(Arrays.asList(rectangle(10, 0, 11, 1), rectangle(11, 1, 12, 2)), pair
+                .group2().list());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitOfEmptyListThrows() {
+        new SplitterRStar().split(new ArrayList<Rectangle>(), 1);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.RTreeTest.e;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class TransientRTreeTest {
+
+    @Test
+    public void testAddToEmptyTree() {
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).<Object, Rectangle> create()
+                .toTransient().add(e(1)).add(2, e(2).geometry()).build();
+        assertEquals(2, tree.size());
+        assertEquals(2, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testSourceTreeIsUnchangedAndStructureIsValid() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        for (RTree.Builder builder : new RTree.Builder[] { RTree.maxChildren(4),
+                RTree.maxChildren(10).star(), RTree.maxChildren(32) }) {
+            RTree<Object, Point> source = builder.<Object, Point> create().add(
+                    entries.subList(0, 1000));
+            String sourceString = source.asString();
+            TransientRTree<Object, Point> t = source.toTransient();
+            for (Entry<Object, Point> entry : entries.subList(1000, 5000))
+                t.add(entry);
+            assertEquals(5000, t.size());
+            RTree<Object, Point> tree = t.build();
+            assertEquals(sourceString, source.asString());
+            assertEquals(1000, (int) source.entries().count().toBlocking().single());
+            assertEquals(new HashSet<Entry<Object, Point>>(entries.subList(0, 5000)),
+                    new HashSet<Entry<Object, Point>>(tree.entries().toList().toBlocking()
+                            .single()));
+            checkStructure(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+            Rectangle r = Geometries.rectangle(40, 27.0, 40.5, 27.5);
+            Set<Entry<Object, Point>> expected = new HashSet<Entry<Object, Point>>();
+            for (Entry<Object, Point> entry : entries.subList(0, 5000))
+                if (entry.geometry().intersects(r))
+                    expected.add(entry);
+            assertEquals(expected, new HashSet<Entry<Object, Point>>(tree.search(r).toList()
+                    .toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testMixedAddsAndDeletesMatchPersistentTree() {
+        Random random = new Random(123);
+        RTree<Object, Geometry> persistent = RTree.maxChildren(4).minChildren(2).create();
+        TransientRTree<Object, Geometry> t = persistent.toTransient();
+        List<Entry<Object, Geometry>> added = new ArrayList<Entry<Object, Geometry>>();
+        for (int i = 0; i < 3000; i++) {
+            if (added.isEmpty() || random.nextInt(3) > 0) {
+                Entry<Object, Geometry> entry = Entry.<Object, Geometry> entry(i,
+                        Geometries.point(random.nextInt(100), random.nextInt(100)));
+                added.add(entry);
+                persistent = persistent.add(entry);
+                t.add(entry);
+            } else {
+                Entry<Object, Geometry> entry = added.remove(random.nextInt(added.size()));
+                persistent = persistent.delete(entry);
+                t.delete(entry);
+            }
+            assertEquals(persistent.size(), t.size());
+        }
+        RTree<Object, Geometry> tree = t.build();
+        assertEquals(new HashSet<Entry<Object, Geometry>>(persistent.entries().toList()
+                .toBlocking().single()), new HashSet<Entry<Object, Geometry>>(tree.entries()
+                .toList().toBlocking().single()));
+        checkStructure(tree.root().get(), tree.context(), tree.calculateDepth(), 1);
+    }
+
+    @Test
+    public void testDeleteAll() {
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).<Object, Rectangle> create()
+                .add(e(1)).add(e(1)).add(e(2));
+        tree = tree.toTransient().delete(e(1), true).build();
+        assertEquals(1, tree.size());
+        tree = tree.toTransient().delete(1, e(1).geometry()).delete(e(2)).build();
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.toTransient().delete(e(2)).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUseAfterBuildThrows() {
+        TransientRTree<Object, Rectangle> t = RTree.<Object, Rectangle> create().toTransient();
+        t.build();
+        t.add(e(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildTwiceThrows() {
+        TransientRTree<Object, Rectangle> t = RTree.<Object, Rectangle> create().toTransient();
+        t.build();
+        t.build();
+    }
+
+    private static <T, S extends Geometry> void checkStructure(Node<T, S> node,
+            Context context, int depth, int level) {
+        assertTrue(node.count() <= context.maxChildren());
+        assertEquals(Util.mbr(node instanceof Leaf ? ((Leaf<T, S>) node).entries()
+                : ((NonLeaf<T, S>) node).children()), node.geometry());
+        if (node instanceof Leaf)
+            assertEquals(depth, level);
+        else
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                checkStructure(child, context, depth, level + 1);
+    }
+
+}
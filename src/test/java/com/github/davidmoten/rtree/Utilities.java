@@ -3,10 +3,16 @@ package com.github.davidmoten.rtree;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.ListPair;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 
 public class Utilities {
@@ -30,4 +36,37 @@ public class Utilities {
         return list;
     }
 
+    /**
+     * Checks that the splitter divides random rectangles and identical
+     * rectangles into two groups holding every item once with at least
+     * minSize items each.
+     */
+    static void checkSplitsArePartitionsRespectingMinSize(Splitter splitter) {
+        Random random = new Random(12345);
+        for (int n = 2; n < 130; n++) {
+            List<Rectangle> list = new ArrayList<Rectangle>();
+            for (int i = 0; i < n; i++) {
+                float x = random.nextFloat() * 100 - 50;
+                float y = random.nextFloat() * 100 - 50;
+                list.add(Geometries.rectangle(x, y, x + random.nextFloat(),
+                        y + random.nextFloat()));
+            }
+            checkSplit(splitter, list, Math.max(1, n * 2 / 5));
+        }
+        List<Rectangle> identical = new ArrayList<Rectangle>();
+        for (int i = 0; i < 9; i++)
+            identical.add(Geometries.rectangle(1, 1, 2, 2));
+        checkSplit(splitter, identical, 4);
+    }
+
+    private static void checkSplit(Splitter splitter, List<Rectangle> list, int minSize) {
+        ListPair<Rectangle> pair = splitter.split(list, minSize);
+        assertTrue(pair.group1().list().size() >= minSize);
+        assertTrue(pair.group2().list().size() >= minSize);
+        assertEquals(list.size(), pair.group1().list().size() + pair.group2().list().size());
+        HashSet<Rectangle> all = new HashSet<Rectangle>(pair.group1().list());
+        all.addAll(pair.group2().list());
+        assertEquals(new HashSet<Rectangle>(list), all);
+    }
+
 }
@@ -0,0 +1,65 @@
+package com.github.davidmoten.rtree.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BoxTest {
+
+    private static final double PRECISION = 0.000001;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParametersWrongOrderThrowsException() {
+        Geometries.box(new double[] { 0, 0, 2 }, new double[] { 1, 1, 1 });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentDimensionsThrowsException() {
+        Geometries.box(new double[] { 0, 0 }, new double[] { 1, 1, 1 });
+    }
+
+    @Test
+    public void testVolumeAndMargin() {
+        Box b = Geometries.box(new double[] { 0, 1, 2 }, new double[] { 2, 4, 6 });
+        assertEquals(3, b.dimensions());
+        assertEquals(24, b.volume(), PRECISION);
+        assertEquals(9, b.margin(), PRECISION);
+    }
+
+    @Test
+    public void testAdd() {
+        Box b = Box.point(0, 0, 0).add(Box.point(1, -1, 2));
+        assertEquals(Geometries.box(new double[] { 0, -1, 0 }, new double[] { 1, 0, 2 }), b);
+    }
+
+    @Test
+    public void testIntersectsRequiresOverlapInEveryDimension() {
+        Box b = Geometries.box(new double[] { 0, 0, 0 }, new double[] { 1, 1, 1 });
+        assertTrue(b.intersects(Box.point(1, 1, 1)));
+        assertFalse(b.intersects(Box.point(0.5, 0.5, 1.5)));
+        assertTrue(b.contains(0.5, 0.5, 0.5));
+        assertFalse(b.contains(0.5, 0.5, 1.5));
+    }
+
+    @Test
+    public void testDistance() {
+        Box b = Geometries.box(new double[] { 0, 0, 0 }, new double[] { 1, 1, 1 });
+        assertEquals(0, b.distance(Box.point(1, 0.5, 0)), PRECISION);
+        assertEquals(Math.sqrt(4 + 9 + 36), b.distance(Box.point(3, 4, 7)), PRECISION);
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(Box.point(1, 2, 3), Box.point(1, 2, 3));
+        assertEquals(Box.point(1, 2, 3).hashCode(), Box.point(1, 2, 3).hashCode());
+        assertFalse(Box.point(1, 2, 3).equals(Box.point(1, 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntersectsWithDifferentDimensionsThrows() {
+        Box.point(1, 2, 3).intersects(Box.point(1, 2));
+    }
+
+}
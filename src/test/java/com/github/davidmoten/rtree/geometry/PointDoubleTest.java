@@ -0,0 +1,65 @@
+package com.github.davidmoten.rtree.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PointDoubleTest {
+
+    private static final double PRECISION = 0.000001;
+
+    @Test
+    public void testCoordinatesKeepDoublePrecision() {
+        PointDouble p = Geometries.pointDouble(151.20930001, -33.86880001);
+        assertEquals(151.20930001, p.x(), 0);
+        assertEquals(-33.86880001, p.y(), 0);
+    }
+
+    @Test
+    public void testMbrContainsPoint() {
+        PointDouble p = Geometries.pointDouble(151.20930001, -33.86880001);
+        Rectangle mbr = p.mbr();
+        assertTrue(mbr.x1() <= p.x() && p.x() <= mbr.x2());
+        assertTrue(mbr.y1() <= p.y() && p.y() <= mbr.y2());
+        assertTrue(p.intersects(mbr));
+    }
+
+    @Test
+    public void testMbrOfPointRepresentableAsFloatIsThePoint() {
+        assertEquals(Geometries.rectangle(1, 2, 1, 2), Geometries.pointDouble(1, 2).mbr());
+    }
+
+    @Test
+    public void testDistanceToRectangle() {
+        PointDouble p = Geometries.pointDouble(1, 2);
+        assertEquals(5, p.distance(Geometries.rectangle(4, 6, 4, 6)), PRECISION);
+    }
+
+    @Test
+    public void testDistanceToPoint() {
+        PointDouble p1 = Geometries.pointDouble(151.2093, -33.8688);
+        PointDouble p2 = Geometries.pointDouble(151.2093 + 3e-9, -33.8688 + 4e-9);
+        assertEquals(5e-9, p1.distance(p2), 1e-12);
+    }
+
+    @Test
+    public void testDoesNotIntersectRectangleItIsJustOutside() {
+        float x = 1.5f;
+        PointDouble p = Geometries.pointDouble(Math.nextAfter(x, 2.0) - 1e-9, 0);
+        assertFalse(p.intersects(Geometries.rectangle(1, 0, x, 1)));
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(Geometries.pointDouble(1, 2), Geometries.pointDouble(1, 2));
+        assertEquals(Geometries.pointDouble(1, 2).hashCode(), Geometries.pointDouble(1, 2)
+                .hashCode());
+        assertNotEquals(Geometries.pointDouble(151.20930001, 2),
+                Geometries.pointDouble(151.20930002, 2));
+        assertNotEquals(Geometries.pointDouble(1, 2), Geometries.point(1, 2));
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.github.davidmoten.rtree.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RectangleDoubleTest {
+
+    private static final double PRECISION = 0.000001;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testXParametersWrongOrderThrowsException() {
+        Geometries.rectangleDouble(2, 0, 1, 1);
+    }
+
+    @Test
+    public void testMbrIsRoundedOutwards() {
+        RectangleDouble r = Geometries.rectangleDouble(0.1, 0.1, 0.3, 0.3);
+        Rectangle mbr = r.mbr();
+        assertTrue(mbr.x1() <= 0.1 && mbr.y1() <= 0.1);
+        assertTrue(mbr.x2() >= 0.3 && mbr.y2() >= 0.3);
+        assertTrue(mbr.x1() > 0.1 - 1e-7 && mbr.x2() < 0.3 + 1e-7);
+    }
+
+    @Test
+    public void testAreaAndPerimeter() {
+        RectangleDouble r = Geometries.rectangleDouble(1, 2, 4, 6);
+        assertEquals(12, r.area(), PRECISION);
+        assertEquals(14, r.perimeter(), PRECISION);
+    }
+
+    @Test
+    public void testAdd() {
+        assertEquals(Geometries.rectangleDouble(0, -1, 4, 1),
+                Geometries.rectangleDouble(0, 0, 2, 1).add(
+                        Geometries.rectangleDouble(3, -1, 4, 0.5)));
+    }
+
+    @Test
+    public void testIntersectsInDoublePrecision() {
+        RectangleDouble r = Geometries.rectangleDouble(151.20930001, -34, 151.20930002, -33);
+        assertTrue(r.intersects((Geometry) Geometries.pointDouble(151.209300015, -33.5)));
+        assertFalse(r.intersects((Geometry) Geometries.pointDouble(151.209300025, -33.5)));
+        assertTrue(r.intersects(r.mbr()));
+        assertTrue(r.intersects(Geometries.rectangleDouble(151.20930002, -33, 152, -32)));
+        assertFalse(r.intersects(Geometries.rectangleDouble(151.209300021, -33, 152, -32)));
+    }
+
+    @Test
+    public void testIntersectsFloatGeometries() {
+        RectangleDouble r = Geometries.rectangleDouble(0, 0, 1, 1);
+        assertTrue(r.intersects((Geometry) Geometries.point(1, 1)));
+        assertFalse(r.intersects((Geometry) Geometries.point(1.1, 1)));
+        assertTrue(r.intersects((Geometry) Geometries.rectangle(1, 1, 2, 2)));
+        assertTrue(r.intersects((Geometry) Geometries.circle(1.5, 0.5, 0.5)));
+        assertFalse(r.intersects((Geometry) Geometries.circle(2, 2, 1)));
+    }
+
+    @Test
+    public void testDistance() {
+        RectangleDouble r = Geometries.rectangleDouble(0, 0, 1, 1);
+        assertEquals(0, r.distance(Geometries.rectangle(0.5, 0.5, 2, 2)), PRECISION);
+        assertEquals(5, r.distance(Geometries.rectangleDouble(4, 5, 6, 7)), PRECISION);
+        assertEquals(5, r.distance((Geometry) Geometries.pointDouble(4, 5)), PRECISION);
+        assertEquals(5, r.distance((Geometry) Geometries.point(4, 5)), PRECISION);
+        assertEquals(4, r.distance((Geometry) Geometries.circle(4, 5, 1)), PRECISION);
+        assertEquals(1, r.distance(0.5, 2), PRECISION);
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(Geometries.rectangleDouble(1, 2, 3, 4), Geometries.rectangleDouble(1, 2, 3, 4));
+        assertEquals(Geometries.rectangleDouble(1, 2, 3, 4).hashCode(), Geometries
+                .rectangleDouble(1, 2, 3, 4).hashCode());
+        assertFalse(Geometries.rectangleDouble(1, 2, 3, 4).equals(
+                Geometries.rectangleDouble(1, 2, 3, 4.000000001)));
+    }
+
+}
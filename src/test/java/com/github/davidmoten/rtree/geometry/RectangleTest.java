@@ -168,4 +168,30 @@ public class RectangleTest {
         assertFalse(r.contains(9,30));
     }
 
+    @Test
+    public void testAreaOfUnionMatchesAdd() {
+        Rectangle r = rectangle(0, 0, 2, 1);
+        Rectangle r2 = rectangle(3, -1, 4, 0.5);
+        assertEquals(r.add(r2).area(),
+                Rectangle.areaOfUnion(0, 0, 2, 1, 3, -1, 4, 0.5f), PRECISION);
+        assertEquals(8, Rectangle.areaOfUnion(0, 0, 2, 1, 3, -1, 4, 0.5f), PRECISION);
+    }
+
+    @Test
+    public void testIntersectionAreaOfOverlappingRectangles() {
+        assertEquals(1, Rectangle.intersectionArea(0, 0, 2, 2, 1, 1, 3, 3), PRECISION);
+        assertEquals(1, rectangle(0, 0, 2, 2).intersectionArea(rectangle(1, 1, 3, 3)), PRECISION);
+    }
+
+    @Test
+    public void testIntersectionAreaOfSeparatedRectanglesIsZero() {
+        assertEquals(0, Rectangle.intersectionArea(0, 0, 1, 1, 2, 0, 3, 1), PRECISION);
+        assertEquals(0, Rectangle.intersectionArea(0, 0, 1, 1, 0, 2, 1, 3), PRECISION);
+    }
+
+    @Test
+    public void testIntersectionAreaOfTouchingRectanglesIsZero() {
+        assertEquals(0, Rectangle.intersectionArea(0, 0, 1, 1, 1, 0, 2, 1), PRECISION);
+    }
+
 }
\ No newline at end of file